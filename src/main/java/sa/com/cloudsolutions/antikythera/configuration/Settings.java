@@ -67,7 +67,71 @@ public class Settings {
      * but may cause generation to fail for classes with complex or unresolved dependencies.
      */
     public static final String STRICT_TYPE_RESOLUTION = "strict_type_resolution";
+    /**
+     * The number of milliseconds that the evaluation of a method may take before it is abandoned.
+     */
+    public static final String EVALUATION_TIMEOUT = "evaluation_timeout";
+    /**
+     * The number of statements, loop iterations and method calls that the evaluation of a method
+     * may take before it is abandoned.
+     */
+    public static final String EVALUATION_STEP_LIMIT = "evaluation_step_limit";
+    /**
+     * When enabled, the statements that a method executes before its first branch are skipped
+     * when they cannot be affected by the preconditions, the state they leave is restored instead.
+     */
+    public static final String BRANCH_SNAPSHOTS = "branch_snapshots";
+    /**
+     * When enabled, the body of each method is translated into pre-dispatched steps the first time
+     * it runs, instead of matching every statement and expression against each kind of node.
+     */
+    public static final String COMPILED_EXECUTION = "compiled_execution";
     public static final String APPLICATION_VERSION = "application.version";
+    /**
+     * When enabled, the source files are parsed on a fork join pool during pre-processing and the
+     * interface and parent class relationships are resolved in a second pass.
+     */
+    public static final String PARALLEL_PREPROCESS = "parallel_preprocess";
+    /**
+     * When enabled, parsed compilation units are saved to disk and reused on the next run for
+     * any source file whose content has not changed.
+     */
+    public static final String PARSE_CACHE = "parse_cache";
+    /**
+     * When enabled, pre-processing only indexes the source files. Each file is parsed the first
+     * time that one of the types declared in it is looked up.
+     */
+    public static final String LAZY_PREPROCESS = "lazy_preprocess";
+    /**
+     * When enabled, which is the default, the type that a name resolves to in a compilation unit
+     * is remembered until another type is registered.
+     */
+    public static final String TYPE_RESOLUTION_CACHE = "type_resolution_cache";
+    /**
+     * When enabled, which is the default, each method call remembers the methods that it resolved
+     * to for the types it was called with.
+     */
+    public static final String CALL_SITE_CACHE = "call_site_cache";
+    /**
+     * When enabled, the classes in the dependency jars are indexed so that missing classes can
+     * be ruled out without asking the class loader.
+     */
+    public static final String JAR_INDEX = "jar_index";
+    /**
+     * When enabled, pre-processing compares the source files with the ones seen on the previous
+     * run and only compiles the files that have been added or changed.
+     */
+    public static final String INCREMENTAL_PREPROCESS = "incremental_preprocess";
+    /**
+     * When enabled, the classes that are generated from source code are saved to disk and defined
+     * from the saved bytes on the next run while neither the source nor its referenced types change.
+     */
+    public static final String CLASS_CACHE = "class_cache";
+    /**
+     * The folder for the persistent caches. Defaults to {@code .antikythera-cache} inside the
+     * output path.
+     */
+    public static final String CACHE_PATH = "cache_path";
     /**
      * Optional list of dependency <strong>simple</strong> class names (e.g. {@code ProblemFeignClient})
      * that should use a plain {@code @Mock} instead of {@code RETURNS_DEEP_STUBS}, even when the name
@@ -350,6 +414,20 @@ public class Settings {
         return (String) props.get(Settings.OUTPUT_PATH);
     }
 
+    /**
+     * The folder where the persistent caches are kept.
+     * @return the configured cache path, or a folder inside the output path if there isn't one.
+     *      Null when neither has been configured.
+     */
+    public static String getCachePath() {
+        String cachePath = (String) props.get(Settings.CACHE_PATH);
+        if (cachePath != null) {
+            return cachePath;
+        }
+        String outputPath = getOutputPath();
+        return outputPath == null ? null : Paths.get(outputPath, ".antikythera-cache").toString();
+    }
+
     public static String[] getArtifacts() {
         return getDependencies(ARTIFACT_IDS);
     }
@@ -39,6 +39,11 @@ public class BeanDependencyGraph {
     public static final String QUALIFIER = "Qualifier";
     public static final String RESOURCE = "Resource";
     public static final String AUTOWIRED = "Autowired";
+    /**
+     * The simple names of the annotations that make a class a bean, see {@link #isSpringBean(TypeWrapper)}.
+     */
+    private static final Set<String> BEAN_ANNOTATIONS = Set.of(
+            "Service", "RestController", "Controller", "Component", "Configuration");
     private final Map<String, Set<BeanDependency>> adjacencyList = new HashMap<>();
     private final Map<String, Set<String>> simpleGraph = new HashMap<>();
     private final List<PostConstructWarning> postConstructWarnings = new ArrayList<>();
@@ -61,7 +66,7 @@ public class BeanDependencyGraph {
      * Call AbstractCompiler.preProcess() before invoking this method.
      */
     public void build() {
-        Map<String, TypeWrapper> resolvedTypes = AntikytheraRunTime.getResolvedTypes();
+        Map<String, TypeWrapper> resolvedTypes = AntikytheraRunTime.getResolvedTypes(BEAN_ANNOTATIONS);
 
         for (Map.Entry<String, TypeWrapper> entry : resolvedTypes.entrySet()) {
             TypeWrapper wrapper = entry.getValue();
@@ -84,7 +84,7 @@ public class DepSolver extends DependencyAnalyzer {
      * @param g GraphNode to push
      */
     public static void push(GraphNode g) {
-        stack.push(g);
+        stack().push(g);
     }
 
     /**
@@ -93,7 +93,7 @@ public class DepSolver extends DependencyAnalyzer {
      * @return names map
      */
     public static Map<String, Type> getNames() {
-        return names;
+        return names();
     }
 
     /**
@@ -114,11 +114,11 @@ public class DepSolver extends DependencyAnalyzer {
      * Clears both analyzer state and Graph code generation state.
      */
     public static void reset() {
-        stack.clear();
-        names.clear();
+        stack().clear();
+        names().clear();
         Graph.getDependencies().clear();
         Graph.getNodes().clear();
-        visitedSignatures.clear();
+        visitedSignatures().clear();
     }
 
     /**
@@ -312,9 +312,6 @@ public class DepSolver extends DependencyAnalyzer {
      * @return the element at the top of the stack
      */
     public GraphNode peek() {
-        if (stack.isEmpty()) {
-            return null;
-        }
-        return stack.peek();
+        return stack().peek();
     }
 }
@@ -32,6 +32,7 @@ import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.type.UnionType;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
@@ -72,15 +73,83 @@ import java.util.stream.Collectors;
 public class DependencyAnalyzer {
 
     /**
-     * Stack for DFS traversal (static, shared with DepSolver).
+     * The traversal state, which belongs to the {@link AnalysisSession} of the
+     * current thread.
      */
-    protected static final LinkedList<GraphNode> stack = new LinkedList<>();
+    private static final class State {
+        /**
+         * Stack for DFS traversal.
+         */
+        final LinkedList<GraphNode> stack = new LinkedList<>();
+
+        /**
+         * Variable name to type mapping for scope resolution.
+         */
+        final Map<String, Type> names = new HashMap<>();
+
+        /**
+         * Signatures of the nodes that have already been visited by {@link #dfs()}.
+         */
+        final Set<String> visitedSignatures = new HashSet<>();
+    }
+
+    private static final State DEFAULT_STATE = AnalysisSession.getDefault().get(State.class, State::new);
+
+    /**
+     * Stack for DFS traversal in the default session.
+     *
+     * @deprecated Use {@link #stack()}, which follows the {@link AnalysisSession} of the current
+     *             thread. This field only ever sees the default session and will be removed in a
+     *             future release.
+     */
+    @Deprecated(forRemoval = true)
+    protected static final LinkedList<GraphNode> stack = DEFAULT_STATE.stack;
+
+    /**
+     * Variable name to type mapping for scope resolution in the default session.
+     *
+     * @deprecated Use {@link #names()}, which follows the {@link AnalysisSession} of the current
+     *             thread. This field only ever sees the default session and will be removed in a
+     *             future release.
+     */
+    @Deprecated(forRemoval = true)
+    protected static final Map<String, Type> names = DEFAULT_STATE.names;
 
     /**
-     * Variable name to type mapping for scope resolution (static, shared with
-     * DepSolver).
+     * Signatures of the nodes already visited in the default session.
+     *
+     * @deprecated Use {@link #visitedSignatures()}, which follows the {@link AnalysisSession} of
+     *             the current thread. This field only ever sees the default session and will be
+     *             removed in a future release.
      */
-    protected static final Map<String, Type> names = new HashMap<>();
+    @Deprecated(forRemoval = true)
+    protected static final Set<String> visitedSignatures = DEFAULT_STATE.visitedSignatures;
+
+    private static State state() {
+        AnalysisSession session = AnalysisSession.current();
+        return session == AnalysisSession.getDefault() ? DEFAULT_STATE : session.get(State.class, State::new);
+    }
+
+    /**
+     * @return the stack for DFS traversal in the current {@link AnalysisSession}
+     */
+    protected static LinkedList<GraphNode> stack() {
+        return state().stack;
+    }
+
+    /**
+     * @return the variable name to type mapping in the current {@link AnalysisSession}
+     */
+    protected static Map<String, Type> names() {
+        return state().names;
+    }
+
+    /**
+     * @return the signatures of the nodes already visited in the current {@link AnalysisSession}
+     */
+    protected static Set<String> visitedSignatures() {
+        return state().visitedSignatures;
+    }
 
     /**
      * Tracks nodes discovered during the current analysis run.
@@ -250,19 +319,17 @@ public class DependencyAnalyzer {
      * 2. Check if the node is a method, process parameters and return type
      * 3. Do the same for constructors
      */
-    protected static final Set<String> visitedSignatures = new HashSet<>();
-
     public void dfs() {
+        LinkedList<GraphNode> stack = stack();
         while (!stack.isEmpty()) {
             GraphNode node = stack.pollLast();
 
             // Signature check to prevent infinite loops if Graph creates duplicate nodes
             String sig = getNodeSignature(node);
             if (sig != null) {
-                if (visitedSignatures.contains(sig)) {
+                if (!visitedSignatures().add(sig)) {
                     continue;
                 }
-                visitedSignatures.add(sig);
             }
 
             // Ensure type initializers are discovered even if the type node is already visited
@@ -441,7 +508,7 @@ public class DependencyAnalyzer {
      */
     private void initializerSearch(GraphNode node) {
         if (node.getEnclosingType() != null && node.getNode() instanceof InitializerDeclaration id) {
-            names.clear();
+            names().clear();
             id.accept(new VariableVisitor(), node);
             id.accept(createDependencyVisitor(), node);
         }
@@ -480,7 +547,7 @@ public class DependencyAnalyzer {
             ImportUtils.addImport(node, thrownException);
         }
 
-        names.clear();
+        names().clear();
         cd.accept(new VariableVisitor(), node);
         cd.accept(createDependencyVisitor(), node);
     }
@@ -576,15 +643,15 @@ public class DependencyAnalyzer {
 
     /**
      * Reset analysis state.
-     * Clears all static state including Graph caches to ensure clean analysis.
+     * Clears all the session state including Graph caches to ensure clean analysis.
      */
     protected void resetAnalysis() {
-        stack.clear();
-        names.clear();
+        stack().clear();
+        names().clear();
         discoveredNodes.clear();
         Graph.getDependencies().clear();
         Graph.getNodes().clear();
-        visitedSignatures.clear();
+        visitedSignatures().clear();
     }
     /**
      * Processes variable declarations.
@@ -594,7 +661,7 @@ public class DependencyAnalyzer {
     protected static class VariableVisitor extends VoidVisitorAdapter<GraphNode> {
         @Override
         public void visit(final Parameter n, GraphNode node) {
-            names.put(n.getNameAsString(), n.getType());
+            names().put(n.getNameAsString(), n.getType());
             node.processTypeArgument(n.getType());
             super.visit(n, node);
         }
@@ -602,7 +669,7 @@ public class DependencyAnalyzer {
         @Override
         public void visit(final VariableDeclarationExpr n, GraphNode node) {
             for (VariableDeclarator vd : n.getVariables()) {
-                names.put(vd.getNameAsString(), vd.getType());
+                names().put(vd.getNameAsString(), vd.getType());
                 if (vd.getType().isClassOrInterfaceType()) {
                     node.processTypeArgument(vd.getType().asClassOrInterfaceType());
                 } else if (vd.getType().isArrayType()) {
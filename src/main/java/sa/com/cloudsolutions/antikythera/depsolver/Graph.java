@@ -6,29 +6,40 @@ import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.EnumDeclaration;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.comments.JavadocComment;
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 /**
- * Static registry of {@link GraphNode} instances and the trimmed
- * {@link CompilationUnit} outputs produced by the dependency solver.
+ * Registry of {@link GraphNode} instances and the trimmed {@link CompilationUnit} outputs
+ * produced by the dependency solver, kept per {@link AnalysisSession}.
  * Acts as the central adjacency structure for the dependency graph.
  */
 public class Graph {
     /**
-     * Map of fully qualified class names and their generated compilation units.
-     *
-     * For most classes the generated compilation unit will only be a subset of the input
-     * compilation unit.
+     * The state of this class, which belongs to the {@link AnalysisSession} of the current thread.
      */
-    private static final Map<String, CompilationUnit> dependencies = new HashMap<>();
-    /**
-     * Map of nodes with their hash code as the key.
-     * This is essentially our graph.
-     */
-    private static final Map<Integer, GraphNode> nodes = new HashMap<>();
+    private static final class State {
+        /**
+         * Map of fully qualified class names and their generated compilation units.
+         *
+         * For most classes the generated compilation unit will only be a subset of the input
+         * compilation unit.
+         */
+        final Map<String, CompilationUnit> dependencies = new HashMap<>();
+
+        /**
+         * Map of nodes with their hash code as the key.
+         * This is essentially our graph.
+         */
+        final Map<Integer, GraphNode> nodes = new HashMap<>();
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
 
     private Graph() {
 
@@ -57,6 +68,7 @@ public class Graph {
         Optional<String> fullyQualifiedName = cdecl.getFullyQualifiedName();
         if (fullyQualifiedName.isPresent()) {
             String fqn = fullyQualifiedName.get();
+            Map<String, CompilationUnit> dependencies = state().dependencies;
             if (dependencies.containsKey(fqn)) {
                 /*
                  * This class has been processed before, but this particular method or field
@@ -152,10 +164,10 @@ public class Graph {
     }
 
     public static Map<String, CompilationUnit> getDependencies() {
-        return dependencies;
+        return state().dependencies;
     }
 
     public static Map<Integer, GraphNode> getNodes() {
-        return nodes;
+        return state().nodes;
     }
 }
@@ -12,6 +12,7 @@ import com.github.javaparser.ast.type.Type;
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.description.annotation.AnnotationDescription;
 import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
 import net.bytebuddy.implementation.MethodCall;
@@ -27,10 +28,13 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -46,7 +50,11 @@ import java.util.Map;
  *   MethodInterceptor while keeping the original constructors.
  *
  * The generated classes are cached in a simple in-memory registry keyed by the fully-qualified class name in order
- * to avoid regenerating the same type multiple times within the same run.
+ * to avoid regenerating the same type multiple times within the same run. The classes are loaded by the class loader
+ * of the AbstractCompiler, so the registry is replaced whenever that class loader is replaced. Classes that are
+ * already in the registry are handed out without locking. Generating a class takes a lock, because a class can only
+ * be injected into the class loader once, and generating one class may generate others. When the class cache is enabled the
+ * bytes of the classes generated from source code are also kept on disk for later runs, see {@link ClassCache}.
  *
  * Usage overview:
  * - Call createDynamicClass(interceptor) to build/load the dynamic type for a target.
@@ -59,8 +67,20 @@ import java.util.Map;
 public class AKBuddy {
     /** The field name used in generated classes to store the per-instance interceptor. */
     public static final String INSTANCE_INTERCEPTOR = "instanceInterceptor";
-    /** Cache of generated classes keyed by the source/wrapped class name. */
-    private static final Map<String, Class<?>> registry = new HashMap<>();
+    /**
+     * The classes generated for one generation of the class loader of the AbstractCompiler.
+     *
+     * @param generation the class loader generation that the classes were loaded by.
+     * @param classes the generated classes keyed by the source/wrapped class name.
+     * @param fields the declared fields of the generated classes, already made accessible, keyed by field name.
+     */
+    private record Registry(int generation, Map<String, Class<?>> classes, Map<Class<?>, Map<String, Field>> fields) {
+        Registry(int generation) {
+            this(generation, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    private static volatile Registry registry = new Registry(-1);
     /** Logger for diagnostic messages during class generation. */
     private static final Logger logger = LoggerFactory.getLogger(AKBuddy.class);
     /**
@@ -68,6 +88,11 @@ public class AKBuddy {
      * avoid accidentally matching other overloads.
      */
     public static final String INTERCEPT = "intercept";
+    /**
+     * Prefix for the static fields that hold the objects the generated methods delegate to. The fields are numbered
+     * in the order the delegates are added so that they can be set again on a class defined from cached bytes.
+     */
+    private static final String DELEGATE = "delegate$";
 
     /** Utility class; not intended to be instantiated. */
     protected AKBuddy() {
@@ -89,11 +114,61 @@ public class AKBuddy {
      */
     public static Class<?> createDynamicClass(MethodInterceptor interceptor) throws ClassNotFoundException {
         EvaluationEngine eval = interceptor.getEvaluator();
-        if (eval != null) {
-            return createDynamicClassBasedOnSourceCode(interceptor, eval);
-        } else {
-            return createDynamicClassBasedOnByteCode(interceptor);
+        String name = eval != null ? eval.getClassName() : interceptor.getWrappedClass().getName();
+        Class<?> existing = registry().classes().get(name);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (AKBuddy.class) {
+            if (eval != null) {
+                return createDynamicClassBasedOnSourceCode(interceptor, eval);
+            } else {
+                return createDynamicClassBasedOnByteCode(interceptor);
+            }
+        }
+    }
+
+    /**
+     * @return the registry for the current class loader of the AbstractCompiler.
+     */
+    private static Registry registry() {
+        Registry current = registry;
+        int generation = AbstractCompiler.getClassLoaderGeneration();
+        if (current.generation() != generation) {
+            synchronized (AKBuddy.class) {
+                current = registry;
+                if (current.generation() != generation) {
+                    current = new Registry(generation);
+                    registry = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Looks up a declared field of a generated class. The fields are kept in the registry, so that they are dropped
+     * together with the classes of an old class loader.
+     *
+     * @param type the generated class
+     * @param fieldName the name of the field
+     * @return the accessible field, or null when the class has no such field
+     */
+    static Field declaredField(Class<?> type, String fieldName) {
+        return registry().fields().computeIfAbsent(type, AKBuddy::accessibleFields).get(fieldName);
+    }
+
+    private static Map<String, Field> accessibleFields(Class<?> type) {
+        Map<String, Field> fields = new HashMap<>();
+        for (Field field : type.getDeclaredFields()) {
+            try {
+                field.setAccessible(true);
+                fields.put(field.getName(), field);
+            } catch (InaccessibleObjectException e) {
+                logger.debug("Field '{}' of {} is not accessible", field.getName(), type.getName());
+            }
         }
+        return fields;
     }
 
     /**
@@ -106,7 +181,7 @@ public class AKBuddy {
      */
     private static Class<?> createDynamicClassBasedOnByteCode(MethodInterceptor interceptor) {
         Class<?> wrappedClass = interceptor.getWrappedClass();
-        Class<?> existing = registry.get(wrappedClass.getName());
+        Class<?> existing = registry().classes().get(wrappedClass.getName());
         if (existing != null) {
             return existing;
         }
@@ -125,8 +200,9 @@ public class AKBuddy {
                 .make()
                 .load(AbstractCompiler.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
                 .getLoaded();
+        AbstractCompiler.classDefined(clazz);
 
-        registry.put(wrappedClass.getName(), clazz);
+        registry().classes().put(wrappedClass.getName(), clazz);
         return clazz;
     }
 
@@ -142,10 +218,11 @@ public class AKBuddy {
      * @param dtoType the source-level type declaration.
      * @param cu the compilation unit for type/method resolution.
      * @param builder the current Byte Buddy builder chain.
+     * @param delegates collects the objects that the generated class delegates to.
      * @return updated builder with constructor interception applied.
      */
     private static DynamicType.Builder<?> addConstructors(TypeDeclaration<?> dtoType, CompilationUnit cu,
-                                                          DynamicType.Builder<?> builder) {
+                                                          DynamicType.Builder<?> builder, List<Object> delegates) {
         List<com.github.javaparser.ast.body.ConstructorDeclaration> constructors = dtoType.getConstructors();
 
         // If no constructors are explicitly declared, we need to intercept the implicit default constructor
@@ -156,7 +233,7 @@ public class AKBuddy {
             defaultConstructor.setName(dtoType.getNameAsString());
 
             // Don't define a new constructor, just intercept the existing default one
-            builder = interceptConstructor(builder, defaultConstructor);
+            builder = interceptConstructor(builder, delegates, defaultConstructor);
         } else {
             // Handle explicitly declared constructors
             for (com.github.javaparser.ast.body.ConstructorDeclaration constructor : constructors) {
@@ -164,7 +241,7 @@ public class AKBuddy {
                         .map(p -> getParameterType(cu, p))
                         .toArray(Class<?>[]::new);
 
-                builder = interceptConstructor(builder, constructor, parameterTypes);
+                builder = interceptConstructor(builder, delegates, constructor, parameterTypes);
             }
         }
 
@@ -177,24 +254,26 @@ public class AKBuddy {
      * new constructor with the supplied signature is defined and intercepted.
      *
      * @param builder current builder chain.
+     * @param delegates collects the objects that the generated class delegates to.
      * @param constructor the source constructor declaration this interception represents.
      * @param parameterTypes resolved parameter types; empty for default constructor.
      * @return updated builder with interception configured.
      * @throws AntikytheraException if base Object constructor cannot be resolved (should not happen).
      */
-    private static DynamicType.Builder<?> interceptConstructor(DynamicType.Builder<?> builder,
+    private static DynamicType.Builder<?> interceptConstructor(DynamicType.Builder<?> builder, List<Object> delegates,
                                                                com.github.javaparser.ast.body.ConstructorDeclaration constructor,
                                                                Class<?>... parameterTypes) {
+        MethodInterceptor.ConstructorDeclarationSupport support = new MethodInterceptor.ConstructorDeclarationSupport(constructor);
         try {
             if (parameterTypes == null || parameterTypes.length == 0) {
                 return builder.constructor(ElementMatchers.takesArguments(0))
                         .intercept(MethodCall.invoke(Object.class.getDeclaredConstructor()).andThen(
-                                MethodDelegation.to(new MethodInterceptor.ConstructorDeclarationSupport(constructor))));
+                                MethodDelegation.to(support, delegateField(delegates, support))));
             } else {
                 return builder.defineConstructor(Visibility.PUBLIC)
                         .withParameters(parameterTypes)
                         .intercept(MethodCall.invoke(Object.class.getDeclaredConstructor()).andThen(
-                                MethodDelegation.to(new MethodInterceptor.ConstructorDeclarationSupport(constructor))));
+                                MethodDelegation.to(support, delegateField(delegates, support))));
             }
         } catch (NoSuchMethodException e) {
             throw new AntikytheraException(e);
@@ -206,6 +285,7 @@ public class AKBuddy {
      * MethodDeclarationSupport instance through MethodInterceptor.
      *
      * @param builder the current builder chain.
+     * @param delegates collects the objects that the generated class delegates to.
      * @param methodName name of the method to define.
      * @param returnType resolved return type.
      * @param support adapter that encapsulates the JavaParser MethodDeclaration for delegation.
@@ -213,6 +293,7 @@ public class AKBuddy {
      * @return updated builder with the defined method.
      */
     private static DynamicType.Builder<?> defineInterceptedMethod(DynamicType.Builder<?> builder,
+                                                                  List<Object> delegates,
                                                                   String methodName,
                                                                   Class<?> returnType,
                                                                   MethodInterceptor.MethodDeclarationSupport support,
@@ -223,7 +304,19 @@ public class AKBuddy {
                 : methodDef;
         return implDef.intercept(MethodDelegation.withDefaultConfiguration()
                 .filter(ElementMatchers.named(INTERCEPT))
-                .to(support));
+                .to(support, delegateField(delegates, support)));
+    }
+
+    /**
+     * Names the static field that will hold the given delegate in the generated class.
+     *
+     * @param delegates the delegates added to the generated class so far.
+     * @param delegate the object that the generated code will call.
+     * @return the name of the field.
+     */
+    private static String delegateField(List<Object> delegates, Object delegate) {
+        delegates.add(delegate);
+        return DELEGATE + (delegates.size() - 1);
     }
 
     /**
@@ -237,7 +330,7 @@ public class AKBuddy {
      * @throws ClassNotFoundException if referenced types in source cannot be resolved.
      */
     private static Class<?> createDynamicClassBasedOnSourceCode(MethodInterceptor interceptor, EvaluationEngine eval) throws ClassNotFoundException {
-        Class<?> existing = registry.get(eval.getClassName());
+        Class<?> existing = registry().classes().get(eval.getClassName());
         if (existing != null) {
             return existing;
         }
@@ -252,11 +345,12 @@ public class AKBuddy {
         }
 
         List<FieldDeclaration> fields = dtoType.getFields();
+        List<Object> delegates = new ArrayList<>();
 
         ByteBuddy byteBuddy = new ByteBuddy();
         DynamicType.Builder<?> builder = byteBuddy.subclass(interceptor.getWrappedClass()).name(className)
                 .method(ElementMatchers.any())
-                .intercept(MethodDelegation.to(interceptor))
+                .intercept(MethodDelegation.to(interceptor, delegateField(delegates, interceptor)))
                 .defineField(INSTANCE_INTERCEPTOR, MethodInterceptor.class, Visibility.PRIVATE);
 
         if (dtoType instanceof ClassOrInterfaceDeclaration cdecl) {
@@ -268,25 +362,63 @@ public class AKBuddy {
             }
         }
 
-        builder = addConstructors(dtoType, cu, builder);
+        builder = addConstructors(dtoType, cu, builder, delegates);
         builder = addFields(fields, cu, builder);
-        builder = addMethods(dtoType.getMethods(), cu, builder);
-        builder = addLombokAccessors(dtoType, cu, builder);
+        builder = addMethods(dtoType.getMethods(), cu, builder, delegates);
+        builder = addLombokAccessors(dtoType, cu, builder, delegates);
 
-        DynamicType.Unloaded<?> unloaded = builder.make();
+        ClassCache classCache = ClassCache.create();
+        TypeDescription generated = builder.toTypeDescription();
+        String key = classCache == null ? null : classCache.key(dtoType, generated);
+        byte[] cached = key == null ? null : classCache.load(key);
 
         try {
-            Class<?> clazz = unloaded.load(AbstractCompiler.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
-                    .getLoaded();
-            registry.put(eval.getClassName(), clazz);
+            Class<?> clazz;
+            if (cached != null) {
+                clazz = defineCachedClass(generated, cached, delegates);
+            } else {
+                DynamicType.Unloaded<?> unloaded = builder.make();
+                clazz = unloaded.load(AbstractCompiler.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
+                        .getLoaded();
+                if (key != null && unloaded.getAuxiliaryTypes().isEmpty()) {
+                    classCache.store(key, unloaded.getBytes());
+                }
+            }
+            AbstractCompiler.classDefined(clazz);
+            registry().classes().put(eval.getClassName(), clazz);
             return clazz;
         } catch (IllegalStateException e) {
             Class<?> clazz = AbstractCompiler.loadClass(eval.getClassName());
-            registry.put(eval.getClassName(), clazz);
+            registry().classes().put(eval.getClassName(), clazz);
             return clazz;
         }
     }
 
+    /**
+     * Defines a class from the bytes saved by an earlier run and hands it the delegates of this run. The bytes were
+     * made from a builder with the same shape, so the delegates are numbered in the same order.
+     *
+     * @param generated the description of the class that the bytes were made for.
+     * @param bytes the class file from the {@link ClassCache}.
+     * @param delegates the objects that the generated class delegates to.
+     * @return the loaded class.
+     * @throws AntikytheraException if the class does not have the expected delegate fields.
+     */
+    private static Class<?> defineCachedClass(TypeDescription generated, byte[] bytes, List<Object> delegates) {
+        Class<?> clazz = ClassLoadingStrategy.Default.INJECTION
+                .load(AbstractCompiler.getClassLoader(), Map.of(generated, bytes)).get(generated);
+        try {
+            for (int i = 0; i < delegates.size(); i++) {
+                Field field = clazz.getDeclaredField(DELEGATE + i);
+                field.setAccessible(true);
+                field.set(null, delegates.get(i));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new AntikytheraException(e);
+        }
+        return clazz;
+    }
+
     /**
      * Defines methods discovered in the source TypeDeclaration, wiring each to the interceptor.
      * Parameter and return types are resolved against the CompilationUnit.
@@ -294,10 +426,11 @@ public class AKBuddy {
      * @param methods list of source-level method declarations.
      * @param cu compilation unit used for type resolution.
      * @param builder the current Byte Buddy builder chain.
+     * @param delegates collects the objects that the generated class delegates to.
      * @return updated builder with defined methods.
      */
     private static DynamicType.Builder<?> addMethods(List<MethodDeclaration> methods, CompilationUnit cu,
-                                                     DynamicType.Builder<?> builder) {
+                                                     DynamicType.Builder<?> builder, List<Object> delegates) {
 
         for (MethodDeclaration method : methods) {
             String methodName = method.getNameAsString();
@@ -311,6 +444,7 @@ public class AKBuddy {
             Class<?> returnType = getReturnType(cu, method);
 
             builder = defineInterceptedMethod(builder,
+                            delegates,
                             methodName,
                             returnType,
                             new MethodInterceptor.MethodDeclarationSupport(method),
@@ -463,9 +597,11 @@ public class AKBuddy {
      * @param dtoType the source-level type declaration.
      * @param cu compilation unit for resolving field types.
      * @param builder the current Byte Buddy builder chain.
+     * @param delegates collects the objects that the generated class delegates to.
      * @return updated builder with Lombok-style accessors defined when applicable.
      */
-    private static DynamicType.Builder<?> addLombokAccessors(TypeDeclaration<?> dtoType, CompilationUnit cu, DynamicType.Builder<?> builder) {
+    private static DynamicType.Builder<?> addLombokAccessors(TypeDeclaration<?> dtoType, CompilationUnit cu,
+                                                             DynamicType.Builder<?> builder, List<Object> delegates) {
         boolean classHasGetter = dtoType.getAnnotationByName("Getter").isPresent();
         boolean classHasSetter = dtoType.getAnnotationByName("Setter").isPresent();
         boolean classHasData = dtoType.getAnnotationByName("Data").isPresent();
@@ -495,6 +631,7 @@ public class AKBuddy {
                 syntheticGetter.setBody(body);
                 
                 builder = defineInterceptedMethod(builder,
+                        delegates,
                         getterName,
                         returnType,
                         new MethodInterceptor.MethodDeclarationSupport(syntheticGetter));
@@ -513,6 +650,7 @@ public class AKBuddy {
                 syntheticSetter.setBody(setterBody);
                 
                 builder = defineInterceptedMethod(builder,
+                        delegates,
                         setterName,
                         void.class,
                         new MethodInterceptor.MethodDeclarationSupport(syntheticSetter),
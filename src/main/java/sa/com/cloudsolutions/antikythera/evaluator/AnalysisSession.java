@@ -0,0 +1,114 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * <p>Owns the per-thread runtime state of an analysis.</p>
+ *
+ * <p>{@link AntikytheraRunTime}, {@link Branching}, {@link GeneratorState}, the mocking registry,
+ * the dependency graph and the entity mappings keep their state in the session of the current
+ * thread instead of in static fields. Their static methods are a facade over that session, so
+ * existing code keeps working unchanged against the default session, while code that wants an
+ * isolated analysis runs it inside a session of its own:</p>
+ *
+ * <pre>{@code
+ * AnalysisSession session = new AnalysisSession();
+ * session.run(() -> {
+ *     AbstractCompiler.preProcess();
+ *     ...
+ * });
+ * }</pre>
+ *
+ * <p>A session is bound to a thread for the duration of {@link #run(Runnable)} or
+ * {@link #call(Supplier)}. Work that is handed to other threads has to be wrapped in the same
+ * way, which is what the parallel pre-processing in the {@code AbstractCompiler} does.</p>
+ *
+ * <p>The compiler state is not part of the session. The type solver, the class loader, the jar
+ * index, the parse cache, the source manifest and the sets of affected and missing classes are
+ * static fields of the {@code AbstractCompiler}, and the parser configuration and the
+ * {@code Settings} are global as well. Sessions keep evaluations of the same project apart, they
+ * do not allow two different projects to be analysed in the same JVM at the same time.</p>
+ */
+public final class AnalysisSession {
+    private static final AnalysisSession DEFAULT = new AnalysisSession();
+    private static final ThreadLocal<AnalysisSession> current = new ThreadLocal<>();
+    /**
+     * Set when a session is bound to a thread for the first time. Until then every thread uses
+     * the default session, and the facades don't have to look up the thread local on every call.
+     */
+    private static volatile boolean bound;
+
+    /**
+     * The state of each component, keyed by the class that holds it.
+     */
+    private final Map<Class<?>, Object> components = new ConcurrentHashMap<>();
+
+    /**
+     * @return the session bound to the current thread, or the default session if there isn't one.
+     */
+    public static AnalysisSession current() {
+        if (!bound) {
+            return DEFAULT;
+        }
+        AnalysisSession session = current.get();
+        return session == null ? DEFAULT : session;
+    }
+
+    /**
+     * @return the session that is used by threads that have not been bound to another one.
+     */
+    public static AnalysisSession getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Runs the task with this session bound to the current thread. Sessions may be nested, the
+     * previous one is restored when the task completes.
+     *
+     * @param task the work to do
+     */
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the task with this session bound to the current thread and returns its result.
+     *
+     * @param task the work to do
+     * @return whatever the task returned
+     */
+    public <T> T call(Supplier<T> task) {
+        bound = true;
+        AnalysisSession previous = current.get();
+        current.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Finds the state that a component keeps in this session, creating it on first use.
+     *
+     * @param type the class of the state, which also identifies it
+     * @param factory creates the state when the session does not have it yet
+     * @return the state of the component
+     */
+    public <T> T get(Class<T> type, Supplier<T> factory) {
+        Object state = components.get(type);
+        if (state == null) {
+            state = components.computeIfAbsent(type, k -> factory.get());
+        }
+        return type.cast(state);
+    }
+}
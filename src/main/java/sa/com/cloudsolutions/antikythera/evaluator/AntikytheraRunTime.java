@@ -3,6 +3,8 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+import sa.com.cloudsolutions.antikythera.parser.SourceIndex;
+import sa.com.cloudsolutions.antikythera.parser.TypeResolutionCache;
 
 import java.util.Deque;
 import java.util.HashMap;
@@ -12,169 +14,491 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>A basic Runtime for Antikythera.</p>
  *
  * This class will be used by the Evaluator to mimic a stack and keep track of
  * all the classes that we have compiled.
+ *
+ * <p>All the state is held by the {@link AnalysisSession} of the current thread, so that several
+ * analyses can run side by side in the same JVM. Code that does not open a session of its own
+ * shares the default one.</p>
+ *
+ * <p>The type registries ({@code resolved}, {@code resolvedTypes}, {@code interfaces} and
+ * {@code extensions}) may be populated from several threads at once when the parallel
+ * pre-processing mode of {@link sa.com.cloudsolutions.antikythera.parser.AbstractCompiler}
+ * is enabled, so they are backed by concurrent collections. The evaluation state (stack,
+ * autowired instances and statics) is single threaded.</p>
  */
 public class AntikytheraRunTime {
     /**
-     * Keeps track of all the compilation units that we have compiled
+     * The types of the analysed project, which may be registered by several threads at once
+     * during parallel pre-processing.
      */
-    private static final Map<String, CompilationUnit> resolved = new HashMap<>();
+    private static final class Types {
+        /**
+         * Keeps track of all the compilation units that we have compiled
+         */
+        final Map<String, CompilationUnit> resolved = new ConcurrentHashMap<>();
+
+        final Map<String, TypeWrapper> resolvedTypes = new ConcurrentHashMap<>();
+
+        /**
+         * <p>Maps every dotted suffix of a type name to the fully qualified names that end with it.</p>
+         *
+         * For {@code com.example.Outer.Inner} the keys are {@code Inner}, {@code Outer.Inner} and
+         * {@code example.Outer.Inner}. This allows a type to be found by its simple or nested name
+         * without scanning all the known types.
+         */
+        final Map<String, Set<String>> typesBySuffix = new ConcurrentHashMap<>();
+
+        /**
+         * Stores the interfaces and their implementations.
+         */
+        final Map<String, Set<String>> interfaces = new ConcurrentHashMap<>();
+
+        /**
+         * Stores parent classes as keys and child classes as values.
+         */
+        final Map<String, Set<String>> extensions = new ConcurrentHashMap<>();
+
+        /**
+         * When lazy pre-processing is enabled, the index of the source files that have not been
+         * parsed yet. Looking up a type that is in the index will parse the file that declares it.
+         */
+        volatile SourceIndex sourceIndex;
+    }
 
-    private static final Map<String, TypeWrapper> resolvedTypes = new HashMap<>();
     /**
-     * <p>We are not using a stack data structure here, but a Deque. This is because Deque is a
-     * double-ended queue, which can be used as a stack. It is more efficient than a Stack ADT.
-     * Because in java the stack is synchronized.</p>
-     *
-     * While it's normal practice to also place the return value of a method call into the
-     * stack, we are not doing so in here.
+     * The evaluation state.
      */
-    protected static final Deque<Variable> stack = new LinkedList<>();
+    private static final class State {
+        /**
+         * <p>We are not using a stack data structure here, but a Deque. This is because Deque is a
+         * double-ended queue, which can be used as a stack. It is more efficient than a Stack ADT.
+         * Because in java the stack is synchronized.</p>
+         *
+         * While it's normal practice to also place the return value of a method call into the
+         * stack, we are not doing so in here.
+         */
+        final Deque<Variable> stack = new LinkedList<>();
+
+        /**
+         * Stores the fields that have been autowired.
+         * While there should not be cyclic dependencies, the reality is that they do exist in the wild.
+         * Additionally, due to the way that transactions work in spring boot, you often find classes
+         * auto wiring themselves.
+         * What this means to us is that setting up the fields will often lead to infinite recursions
+         * and stack overflows. To avoid that, lets keep all Autowired instances cached.
+         */
+        final Map<String, Variable> autowired = new HashMap<>();
+
+        /**
+         * Keeps track of static variables.
+         * The fully qualified class name is the primary key. The values will be a map, where a field
+         * name will be the key and the variable will hold the value of the static field.
+         */
+        final Map<String, Map<String,Variable>> statics = new HashMap<>();
+    }
 
     /**
-     * Stores the interfaces and their implementations.
+     * The evaluation state of the default session, which the argument stack uses on every call
+     * when no other session is bound to the thread.
      */
-    protected static final Map<String, Set<String>> interfaces = new HashMap<>();
+    private static final State DEFAULT_STATE = AnalysisSession.getDefault().get(State.class, State::new);
+
+    private static final Types DEFAULT_TYPES = AnalysisSession.getDefault().get(Types.class, Types::new);
 
     /**
-     * Stores parent classes as keys and child classes as values.
+     * The argument stack of the default session.
+     *
+     * @deprecated Use {@link #push(Variable)}, {@link #pop()} and {@link #reset()}, which follow
+     *             the {@link AnalysisSession} of the current thread. This field only ever sees the
+     *             default session and will be removed in a future release.
      */
-    protected static final Map<String, Set<String>> extensions = new HashMap<>();
+    @Deprecated(forRemoval = true)
+    protected static final Deque<Variable> stack = DEFAULT_STATE.stack;
 
+    /**
+     * The interfaces and their implementations in the default session.
+     *
+     * @deprecated Use {@link #getImplementations()}, {@link #addImplementation(String, String)} and
+     *             {@link #findImplementations(String)}, which follow the {@link AnalysisSession} of
+     *             the current thread. This field only ever sees the default session and will be
+     *             removed in a future release.
+     */
+    @Deprecated(forRemoval = true)
+    protected static final Map<String, Set<String>> interfaces = DEFAULT_TYPES.interfaces;
 
     /**
-     * Stores the fields that have been autowired.
-     * While there should not be cyclic dependencies, the reality is that they do exist in the wild.
-     * Additionally, due to the way that transactions work in spring boot, you often find classes
-     * auto wiring themselves.
-     * What this means to us is that setting up the fields will often lead to infinite recursions
-     * and stack overflows. To avoid that, lets keep all Autowired instances cached.
+     * The parent classes and their children in the default session.
+     *
+     * @deprecated Use {@link #getSubClasses()}, {@link #addSubClass(String, String)} and
+     *             {@link #findSubClasses(String)}, which follow the {@link AnalysisSession} of the
+     *             current thread. This field only ever sees the default session and will be
+     *             removed in a future release.
      */
-    protected static final Map<String, Variable> autowired = new HashMap<>();
+    @Deprecated(forRemoval = true)
+    protected static final Map<String, Set<String>> extensions = DEFAULT_TYPES.extensions;
 
     /**
-     * Keeps track of static variables.
-     * The fully qualified class name is the primary key. The values will be a map, where a field
-     * name will be the key and the variable will hold the value of the static field.
+     * The autowired instances of the default session.
+     *
+     * @deprecated Use {@link #autoWire(String, Variable)}, {@link #getAutoWire(String)} and
+     *             {@link #resetAutowires()}, which follow the {@link AnalysisSession} of the
+     *             current thread. This field only ever sees the default session and will be
+     *             removed in a future release.
+     */
+    @Deprecated(forRemoval = true)
+    protected static final Map<String, Variable> autowired = DEFAULT_STATE.autowired;
+
+    /**
+     * The static variables of the default session.
+     *
+     * @deprecated Use {@link #getStaticVariable(String, String)},
+     *             {@link #setStaticVariable(String, String, Variable)} and {@link #resetStatics()},
+     *             which follow the {@link AnalysisSession} of the current thread. This field only
+     *             ever sees the default session and will be removed in a future release.
      */
-    protected static final Map<String, Map<String,Variable>> statics = new HashMap<>();
+    @Deprecated(forRemoval = true)
+    protected static final Map<String, Map<String,Variable>> statics = DEFAULT_STATE.statics;
 
     private AntikytheraRunTime() {}
 
+    private static Types types() {
+        AnalysisSession session = AnalysisSession.current();
+        return session == AnalysisSession.getDefault() ? DEFAULT_TYPES : session.get(Types.class, Types::new);
+    }
+
+    private static State state() {
+        AnalysisSession session = AnalysisSession.current();
+        return session == AnalysisSession.getDefault() ? DEFAULT_STATE : session.get(State.class, State::new);
+    }
+
     public static CompilationUnit getCompilationUnit(String cls) {
-        return resolved.get(cls);
+        if (cls == null) {
+            return null;
+        }
+        Types types = types();
+        CompilationUnit cu = types.resolved.get(cls);
+        if (cu == null && types.sourceIndex != null) {
+            return types.sourceIndex.load(cls);
+        }
+        return cu;
     }
 
     public static void addType(String className, TypeWrapper typeWrapper) {
-        resolvedTypes.put(className, typeWrapper);
+        TypeWrapper previous = types().resolvedTypes.put(className, typeWrapper);
+        addTypeName(className);
+        if (previous == null) {
+            TypeResolutionCache.typeAdded();
+        } else if (previous != typeWrapper) {
+            TypeResolutionCache.invalidate();
+        }
+    }
+
+    /**
+     * Makes the type findable through {@link #findTypesBySuffix(String)}. Types registered with
+     * {@link #addType(String, TypeWrapper)} are added automatically, this is for types that are
+     * known by name before they have been parsed.
+     *
+     * @param className the fully qualified name of the type
+     */
+    public static void addTypeName(String className) {
+        Map<String, Set<String>> typesBySuffix = types().typesBySuffix;
+        int dot = className.indexOf('.');
+        while (dot != -1) {
+            typesBySuffix.computeIfAbsent(className.substring(dot + 1), k -> ConcurrentHashMap.newKeySet())
+                    .add(className);
+            dot = className.indexOf('.', dot + 1);
+        }
+    }
+
+    /**
+     * Finds the types whose fully qualified names end with a dot followed by the given suffix.
+     * This never triggers parsing, the types may still be pending when lazy pre-processing is
+     * enabled.
+     *
+     * @param suffix a simple name or a nested name such as {@code Outer.Inner}
+     * @return the fully qualified names of the matching types, which may be empty
+     */
+    public static Set<String> findTypesBySuffix(String suffix) {
+        return suffix == null ? Set.of() : types().typesBySuffix.getOrDefault(suffix, Set.of());
     }
 
     public static void addCompilationUnit(String className, CompilationUnit cu) {
-        resolved.put(className, cu);
+        CompilationUnit previous = types().resolved.put(className, cu);
+        if (previous == null) {
+            TypeResolutionCache.typeAdded();
+        } else if (previous != cu) {
+            TypeResolutionCache.invalidate();
+        }
+    }
+
+    /**
+     * Registers the compilation unit unless another one has already been registered for the class.
+     * The check and the registration happen atomically, which matters when the sources are being
+     * parsed concurrently.
+     *
+     * @param className the fully qualified name of the class
+     * @param cu the compilation unit that declares it
+     * @return the compilation unit that was already registered or null if there wasn't one
+     */
+    public static CompilationUnit addCompilationUnitIfAbsent(String className, CompilationUnit cu) {
+        CompilationUnit existing = types().resolved.putIfAbsent(className, cu);
+        if (existing == null) {
+            TypeResolutionCache.typeAdded();
+        }
+        return existing;
+    }
+
+    /**
+     * Forgets everything that is known about the type, so that the file declaring it can be
+     * compiled again or dropped after it has been changed or deleted. This includes the
+     * interfaces it implements and the classes it extends, but not the types that implement or
+     * extend it, see {@link #removeRelations(String)} for those.
+     *
+     * @param className the fully qualified name of the type
+     */
+    public static void removeType(String className) {
+        Types types = types();
+        types.resolved.remove(className);
+        types.resolvedTypes.remove(className);
+        int dot = className.indexOf('.');
+        while (dot != -1) {
+            Set<String> names = types.typesBySuffix.get(className.substring(dot + 1));
+            if (names != null) {
+                names.remove(className);
+            }
+            dot = className.indexOf('.', dot + 1);
+        }
+        types.interfaces.remove(className);
+        types.extensions.remove(className);
+        removeRelations(className);
+        State state = state();
+        state.autowired.remove(className);
+        state.statics.remove(className);
+        TypeResolutionCache.invalidate();
+    }
+
+    /**
+     * Removes the type from the implementations of every interface and the sub classes of every
+     * class, so that those relations can be resolved again.
+     *
+     * @param className the fully qualified name of the type
+     */
+    public static void removeRelations(String className) {
+        Types types = types();
+        types.interfaces.values().forEach(s -> s.remove(className));
+        types.extensions.values().forEach(s -> s.remove(className));
     }
 
     public static boolean isServiceClass(String className) {
-        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        TypeWrapper typeWrapper = getType(className);
         return typeWrapper != null && typeWrapper.isService();
     }
 
     public static boolean isControllerClass(String className) {
-        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        TypeWrapper typeWrapper = getType(className);
         return typeWrapper != null && typeWrapper.isController();
     }
 
     public static boolean isComponentClass(String className) {
-        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        TypeWrapper typeWrapper = getType(className);
         return typeWrapper != null && typeWrapper.isComponent();
     }
 
     public static void reset() {
-        stack.clear();
+        state().stack.clear();
     }
 
     public static void resetAutowires() {
-        autowired.clear();
+        state().autowired.clear();
     }
 
     public static void resetStatics() {
-        statics.clear();
+        state().statics.clear();
     }
 
     public static void push(Variable variable) {
-        stack.push(variable);
+        state().stack.push(variable);
     }
 
     public static Variable pop() {
-        return stack.pop();
+        return state().stack.pop();
+    }
+
+    public static boolean isStackEmpty() {
+        return state().stack.isEmpty();
     }
 
     public static boolean isInterface(String name) {
-        TypeWrapper typeWrapper = resolvedTypes.get(name);
+        TypeWrapper typeWrapper = getType(name);
         return typeWrapper != null && typeWrapper.isInterface();
     }
 
     @SuppressWarnings("java:S1452")
     public static Optional<TypeDeclaration<?>> getTypeDeclaration(String className) {
-        TypeWrapper type = resolvedTypes.get(className);
+        TypeWrapper type = getType(className);
         return Optional.ofNullable(type).map(TypeWrapper::getType);
     }
 
+    /**
+     * Finds a type that is declared in the source tree, parsing it first if it is still pending.
+     * Concurrent maps reject null keys, but callers have always been allowed to look up an
+     * unresolved (null) name and get nothing back.
+     *
+     * @param className the fully qualified name of the type
+     * @return the type wrapper or null if the type is not known
+     */
+    public static TypeWrapper getType(String className) {
+        if (className == null) {
+            return null;
+        }
+        Types types = types();
+        TypeWrapper typeWrapper = types.resolvedTypes.get(className);
+        if (typeWrapper == null && types.sourceIndex != null && types.sourceIndex.load(className) != null) {
+            return types.resolvedTypes.get(className);
+        }
+        return typeWrapper;
+    }
+
     public static void resetAll() {
-        stack.clear();
-        resolved.clear();
-        resolvedTypes.clear();
-        interfaces.clear();
-        extensions.clear();
-        autowired.clear();
-        statics.clear();
+        Types types = types();
+        State state = state();
+        state.stack.clear();
+        types.resolved.clear();
+        types.resolvedTypes.clear();
+        types.typesBySuffix.clear();
+        TypeResolutionCache.invalidate();
+        types.interfaces.clear();
+        types.extensions.clear();
+        state.autowired.clear();
+        state.statics.clear();
+        types.sourceIndex = null;
+    }
+
+    public static SourceIndex getSourceIndex() {
+        return types().sourceIndex;
+    }
+
+    public static void setSourceIndex(SourceIndex index) {
+        types().sourceIndex = index;
+    }
+
+    /**
+     * The names of all the types in the source tree, whether they have been parsed yet or not.
+     * Unlike {@link #getResolvedTypes()} this never triggers parsing.
+     *
+     * @return a set of fully qualified class names
+     */
+    public static Set<String> getTypeNames() {
+        Types types = types();
+        if (types.sourceIndex == null || types.sourceIndex.getPendingTypes().isEmpty()) {
+            return types.resolvedTypes.keySet();
+        }
+        Set<String> names = new HashSet<>(types.resolvedTypes.keySet());
+        names.addAll(types.sourceIndex.getPendingTypes());
+        return names;
     }
 
     public static void addSubClass(String parent, String child) {
-        Set<String> s = extensions.computeIfAbsent(parent, k -> new HashSet<>());
+        Set<String> s = types().extensions.computeIfAbsent(parent, k -> ConcurrentHashMap.newKeySet());
         s.add(child);
     }
 
     public static Set<String> findSubClasses(String parent) {
-        return extensions.getOrDefault(parent, new HashSet<>());
+        return parent == null ? new HashSet<>() : types().extensions.getOrDefault(parent, new HashSet<>());
     }
 
     public static void addImplementation(String iface, String impl) {
-        Set<String> s = interfaces.computeIfAbsent(iface, k -> new HashSet<>());
+        Set<String> s = types().interfaces.computeIfAbsent(iface, k -> ConcurrentHashMap.newKeySet());
         s.add(impl);
     }
 
     public static Set<String> findImplementations(String iface) {
-        return interfaces.getOrDefault(iface, new HashSet<>());
+        return iface == null ? new HashSet<>() : types().interfaces.getOrDefault(iface, new HashSet<>());
     }
 
     public static void autoWire(String className, Variable variable) {
-        autowired.put(className, variable);
+        state().autowired.put(className, variable);
     }
 
     public static Variable getAutoWire(String className) {
-        return autowired.get(className);
+        return state().autowired.get(className);
     }
 
     public static Variable getStaticVariable(String fqn, String field) {
-        return statics.getOrDefault(fqn, new TreeMap<>()).get(field);
+        return state().statics.getOrDefault(fqn, new TreeMap<>()).get(field);
     }
 
     public static void setStaticVariable(String fqn, String field, Variable variable)
     {
-        Map<String, Variable> map = statics.computeIfAbsent(fqn, k -> new TreeMap<>());
+        Map<String, Variable> map = state().statics.computeIfAbsent(fqn, k -> new TreeMap<>());
         map.put(field, variable);
     }
 
+    /**
+     * All the types that have been compiled. With lazy pre-processing this parses every file
+     * that has not been parsed yet, prefer {@link #getTypeNames()} when only the names are
+     * needed.
+     */
     public static Map<String, TypeWrapper> getResolvedTypes() {
-        return resolvedTypes;
+        Types types = types();
+        if (types.sourceIndex != null) {
+            types.sourceIndex.loadAll();
+        }
+        return types.resolvedTypes;
+    }
+
+    /**
+     * The types that have been compiled. With lazy pre-processing only the files that declare a
+     * type with one of the given annotations are parsed first, the types that have already been
+     * parsed for other reasons are included as well, so callers still check the annotations.
+     *
+     * @param annotations the simple names of the annotations, for example {@code Entity}
+     */
+    public static Map<String, TypeWrapper> getResolvedTypes(Set<String> annotations) {
+        Types types = types();
+        if (types.sourceIndex != null) {
+            types.sourceIndex.loadAnnotated(annotations);
+        }
+        return types.resolvedTypes;
+    }
+
+    /**
+     * The compilation units that have been parsed so far, keyed by the names of the types they
+     * declare. Unlike {@link #getResolvedCompilationUnits()} this never triggers parsing.
+     */
+    public static Map<String, CompilationUnit> getParsedCompilationUnits() {
+        return types().resolved;
     }
 
+    /**
+     * All the compilation units, keyed by the names of the types they declare. With lazy
+     * pre-processing this parses every file that has not been parsed yet.
+     */
     public static Map<String, CompilationUnit> getResolvedCompilationUnits() {
-        return resolved;
+        Types types = types();
+        if (types.sourceIndex != null) {
+            types.sourceIndex.loadAll();
+        }
+        return types.resolved;
+    }
+
+    /**
+     * @return the interfaces mapped to the classes that implement them
+     */
+    public static Map<String, Set<String>> getImplementations() {
+        return types().interfaces;
+    }
+
+    /**
+     * @return the parent classes mapped to the classes that extend them
+     */
+    public static Map<String, Set<String>> getSubClasses() {
+        return types().extensions;
     }
 }
@@ -8,6 +8,7 @@ import com.github.javaparser.ast.type.Type;
  * Handles numeric type widening and operator dispatch for binary expressions.
  */
 public class Arithmetics {
+    private static final String UNSUPPORTED_OPERATOR = "Unsupported operator: ";
 
     private Arithmetics() {
 
@@ -29,43 +30,151 @@ public class Arithmetics {
             return new Variable(l + r);
         }
 
-        if (leftVal instanceof Number l && rightVal instanceof Number r) {
+        if (toNumber(leftVal) instanceof Number l && toNumber(rightVal) instanceof Number r) {
             return createNumericVariable(operator, l, r);
         }
         return null;
     }
 
+    /**
+     * A char takes part in arithmetic as its int value.
+     */
+    private static Object toNumber(Object value) {
+        return value instanceof Character c ? Integer.valueOf(c) : value;
+    }
+
     private static Variable createNumericVariable(BinaryExpr.Operator operator, Number l, Number r) {
-        Number result = performOperation(l, r, operator);
-
-        if (l instanceof Double || r instanceof Double) {
-            return new Variable(result.doubleValue());
-        } else if (l instanceof Float || r instanceof Float) {
-            return new Variable(result.floatValue());
-        } else if (l instanceof Long || r instanceof Long) {
-            return new Variable(result.longValue());
-        } else if (l instanceof Integer || r instanceof Integer) {
-            return new Variable(result.intValue());
-        } else if (l instanceof Short || r instanceof Short) {
-            return new Variable(result.shortValue());
-        } else if (l instanceof Byte || r instanceof Byte) {
-            return new Variable(result.byteValue());
-        }
-        return null;
+        NumericType type = NumericType.of(l, r);
+        return type == null ? null : new Variable(performOperation(type, l, r, operator));
+    }
+
+    /**
+     * Carries out the operation in the given type, with the same overflow, rounding and division
+     * by zero behaviour as the compiled code would have.
+     *
+     * @param type the type that the operation is carried out in and that the result will have,
+     *             int or wider
+     * @return the result, boxed
+     * @throws ArithmeticException if an integer is divided by zero
+     */
+    static Number performOperation(NumericType type, Number left, Number right, BinaryExpr.Operator operator) {
+        return switch (type) {
+            case DOUBLE -> Double.valueOf(operate(left.doubleValue(), right.doubleValue(), operator));
+            case FLOAT -> Float.valueOf(operate(left.floatValue(), right.floatValue(), operator));
+            case LONG -> Long.valueOf(operate(left.longValue(), right.longValue(), operator));
+            default -> Integer.valueOf(operate(left.intValue(), right.intValue(), operator));
+        };
+    }
+
+    private static double operate(double left, double right, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            case REMAINDER -> left % right;
+            default -> throw new IllegalArgumentException(UNSUPPORTED_OPERATOR + operator);
+        };
+    }
+
+    private static float operate(float left, float right, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            case REMAINDER -> left % right;
+            default -> throw new IllegalArgumentException(UNSUPPORTED_OPERATOR + operator);
+        };
+    }
+
+    private static long operate(long left, long right, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            case REMAINDER -> left % right;
+            default -> throw new IllegalArgumentException(UNSUPPORTED_OPERATOR + operator);
+        };
     }
 
-    static Number performOperation(Number left, Number right, BinaryExpr.Operator operator) {
+    private static int operate(int left, int right, BinaryExpr.Operator operator) {
         return switch (operator) {
-            case PLUS -> left.doubleValue() + right.doubleValue();
-            case MINUS -> left.doubleValue() - right.doubleValue();
-            case DIVIDE -> left.doubleValue() / right.doubleValue();
-            case MULTIPLY -> left.doubleValue() * right.doubleValue();
-            case REMAINDER -> left.doubleValue() % right.doubleValue();
-            default ->
-                    throw new IllegalArgumentException("Unsupported operator: " + operator);
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            case REMAINDER -> left % right;
+            default -> throw new IllegalArgumentException(UNSUPPORTED_OPERATOR + operator);
         };
     }
 
+    /**
+     * Adds a small amount to a number without changing its type, as the increment and decrement
+     * operators do.
+     *
+     * @param value the current value of the variable
+     * @param delta 1 or -1
+     * @return the new value, or the value itself if it is not a boxed primitive number or char
+     */
+    static Object increment(Object value, int delta) {
+        if (value instanceof Character c) {
+            return (char) (c + delta);
+        }
+        NumericType type = NumericType.of(value);
+        if (type == null) {
+            return value;
+        }
+        Number n = (Number) value;
+        return switch (type) {
+            case DOUBLE -> Double.valueOf(n.doubleValue() + delta);
+            case FLOAT -> Float.valueOf(n.floatValue() + delta);
+            case LONG -> Long.valueOf(n.longValue() + delta);
+            default -> type.convert(n.intValue() + delta);
+        };
+    }
+
+    /**
+     * @param value the value of the operand of the unary minus
+     * @return the negated value, which is an int for byte, short and char values, or the value
+     *      itself if it is not a boxed primitive number or char
+     */
+    static Object negate(Object value) {
+        Object number = toNumber(value);
+        NumericType type = NumericType.of(number);
+        if (type == null) {
+            return value;
+        }
+        Number n = (Number) number;
+        return switch (type) {
+            case DOUBLE -> Double.valueOf(-n.doubleValue());
+            case FLOAT -> Float.valueOf(-n.floatValue());
+            case LONG -> Long.valueOf(-n.longValue());
+            default -> Integer.valueOf(-n.intValue());
+        };
+    }
+
+    /**
+     * A compound assignment such as {@code s += 1} converts the result back to the type of the
+     * variable that it assigns to.
+     *
+     * @param current the value of the variable before the assignment
+     * @param result the result of the operation
+     * @return the result converted to the type of the current value, or the result as it is if
+     *      either of them is not a number
+     */
+    static Variable assign(Variable current, Variable result) {
+        if (current == null || result == null || !(result.getValue() instanceof Number n)) {
+            return result;
+        }
+        if (current.getValue() instanceof Character) {
+            return new Variable((char) n.intValue());
+        }
+        NumericType type = NumericType.of(current.getValue());
+        return type == null ? result : new Variable(type.convert(n));
+    }
+
     private static boolean isStringOperand(Variable variable, Object runtimeValue) {
         if (runtimeValue instanceof String) {
             return true;
@@ -0,0 +1,328 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.SuperExpr;
+import com.github.javaparser.ast.expr.SwitchExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.logging.LogRecorder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Lets the branches of a method be explored without executing the statements before the first
+ * branch over and over again.</p>
+ *
+ * <p>Each side of each branch is covered by executing the whole method again with a different set
+ * of preconditions. When the body of the method starts with straight line code, that code
+ * computes the same values on every execution unless the preconditions change something that it
+ * reads. So the first time the first branch is reached, the locals, the mocks, the log entries and
+ * the output are kept, and later executions whose preconditions do not touch any of the names that
+ * the straight line code mentions restore them and start at the branch.</p>
+ *
+ * <p>The objects held by the locals cannot be copied, so a snapshot is only kept when they are
+ * immutable, and the straight line code may not change the parameters or the fields, call methods
+ * of this class or register branches of its own, as mocks returning optionals do.</p>
+ */
+final class BranchSnapshots {
+    private static final LongAdder resumed = new LongAdder();
+
+    /**
+     * The state of the method when it reaches the first branch.
+     *
+     * @param locals copies of the locals declared before the branch
+     * @param generatorState the mocks and imports recorded by the statements before the branch
+     * @param logs the log entries recorded by the statements before the branch
+     * @param output what the statements before the branch printed, null if it was not captured
+     */
+    private record Snapshot(Map<String, Variable> locals, GeneratorState.Snapshot generatorState,
+                            Map<String, List<LogRecorder.LogEntry>> logs, byte[] output) {
+    }
+
+    private final BlockStmt body;
+    /**
+     * The index of the first statement of the body that is not straight line code.
+     */
+    private final int point;
+    private final Set<String> parameters = new HashSet<>();
+    private final Set<String> declared = new HashSet<>();
+    /**
+     * Every name that is mentioned by the statements before the point.
+     */
+    private final Set<String> mentioned = new HashSet<>();
+    /**
+     * The names that are the scope of a method call before the point. A call to a field is only
+     * allowed when the field holds a mock.
+     */
+    private final Set<String> callScopes = new HashSet<>();
+    private Snapshot snapshot;
+    private boolean armed;
+    private boolean capturing;
+
+    private BranchSnapshots(BlockStmt body, int point) {
+        this.body = body;
+        this.point = point;
+    }
+
+    /**
+     * @return true if the statements before the first branch of a method may be skipped
+     */
+    static boolean isEnabled() {
+        return Settings.getProperty(Settings.BRANCH_SNAPSHOTS, Boolean.class).orElse(false);
+    }
+
+    /**
+     * Finds the straight line code at the start of the method, should be called after the
+     * branches of the method have been registered.
+     *
+     * @param md the method whose branches are going to be explored
+     * @return the snapshots for the method, null if it does not start with straight line code
+     * that could be skipped
+     */
+    static BranchSnapshots of(MethodDeclaration md) {
+        BlockStmt body = md.getBody().orElse(null);
+        if (body == null) {
+            return null;
+        }
+        List<Statement> statements = body.getStatements();
+        int point = 0;
+        while (point < statements.size() && isStraightLine(statements.get(point))) {
+            point++;
+        }
+        if (point == 0 || point == statements.size()) {
+            return null;
+        }
+
+        BranchSnapshots snapshots = new BranchSnapshots(body, point);
+        for (Parameter p : md.getParameters()) {
+            snapshots.parameters.add(p.getNameAsString());
+        }
+        for (Statement stmt : statements.subList(0, point)) {
+            stmt.findAll(VariableDeclarator.class).forEach(vd -> snapshots.declared.add(vd.getNameAsString()));
+        }
+        for (Statement stmt : statements.subList(0, point)) {
+            if (!snapshots.inspect(stmt)) {
+                return null;
+            }
+        }
+        return snapshots;
+    }
+
+    private static boolean isStraightLine(Statement stmt) {
+        return stmt.isExpressionStmt() && Branching.get(stmt) == null;
+    }
+
+    private boolean inspect(Statement stmt) {
+        for (Node node : stmt.findAll(Node.class)) {
+            if (node instanceof LambdaExpr || node instanceof MethodReferenceExpr || node instanceof ThisExpr
+                    || node instanceof SuperExpr || node instanceof SwitchExpr || node instanceof ConditionalExpr
+                    || (node instanceof ObjectCreationExpr oce && oce.getAnonymousClassBody().isPresent())) {
+                return false;
+            }
+            if (node instanceof NameExpr ne) {
+                mentioned.add(ne.getNameAsString());
+            } else if (node instanceof FieldAccessExpr fae) {
+                mentioned.add(fae.getNameAsString());
+            } else if (node instanceof AssignExpr assign && !isDeclared(assign.getTarget())) {
+                return false;
+            } else if (node instanceof UnaryExpr unary && isIncrementOrDecrement(unary)
+                    && !isDeclared(unary.getExpression())) {
+                return false;
+            } else if (node instanceof MethodCallExpr mce && !inspectCall(mce)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIncrementOrDecrement(UnaryExpr unary) {
+        return switch (unary.getOperator()) {
+            case PREFIX_INCREMENT, PREFIX_DECREMENT, POSTFIX_INCREMENT, POSTFIX_DECREMENT -> true;
+            default -> false;
+        };
+    }
+
+    private boolean isDeclared(Expression target) {
+        return target.isNameExpr() && declared.contains(target.asNameExpr().getNameAsString());
+    }
+
+    /**
+     * A method call may not change the state of this instance or of a parameter, and the call of a
+     * method of a field has to be checked once the fields have values.
+     */
+    private boolean inspectCall(MethodCallExpr mce) {
+        Expression scope = mce.getScope().orElse(null);
+        if (scope == null) {
+            return false;
+        }
+        if (rootOf(scope) instanceof NameExpr ne) {
+            String name = ne.getNameAsString();
+            if (parameters.contains(name)) {
+                return false;
+            }
+            if (!declared.contains(name)) {
+                callScopes.add(name);
+            }
+        }
+        return true;
+    }
+
+    private static Expression rootOf(Expression expr) {
+        while (true) {
+            if (expr instanceof MethodCallExpr mce && mce.getScope().isPresent()) {
+                expr = mce.getScope().get();
+            } else if (expr instanceof FieldAccessExpr fae) {
+                expr = fae.getScope();
+            } else if (expr instanceof ArrayAccessExpr aae) {
+                expr = aae.getName();
+            } else if (expr instanceof EnclosedExpr enclosed) {
+                expr = enclosed.getInner();
+            } else if (expr instanceof CastExpr cast) {
+                expr = cast.getExpression();
+            } else {
+                return expr;
+            }
+        }
+    }
+
+    /**
+     * Called before the body of the method is executed for one of the branches.
+     */
+    void arm() {
+        armed = true;
+    }
+
+    /**
+     * Decides where the execution of the body starts, restoring the snapshot if the preconditions
+     * allow it. Only the first execution of the body after {@link #arm()} is considered, the method
+     * may call itself.
+     *
+     * @param evaluator the evaluator whose parameters have been set up
+     * @param preconditions the preconditions that were applied to the parameters and fields
+     * @return the index of the first statement to execute
+     */
+    int begin(Evaluator evaluator, Collection<Precondition> preconditions) {
+        if (!armed) {
+            return 0;
+        }
+        armed = false;
+        capturing = false;
+        if (!Collections.disjoint(mentioned, changedBy(preconditions))) {
+            return 0;
+        }
+        if (snapshot == null) {
+            capturing = true;
+            return 0;
+        }
+        restore(evaluator);
+        resumed.increment();
+        return point;
+    }
+
+    /**
+     * @param stmt the statement that is about to be executed
+     * @return true if this is the first branch and its snapshot has yet to be taken
+     */
+    boolean isPoint(Statement stmt) {
+        return capturing && stmt == body.getStatement(point);
+    }
+
+    /**
+     * Keeps the state left by the statements before the first branch, if it can be restored.
+     *
+     * @param evaluator the evaluator that is executing the method
+     */
+    void capture(Evaluator evaluator) {
+        capturing = false;
+        for (Statement stmt : body.getStatements().subList(0, point)) {
+            if (Branching.get(stmt) != null) {
+                return;
+            }
+        }
+        for (String name : callScopes) {
+            Variable field = evaluator.getField(name);
+            if (field != null && !(field.getValue() instanceof MockingEvaluator)) {
+                return;
+            }
+        }
+
+        Map<String, Variable> locals = new HashMap<>();
+        for (String name : declared) {
+            Symbol symbol = evaluator.getLocal(body, name);
+            if (symbol != null) {
+                if (!(symbol instanceof Variable v) || !Variable.isImmutable(v.getValue())) {
+                    return;
+                }
+                locals.put(name, v.copy());
+            }
+        }
+        ByteArrayOutputStream output = evaluator.capturedOutputStream;
+        snapshot = new Snapshot(locals, GeneratorState.snapshot(), LogRecorder.snapshot(),
+                output == null ? null : output.toByteArray());
+    }
+
+    private void restore(Evaluator evaluator) {
+        for (Map.Entry<String, Variable> local : snapshot.locals().entrySet()) {
+            evaluator.setLocal(body, local.getKey(), local.getValue().copy());
+        }
+        GeneratorState.restore(snapshot.generatorState());
+        LogRecorder.restore(snapshot.logs());
+        if (snapshot.output() != null && evaluator.capturedOutputStream != null) {
+            evaluator.capturedOutputStream.writeBytes(snapshot.output());
+        }
+    }
+
+    /**
+     * The names that the preconditions assign to or call methods on. A precondition that creates
+     * an object replaces the values of all the parameters.
+     */
+    private Set<String> changedBy(Collection<Precondition> preconditions) {
+        Set<String> names = new HashSet<>();
+        for (Precondition precondition : preconditions) {
+            Expression expr = precondition.getExpression();
+            expr.walk(NameExpr.class, ne -> names.add(ne.getNameAsString()));
+            expr.walk(FieldAccessExpr.class, fae -> names.add(fae.getNameAsString()));
+            if (expr instanceof ObjectCreationExpr) {
+                names.addAll(parameters);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the number of executions that started at a snapshot
+     */
+    static long getResumed() {
+        return resumed.sum();
+    }
+
+    static void resetStatistics() {
+        resumed.reset();
+    }
+}
@@ -3,38 +3,60 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.CallableDeclaration;
 import com.github.javaparser.ast.stmt.BlockStmt;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.stream.Collectors;
 
 /**
- * Global registry of conditional branches discovered during symbolic evaluation.
+ * Registry of conditional branches discovered during symbolic evaluation, kept per
+ * {@link AnalysisSession}.
  * Maintains a priority queue per method so the test generator can systematically
  * target untravelled paths for branch coverage.
  */
 public class Branching {
-    private static final HashMap<CallableDeclaration<?>, PriorityQueue<LineOfCode>> conditionals = new HashMap<>();
-    private static final HashMap<Integer, LineOfCode> branches = new HashMap<>();
-    private static final BranchAttemptPlanner PLANNER = new BranchAttemptPlanner();
+    /**
+     * The state of this class, which belongs to the {@link AnalysisSession} of the current thread.
+     */
+    private static final class State {
+        /**
+         * Keyed by the {@link NodeIds node id} of the declaration, the structural hash code of a
+         * declaration has to walk the whole method.
+         */
+        final Map<Integer, PriorityQueue<LineOfCode>> conditionals = new HashMap<>();
+
+        /**
+         * Branches keyed by the {@link NodeIds node id} of their statement.
+         */
+        final HashMap<Integer, LineOfCode> branches = new HashMap<>();
+
+        final BranchAttemptPlanner planner = new BranchAttemptPlanner();
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
 
     private Branching() {
     }
 
     public static void clear() {
-        branches.clear();
-        conditionals.clear();
-        PLANNER.clear();
+        State state = state();
+        state.branches.clear();
+        state.conditionals.clear();
+        state.planner.clear();
     }
 
     public static void add(LineOfCode lineOfCode) {
         if (lineOfCode.shouldSchedule()) {
-            PriorityQueue<LineOfCode> queue = conditionals.computeIfAbsent(
-                lineOfCode.getCallableDeclaration(),
+            PriorityQueue<LineOfCode> queue = state().conditionals.computeIfAbsent(
+                NodeIds.ofNullable(lineOfCode.getCallableDeclaration()),
                 k -> new PriorityQueue<>(new LineOfCodeComparator())
             );
             if (!queue.contains(lineOfCode)) {
@@ -42,15 +64,15 @@ public class Branching {
                 queue.add(lineOfCode);
             }
         }
-        branches.putIfAbsent(lineOfCode.getStatement().hashCode(), lineOfCode);
+        state().branches.putIfAbsent(NodeIds.of(lineOfCode.getStatement()), lineOfCode);
     }
 
-    public static LineOfCode get(int hashCode) {
-        return branches.get(hashCode);
+    public static LineOfCode get(Node statement) {
+        return state().branches.get(NodeIds.of(statement));
     }
 
     public static List<LineOfCode> get(CallableDeclaration<?> methodDeclaration) {
-        PriorityQueue<LineOfCode> queue = conditionals.get(methodDeclaration);
+        PriorityQueue<LineOfCode> queue = state().conditionals.get(NodeIds.ofNullable(methodDeclaration));
         if (queue == null) {
             return new ArrayList<>();
         }
@@ -62,15 +84,16 @@ public class Branching {
     }
 
     public static BranchAttempt getBranchAttempt(CallableDeclaration<?> methodDeclaration, LineOfCode target) {
-        List<LineOfCode> relevantBranches = branches.values().stream()
-                .filter(lineOfCode -> lineOfCode.getCallableDeclaration().equals(methodDeclaration))
+        State state = state();
+        List<LineOfCode> relevantBranches = state.branches.values().stream()
+                .filter(lineOfCode -> NodeIds.same(lineOfCode.getCallableDeclaration(), methodDeclaration))
                 .collect(Collectors.toList());
-        return PLANNER.plan(methodDeclaration, target, relevantBranches);
+        return state.planner.plan(methodDeclaration, target, relevantBranches);
     }
 
     public static BranchAttempt selectTargetAttempt(LineOfCode target, BranchSide side,
                                                     List<java.util.Map<com.github.javaparser.ast.expr.Expression, Object>> combinations) {
-        return PLANNER.selectNextAttempt(target, side, combinations);
+        return state().planner.selectNextAttempt(target, side, combinations);
     }
 
     /**
@@ -80,9 +103,10 @@ public class Branching {
      * continue rather than break.
      */
     public static boolean resetBranchesWithUntriedCombinations(CallableDeclaration<?> cd) {
+        State state = state();
         boolean anyReset = false;
-        for (LineOfCode loc : branches.values()) {
-            if (loc.getCallableDeclaration().equals(cd) && PLANNER.hasUntriedCombinations(loc)) {
+        for (LineOfCode loc : state.branches.values()) {
+            if (NodeIds.same(loc.getCallableDeclaration(), cd) && state.planner.hasUntriedCombinations(loc)) {
                 loc.resetPathTaken();
                 requeue(loc);
                 anyReset = true;
@@ -97,7 +121,8 @@ public class Branching {
      * iterations.
      */
     public static void requeue(LineOfCode lineOfCode) {
-        PriorityQueue<LineOfCode> queue = conditionals.get(lineOfCode.getCallableDeclaration());
+        PriorityQueue<LineOfCode> queue = state().conditionals.get(
+                NodeIds.ofNullable(lineOfCode.getCallableDeclaration()));
         if (queue != null) {
             queue.add(lineOfCode);
         }
@@ -125,17 +150,17 @@ public class Branching {
         int targetOrder = getSourceOrder(lineOfCode);
         LineOfCode best = null;
         int bestOrder = Integer.MIN_VALUE;
-        for (LineOfCode candidate : branches.values()) {
+        for (LineOfCode candidate : state().branches.values()) {
             if (candidate.equals(lineOfCode)) {
                 continue;
             }
-            if (!candidate.getCallableDeclaration().equals(lineOfCode.getCallableDeclaration())) {
+            if (!NodeIds.same(candidate.getCallableDeclaration(), lineOfCode.getCallableDeclaration())) {
                 continue;
             }
             if (candidate.getParent() != lineOfCode.getParent()) {
                 continue;
             }
-            if (!targetBlock.equals(findEnclosingBlock(candidate))) {
+            if (!NodeIds.same(targetBlock, findEnclosingBlock(candidate))) {
                 continue;
             }
             int candidateOrder = getSourceOrder(candidate);
@@ -160,12 +185,12 @@ public class Branching {
 
     public static int size(CallableDeclaration<?> methodDeclaration)
     {
-        PriorityQueue<LineOfCode> queue = conditionals.get(methodDeclaration);
+        PriorityQueue<LineOfCode> queue = state().conditionals.get(NodeIds.ofNullable(methodDeclaration));
         return queue != null ? queue.size() : 0;
     }
 
     public static LineOfCode getHighestPriority(CallableDeclaration<?> md) {
-        PriorityQueue<LineOfCode> queue = conditionals.get(md);
+        PriorityQueue<LineOfCode> queue = state().conditionals.get(NodeIds.ofNullable(md));
         return queue != null ? queue.remove() : null;
     }
 
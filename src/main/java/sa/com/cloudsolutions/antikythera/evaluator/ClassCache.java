@@ -0,0 +1,234 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.field.FieldDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDefinition;
+import net.bytebuddy.description.type.TypeDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A persistent cache of the classes that {@link AKBuddy} generates from source code.</p>
+ *
+ * <p>Making a class with Byte Buddy costs far more than resolving the types that go into it, so
+ * the bytes of each generated class are saved and defined again on later runs. Entries are keyed
+ * by the SHA-256 of the source file of the type together with the shape of the type that is about to
+ * be generated: the fields, methods and annotations with the types they resolved to in this run,
+ * the methods of every super class and interface that it overrides, the interceptor methods that
+ * it delegates to and the Byte Buddy version. A changed source file, or a referenced type that
+ * now resolves to something else, simply misses the cache. Other types only appear by name in the
+ * generated bytes, so changes to their members do not matter.</p>
+ *
+ * <p>The objects that the generated methods delegate to cannot be saved. {@link AKBuddy} keeps
+ * them in static fields with predictable names and sets those again after defining the bytes.</p>
+ */
+final class ClassCache {
+    private static final Logger logger = LoggerFactory.getLogger(ClassCache.class);
+    /**
+     * Bump this whenever the layout of the generated classes changes.
+     */
+    private static final String FORMAT_VERSION = "1";
+    private static final String CLASS = ".class";
+    private static final String BYTE_BUDDY_VERSION = String.valueOf(ByteBuddy.class.getPackage().getImplementationVersion());
+    /**
+     * The methods of the classes that the generated classes delegate to, which decide how Byte
+     * Buddy binds each generated method.
+     */
+    private static final String DELEGATION = delegation(MethodInterceptor.class,
+            MethodInterceptor.MethodDeclarationSupport.class, MethodInterceptor.ConstructorDeclarationSupport.class);
+
+    private static final LongAdder hits = new LongAdder();
+
+    private final Path directory;
+
+    ClassCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates the class cache if it has been enabled in the settings.
+     *
+     * @return the cache or null if caching is disabled or there is nowhere to keep it
+     */
+    static ClassCache create() {
+        if (!Settings.getProperty(Settings.CLASS_CACHE, Boolean.class).orElse(false)) {
+            return null;
+        }
+        String cachePath = Settings.getCachePath();
+        if (cachePath == null) {
+            logger.warn("Class cache enabled but neither {} nor {} has been set", Settings.CACHE_PATH, Settings.OUTPUT_PATH);
+            return null;
+        }
+        return new ClassCache(Paths.get(cachePath, "classes"));
+    }
+
+    /**
+     * Computes the key for a class that is about to be generated.
+     *
+     * @param source the type declaration that the class is generated from
+     * @param generated the description of the class before it is made
+     * @return the key under which the bytes of the class are kept
+     */
+    String key(TypeDeclaration<?> source, TypeDescription generated) {
+        MessageDigest digest = sha256();
+        update(digest, FORMAT_VERSION);
+        update(digest, BYTE_BUDDY_VERSION);
+        update(digest, DELEGATION);
+        update(digest, generated.getName());
+        updateSource(digest, source);
+        update(digest, generated.getDeclaredAnnotations().toString());
+        for (FieldDescription field : generated.getDeclaredFields()) {
+            update(digest, field.toGenericString());
+            update(digest, field.getDeclaredAnnotations().toString());
+        }
+        for (MethodDescription method : generated.getDeclaredMethods()) {
+            update(digest, method.toGenericString());
+        }
+        updateSuperTypes(digest, generated, new HashSet<>());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Loads the bytes of a generated class.
+     *
+     * @param key see {@link #key(TypeDeclaration, TypeDescription)}
+     * @return the bytes or null if the cache does not have them
+     */
+    byte[] load(String key) {
+        Path entry = directory.resolve(key + CLASS);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(entry);
+            hits.increment();
+            return bytes;
+        } catch (IOException e) {
+            logger.debug("Ignoring unusable class cache entry {}: {}", entry, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves the bytes of a freshly generated class.
+     * Failures are logged and otherwise ignored; the cache is only ever an optimization.
+     *
+     * @param key see {@link #key(TypeDeclaration, TypeDescription)}
+     * @param bytes the class file
+     */
+    void store(String key, byte[] bytes) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "class", ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, directory.resolve(key + CLASS), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not add {} to the class cache: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of generated classes that were loaded from the cache
+     */
+    static long getHits() {
+        return hits.sum();
+    }
+
+    static void resetStatistics() {
+        hits.reset();
+    }
+
+    /**
+     * Hashes the file that the type was read from, or the printed type when it does not have one.
+     */
+    private static void updateSource(MessageDigest digest, TypeDeclaration<?> source) {
+        Path file = source.findCompilationUnit().flatMap(CompilationUnit::getStorage)
+                .map(CompilationUnit.Storage::getPath).orElse(null);
+        if (file != null) {
+            try {
+                digest.update(Files.readAllBytes(file));
+                digest.update((byte) 0);
+                return;
+            } catch (IOException e) {
+                logger.debug("Could not read {}: {}", file, e.getMessage());
+            }
+        }
+        update(digest, source.toString());
+    }
+
+    /**
+     * Every method of the super classes and interfaces may be overridden by the generated class.
+     */
+    private static void updateSuperTypes(MessageDigest digest, TypeDefinition type, Set<String> seen) {
+        List<TypeDefinition> parents = new ArrayList<>();
+        if (type.getSuperClass() != null) {
+            parents.add(type.getSuperClass());
+        }
+        parents.addAll(type.getInterfaces());
+        for (TypeDefinition parent : parents) {
+            TypeDescription erasure = parent.asErasure();
+            if (seen.add(erasure.getName())) {
+                update(digest, parent.toString());
+                List<String> methods = new ArrayList<>();
+                for (MethodDescription method : erasure.getDeclaredMethods()) {
+                    methods.add(method.toGenericString());
+                }
+                // reflection does not promise the same order on every run
+                methods.sort(null);
+                for (String method : methods) {
+                    update(digest, method);
+                }
+                updateSuperTypes(digest, erasure, seen);
+            }
+        }
+    }
+
+    private static String delegation(Class<?>... targets) {
+        StringBuilder b = new StringBuilder();
+        for (Class<?> target : targets) {
+            Method[] methods = target.getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::toGenericString));
+            for (Method method : methods) {
+                b.append(method.toGenericString())
+                        .append(Arrays.toString(method.getAnnotations()))
+                        .append(Arrays.deepToString(method.getParameterAnnotations()));
+            }
+        }
+        return b.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
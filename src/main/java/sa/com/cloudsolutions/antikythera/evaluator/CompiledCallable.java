@@ -0,0 +1,212 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.ClassExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.InstanceOfExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.LiteralExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.BreakStmt;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FPEvaluator;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>The statements and expressions of a callable, each with the evaluator method that runs it
+ * already chosen.</p>
+ *
+ * <p>The {@link Evaluator} tests every statement and expression against each kind of node before
+ * it can run it, and the same bodies are run again for every branch that is explored. When
+ * {@link Settings#COMPILED_EXECUTION} is enabled, the callable around a statement is translated
+ * the first time that one of its statements is executed: every statement and expression in it
+ * gets a step, a closure over the node cast to its own type that calls the evaluator method for
+ * that kind of node. Those methods are still called on the evaluator that runs the step, so the
+ * ones that the {@link ControlFlowEvaluator}, the {@link SpringEvaluator} and the
+ * {@link MockingEvaluator} override for branching and mocking are used exactly as before. Local
+ * variables keep going through the {@link LocalSlots}, and method calls through the call site
+ * cache.</p>
+ *
+ * <p>The steps are kept in the {@link AnalysisSession}, keyed by the identity of their node. A
+ * step only depends on the kind of its node, so it never goes stale. Nodes that are not in the
+ * session, such as clones, nodes added after the callable was translated and nodes that the
+ * evaluator makes up as it goes, are given a step on the spot.</p>
+ */
+final class CompiledCallable {
+    /**
+     * Runs a statement.
+     */
+    @FunctionalInterface
+    interface StatementStep {
+        void execute(Evaluator evaluator) throws Exception;
+    }
+
+    /**
+     * Evaluates an expression.
+     */
+    @FunctionalInterface
+    interface ExpressionStep {
+        Variable evaluate(Evaluator evaluator) throws ReflectiveOperationException;
+    }
+
+    private static final class State {
+        private final Map<Node, Object> steps = new IdentityHashMap<>();
+        private final Set<CallableDeclaration<?>> compiled = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private CompiledCallable() {
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
+
+    /**
+     * @return true if evaluators should run the statements and expressions through their steps
+     */
+    static boolean isEnabled() {
+        return Settings.getProperty(Settings.COMPILED_EXECUTION, Boolean.class).orElse(false);
+    }
+
+    /**
+     * Finds the step for a statement, translating the callable around it on first use.
+     *
+     * @param stmt the statement that is about to be executed
+     * @return the step that executes it
+     */
+    static StatementStep statement(Statement stmt) {
+        State state = state();
+        Object step = state.steps.get(stmt);
+        if (step == null) {
+            step = compile(state, stmt);
+        }
+        return step == null ? compile(stmt) : (StatementStep) step;
+    }
+
+    /**
+     * Finds the step for an expression, translating the callable around it on first use.
+     *
+     * @param expr the expression that is about to be evaluated
+     * @return the step that evaluates it
+     */
+    static ExpressionStep expression(Expression expr) {
+        State state = state();
+        Object step = state.steps.get(expr);
+        if (step == null) {
+            step = compile(state, expr);
+        }
+        return step == null ? compile(expr) : (ExpressionStep) step;
+    }
+
+    /**
+     * @return the number of statements and expressions that have a step in the current session
+     */
+    static int size() {
+        return state().steps.size();
+    }
+
+    /**
+     * Translates the callable that the node belongs to unless that has been done already.
+     *
+     * @return the step for the node, or null if it was not found in the callable. Nodes that are
+     * added to a callable after it was translated are not kept, the evaluator adds new method
+     * references and lambdas to the tree every time they are evaluated.
+     */
+    private static Object compile(State state, Node node) {
+        CallableDeclaration<?> callable = node.findAncestor(CallableDeclaration.class).orElse(null);
+        if (callable == null) {
+            return null;
+        }
+        if (!state.compiled.add(callable)) {
+            return null;
+        }
+        callable.walk(n -> {
+            if (n instanceof Statement s) {
+                state.steps.put(s, compile(s));
+            } else if (n instanceof Expression e) {
+                state.steps.put(e, compile(e));
+            }
+        });
+        return state.steps.get(node);
+    }
+
+    static StatementStep compile(Statement stmt) {
+        return switch (stmt) {
+            case ExpressionStmt s -> {
+                Expression expr = s.getExpression();
+                yield evaluator -> evaluator.evaluateExpression(expr);
+            }
+            case IfStmt s -> evaluator -> evaluator.ifThenElseBlock(s);
+            case TryStmt s -> evaluator -> evaluator.executeTry(s);
+            case ThrowStmt s -> evaluator -> evaluator.executeThrow(s);
+            case ReturnStmt s -> evaluator -> evaluator.returnValue = evaluator.executeReturnStatement(s);
+            case ForStmt s -> evaluator -> evaluator.executeForLoop(s);
+            case ForEachStmt s -> evaluator -> evaluator.executeForEach(s);
+            case DoStmt s -> evaluator -> evaluator.executeDoWhile(s);
+            case SwitchStmt s -> evaluator -> evaluator.executeSwitchStatement(s);
+            case WhileStmt s -> evaluator -> evaluator.executeWhile(s);
+            case BlockStmt s -> evaluator -> evaluator.executeBlock(s.getStatements());
+            case BreakStmt s -> Evaluator::executeBreak;
+            default -> evaluator -> evaluator.interpretStatement(stmt);
+        };
+    }
+
+    static ExpressionStep compile(Expression expr) {
+        return switch (expr) {
+            case NameExpr e -> evaluator -> evaluator.evaluateNameExpression(e);
+            case MethodCallExpr e -> evaluator -> evaluator.evaluateMethodCall(e);
+            case LiteralExpr e -> evaluator -> Evaluator.evaluateLiteral(e);
+            case VariableDeclarationExpr e -> evaluator -> evaluator.evaluateVariableDeclaration(e);
+            case BinaryExpr e -> evaluator -> evaluator.evaluateBinaryExpression(e);
+            case UnaryExpr e -> evaluator -> evaluator.evaluateUnaryExpression(e);
+            case AssignExpr e -> evaluator -> evaluator.evaluateAssignment(e);
+            case ObjectCreationExpr e -> evaluator -> evaluator.createObject(e);
+            case FieldAccessExpr e -> evaluator -> evaluator.evaluateFieldAccessExpression(e);
+            case ArrayInitializerExpr e -> evaluator -> evaluator.createArray(e);
+            case EnclosedExpr e -> {
+                Expression inner = e.getInner();
+                yield evaluator -> evaluator.evaluateExpression(inner);
+            }
+            case CastExpr e -> evaluator -> evaluator.evaluateCast(e);
+            case ConditionalExpr e -> evaluator -> evaluator.evaluateConditionalExpression(e);
+            case ClassExpr e -> evaluator -> evaluator.evaluateClassExpression(e);
+            case LambdaExpr e -> evaluator -> FPEvaluator.create(e, evaluator);
+            case ArrayAccessExpr e -> evaluator -> evaluator.evaluateArrayAccess(e);
+            case MethodReferenceExpr e -> evaluator -> evaluator.evaluateMethodReference(e);
+            case InstanceOfExpr e -> evaluator -> evaluator.evaluateInstanceOf(e);
+            case ThisExpr e -> evaluator -> new Variable(evaluator);
+            default -> evaluator -> evaluator.interpretExpression(expr);
+        };
+    }
+}
@@ -136,7 +136,7 @@ public class ConditionVisitor extends VoidVisitorAdapter<LineOfCode> {
                 Optional<Statement> elseStmt = ifStmt.getElseStmt();
 
                 // Check if this conditional is registered in Branching
-                LineOfCode lineOfCode = Branching.get(ifStmt.hashCode());
+                LineOfCode lineOfCode = Branching.get(ifStmt);
                 if (lineOfCode != null) {
                     if (isNodeInStatement(current, thenStmt)) {
                         conditions.add(ifStmt.getCondition());
@@ -1697,7 +1697,7 @@ public class ControlFlowEvaluator extends Evaluator {
     }
 
     private void addPreCondition(Statement statement, Expression expr) {
-        LineOfCode l = Branching.get(statement.hashCode());
+        LineOfCode l = Branching.get(statement);
         l.addPrecondition(new Precondition(expr));
     }
 
@@ -1736,7 +1736,7 @@ public class ControlFlowEvaluator extends Evaluator {
     Variable handleOptionalsHelper(Scope sc) throws ReflectiveOperationException {
         MethodCallExpr methodCall = sc.getScopedMethodCall();
         Statement stmt = methodCall.findAncestor(Statement.class).orElseThrow();
-        LineOfCode l = Branching.get(stmt.hashCode());
+        LineOfCode l = Branching.get(stmt);
         Variable v = (l == null) ? optionalPresentPath(sc, stmt, methodCall)
                 : optionalEmptyPath(sc, l);
         MockingCall then = new MockingCall(sc.getMCEWrapper().getMatchingCallable(), v);
@@ -1825,7 +1825,7 @@ public class ControlFlowEvaluator extends Evaluator {
     @SuppressWarnings("unchecked")
     private void handleOptionalOfNullable(ReflectionArguments reflectionArguments) {
         Statement stmt = reflectionArguments.getMethodCallExpression().findAncestor(Statement.class).orElseThrow();
-        LineOfCode l = Branching.get(stmt.hashCode());
+        LineOfCode l = Branching.get(stmt);
         if (BranchingTrace.isEnabled()) {
             BranchingTrace.record("ofNullable:seen|statement=" + stmt + "|existing=" + (l != null));
         }
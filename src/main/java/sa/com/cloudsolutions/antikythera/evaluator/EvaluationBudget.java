@@ -0,0 +1,121 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.exception.BudgetExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Limits the time and the number of steps that the evaluation of a method may take.</p>
+ *
+ * <p>A budget is started for each method that is evaluated and it belongs to the thread doing
+ * the evaluation. The evaluator takes a {@link #step()} for every statement, loop iteration and
+ * method call. Once the budget has run out every further step throws a
+ * {@link BudgetExceededException}, so the evaluation unwinds even when the code being evaluated
+ * catches the exception.</p>
+ *
+ * <p>The limits are given by the {@code evaluation_timeout} (milliseconds) and
+ * {@code evaluation_step_limit} settings, zero or absent means there is no limit.</p>
+ */
+public final class EvaluationBudget {
+    private static final ThreadLocal<EvaluationBudget> current = new ThreadLocal<>();
+    /**
+     * The clock is only read every so many steps.
+     */
+    private static final int CLOCK_INTERVAL = 256;
+
+    private final EvaluationBudget previous;
+    private final long timeout;
+    private final long deadline;
+    private final long stepLimit;
+    private long steps;
+    /**
+     * Why the budget ran out, null while it has not.
+     */
+    private String reason;
+
+    private EvaluationBudget(EvaluationBudget previous, long timeout, long stepLimit) {
+        this.previous = previous;
+        this.timeout = timeout;
+        this.deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * Starts a budget for the current thread with the limits from the settings. It replaces the
+     * budget that the thread may already have until {@link #end()} is called.
+     *
+     * @return the new budget
+     */
+    public static EvaluationBudget start() {
+        return start(getLimit(Settings.EVALUATION_TIMEOUT), getLimit(Settings.EVALUATION_STEP_LIMIT));
+    }
+
+    /**
+     * Starts a budget for the current thread.
+     *
+     * @param timeout the number of milliseconds the evaluation may take, zero for no limit
+     * @param stepLimit the number of steps the evaluation may take, zero for no limit
+     * @return the new budget
+     */
+    public static EvaluationBudget start(long timeout, long stepLimit) {
+        EvaluationBudget budget = new EvaluationBudget(current.get(), timeout, stepLimit);
+        current.set(budget);
+        return budget;
+    }
+
+    private static long getLimit(String key) {
+        return Settings.getProperty(key, Number.class).map(Number::longValue).orElse(0L);
+    }
+
+    /**
+     * Takes a step from the budget of the current thread, if it has one.
+     *
+     * @throws BudgetExceededException if the budget has run out
+     */
+    public static void step() {
+        EvaluationBudget budget = current.get();
+        if (budget != null) {
+            budget.take();
+        }
+    }
+
+    private void take() {
+        if (reason == null) {
+            steps++;
+            if (stepLimit > 0 && steps > stepLimit) {
+                reason = "Exceeded the limit of " + stepLimit + " steps";
+            } else if (deadline != 0 && steps % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                reason = "Exceeded the time limit of " + timeout + " ms";
+            }
+        }
+        if (reason != null) {
+            throw new BudgetExceededException(reason);
+        }
+    }
+
+    /**
+     * Removes the budget from the current thread, restoring the one it replaced.
+     */
+    public void end() {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * @return true if a step has been refused
+     */
+    public boolean isExhausted() {
+        return reason != null;
+    }
+
+    /**
+     * @return why the budget ran out, or null if it has not
+     */
+    public String getReason() {
+        return reason;
+    }
+}
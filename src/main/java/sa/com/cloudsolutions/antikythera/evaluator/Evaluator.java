@@ -31,6 +31,7 @@ import com.github.javaparser.ast.expr.InstanceOfExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.LongLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.NullLiteralExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
@@ -65,6 +66,7 @@ import sa.com.cloudsolutions.antikythera.evaluator.functional.SupplierEvaluator;
 import sa.com.cloudsolutions.antikythera.evaluator.logging.AKLogger;
 import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingRegistry;
 import sa.com.cloudsolutions.antikythera.exception.AUTException;
+import sa.com.cloudsolutions.antikythera.exception.BudgetExceededException;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 import sa.com.cloudsolutions.antikythera.exception.GeneratorException;
@@ -72,8 +74,10 @@ import sa.com.cloudsolutions.antikythera.finch.Finch;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import sa.com.cloudsolutions.antikythera.parser.Callable;
+import sa.com.cloudsolutions.antikythera.parser.CallSiteCache;
 import sa.com.cloudsolutions.antikythera.parser.ImportWrapper;
 import sa.com.cloudsolutions.antikythera.parser.MCEWrapper;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -81,11 +85,15 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InaccessibleObjectException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -95,6 +103,8 @@ import java.util.Set;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.BaseStream;
 
 
 /**
@@ -145,12 +155,24 @@ public class Evaluator implements EvaluationEngine {
      */
     protected final Map<String, Symbol> fields;
     /**
-     * <p>Local variables.</p>
+     * <p>Local variables that do not have a slot in the {@link LocalSlots} of a method.</p>
      *
      * <p>These are specific to a block statement. A block statement may also be an
-     * entire method. The primary key will be the hashcode of the block statement.</p>
+     * entire method. The primary key will be the {@link NodeIds node id} of the block statement.</p>
      */
     private final Map<Integer, Map<String, Symbol>> locals;
+    /**
+     * The local variables of each method that is being executed, keyed by the node id of the method.
+     */
+    private final Map<Integer, Frame> frames = new HashMap<>();
+    /**
+     * The frame that was used last, most lookups are for the same method as the one before.
+     */
+    private Frame lastFrame;
+    /**
+     * True if statements and expressions are run through the steps of a {@link CompiledCallable}.
+     */
+    private final boolean compiled = CompiledCallable.isEnabled();
     /**
      * The fully qualified name of the class for which we created this evaluator.
      */
@@ -181,6 +203,12 @@ public class Evaluator implements EvaluationEngine {
     protected TypeDeclaration<?> typeDeclaration;
     protected ByteArrayOutputStream capturedOutputStream;
 
+    /**
+     * Collects the fields that the visitors set up while this evaluator is being initialised as
+     * the prototype for its class. Null at all other times.
+     */
+    FieldPrototype.Recorder fieldRecorder;
+
     private static final AtomicLong sequence = new AtomicLong(0);
 
     private static ExceptionContext lastExceptionContext;
@@ -313,24 +341,24 @@ public class Evaluator implements EvaluationEngine {
      * @param expr the expression to evaluate
      * @return the result as a Variable instance which can be null if the expression is supposed to return null
      */
-    @SuppressWarnings("java:S3776")
     @Override
     public Variable evaluateExpression(Expression expr) throws ReflectiveOperationException {
+        if (compiled) {
+            return CompiledCallable.expression(expr).evaluate(this);
+        }
+        return interpretExpression(expr);
+    }
+
+    /**
+     * Evaluates an expression by testing it against each kind of expression in turn.
+     *
+     * @param expr the expression to evaluate
+     * @return the result, which may be null
+     */
+    @SuppressWarnings("java:S3776")
+    Variable interpretExpression(Expression expr) throws ReflectiveOperationException {
         if (expr.isNameExpr()) {
-            String name = expr.asNameExpr().getNameAsString();
-            Symbol s = getValue(expr, name);
-            if (s == null) {
-                ImportWrapper wrapper = AbstractCompiler.findImport(cu, expr.toString());
-                if (wrapper != null && wrapper.getField() != null) {
-                    VariableDeclarator vdecl = wrapper.getField().getVariable(0);
-                    if (vdecl != null && vdecl.getInitializer().isPresent()) {
-                        return evaluateExpression(vdecl.getInitializer().orElseThrow());
-                    }
-                }
-                return null;
-            }
-            if (s instanceof Variable v) return v;
-            return new Variable(s.getType(), s.getValue());
+            return evaluateNameExpression(expr);
         } else if (expr.isMethodCallExpr()) {
 
             /*
@@ -377,27 +405,7 @@ public class Evaluator implements EvaluationEngine {
              */
             return evaluateExpression(expr.asEnclosedExpr().getInner());
         } else if (expr.isCastExpr()) {
-            CastExpr castExpr = expr.asCastExpr();
-            Expression inner = castExpr.getExpression();
-            if (inner instanceof MethodCallExpr) {
-                boolean pushedPending = false;
-                Optional<CompilationUnit> cuOpt = expr.findCompilationUnit();
-                if (cuOpt.isPresent()) {
-                    String fqn = AbstractCompiler.findFullyQualifiedName(cuOpt.get(), castExpr.getType());
-                    if (fqn != null) {
-                        GeneratorState.pushPendingObjectStubReturnFqn(fqn);
-                        pushedPending = true;
-                    }
-                }
-                try {
-                    return evaluateExpression(inner);
-                } finally {
-                    if (pushedPending) {
-                        GeneratorState.popPendingObjectStubReturnFqn();
-                    }
-                }
-            }
-            return evaluateExpression(inner);
+            return evaluateCast(expr.asCastExpr());
         } else if (expr.isConditionalExpr()) {
             return evaluateConditionalExpression(expr.asConditionalExpr());
         } else if (expr.isClassExpr()) {
@@ -407,9 +415,7 @@ public class Evaluator implements EvaluationEngine {
         } else if (expr.isArrayAccessExpr()) {
             return evaluateArrayAccess(expr);
         } else if (expr.isMethodReferenceExpr()) {
-            return evaluateExpression(
-                    FunctionalConverter.convertToLambda(expr.asMethodReferenceExpr(), new Variable(this)
-                    ));
+            return evaluateMethodReference(expr.asMethodReferenceExpr());
         } else if (expr.isInstanceOfExpr()) {
             return evaluateInstanceOf(expr.asInstanceOfExpr());
         } else if (expr.isThisExpr()) {
@@ -420,7 +426,51 @@ public class Evaluator implements EvaluationEngine {
         return null;
     }
 
-    private Variable evaluateInstanceOf(InstanceOfExpr expr) throws ReflectiveOperationException {
+    Variable evaluateNameExpression(Expression expr) throws ReflectiveOperationException {
+        String name = expr.asNameExpr().getNameAsString();
+        Symbol s = getValue(expr, name);
+        if (s == null) {
+            ImportWrapper wrapper = AbstractCompiler.findImport(cu, expr.toString());
+            if (wrapper != null && wrapper.getField() != null) {
+                VariableDeclarator vdecl = wrapper.getField().getVariable(0);
+                if (vdecl != null && vdecl.getInitializer().isPresent()) {
+                    return evaluateExpression(vdecl.getInitializer().orElseThrow());
+                }
+            }
+            return null;
+        }
+        if (s instanceof Variable v) return v;
+        return new Variable(s.getType(), s.getValue());
+    }
+
+    Variable evaluateCast(CastExpr castExpr) throws ReflectiveOperationException {
+        Expression inner = castExpr.getExpression();
+        if (inner instanceof MethodCallExpr) {
+            boolean pushedPending = false;
+            Optional<CompilationUnit> cuOpt = castExpr.findCompilationUnit();
+            if (cuOpt.isPresent()) {
+                String fqn = AbstractCompiler.findFullyQualifiedName(cuOpt.get(), castExpr.getType());
+                if (fqn != null) {
+                    GeneratorState.pushPendingObjectStubReturnFqn(fqn);
+                    pushedPending = true;
+                }
+            }
+            try {
+                return evaluateExpression(inner);
+            } finally {
+                if (pushedPending) {
+                    GeneratorState.popPendingObjectStubReturnFqn();
+                }
+            }
+        }
+        return evaluateExpression(inner);
+    }
+
+    Variable evaluateMethodReference(MethodReferenceExpr expr) throws ReflectiveOperationException {
+        return evaluateExpression(FunctionalConverter.convertToLambda(expr, new Variable(this)));
+    }
+
+    Variable evaluateInstanceOf(InstanceOfExpr expr) throws ReflectiveOperationException {
         Expression left = expr.getExpression();
         Variable l = evaluateExpression(left);
         Type t = expr.getType();
@@ -444,7 +494,7 @@ public class Evaluator implements EvaluationEngine {
         return new Variable(false);
     }
 
-    private Variable evaluateArrayAccess(Expression expr) throws ReflectiveOperationException {
+    Variable evaluateArrayAccess(Expression expr) throws ReflectiveOperationException {
         ArrayAccessExpr arrayAccessExpr = expr.asArrayAccessExpr();
         Variable array = evaluateExpression(arrayAccessExpr.getName());
         Expression index = arrayAccessExpr.getIndex();
@@ -483,14 +533,14 @@ public class Evaluator implements EvaluationEngine {
         return null;
     }
 
-    private Variable evaluateBinaryExpression(BinaryExpr binaryExpr) throws ReflectiveOperationException {
+    Variable evaluateBinaryExpression(BinaryExpr binaryExpr) throws ReflectiveOperationException {
         Expression left = binaryExpr.getLeft();
         Expression right = binaryExpr.getRight();
 
         return evaluateBinaryExpression(binaryExpr.getOperator(), left, right);
     }
 
-    private Variable evaluateConditionalExpression(ConditionalExpr conditionalExpr) throws ReflectiveOperationException {
+    Variable evaluateConditionalExpression(ConditionalExpr conditionalExpr) throws ReflectiveOperationException {
         Variable v = evaluateExpression(conditionalExpr.getCondition());
         if (v != null && v.getValue().equals(Boolean.TRUE)) {
             return evaluateExpression(conditionalExpr.getThenExpr());
@@ -544,7 +594,7 @@ public class Evaluator implements EvaluationEngine {
         }
     }
 
-    private Variable evaluateUnaryExpression(Expression expr) throws ReflectiveOperationException {
+    Variable evaluateUnaryExpression(Expression expr) throws ReflectiveOperationException {
         UnaryExpr unaryExpr = expr.asUnaryExpr();
         Expression expression = unaryExpr.getExpression();
         Variable v = evaluateExpression(expression);
@@ -555,30 +605,15 @@ public class Evaluator implements EvaluationEngine {
                 return v;
             }
             case POSTFIX_INCREMENT, PREFIX_INCREMENT -> {
-                v.setValue(switch (v.getValue()) {
-                    case Integer n -> n + 1;
-                    case Double d -> d + 1;
-                    case Long l -> l + 1;
-                    default -> v.getValue();
-                });
+                v.setValue(Arithmetics.increment(v.getValue(), 1));
                 return v;
             }
             case POSTFIX_DECREMENT, PREFIX_DECREMENT -> {
-                v.setValue(switch (v.getValue()) {
-                    case Integer n -> n - 1;
-                    case Double d -> d - 1;
-                    case Long l -> l - 1;
-                    default -> v.getValue();
-                });
+                v.setValue(Arithmetics.increment(v.getValue(), -1));
                 return v;
             }
             case MINUS -> {
-                v.setValue(switch (v.getValue()) {
-                    case Integer n -> -n;
-                    case Double d -> -d;
-                    case Long l -> -l;
-                    default -> v.getValue();
-                });
+                v.setValue(Arithmetics.negate(v.getValue()));
                 return v;
             }
             default -> {
@@ -676,16 +711,16 @@ public class Evaluator implements EvaluationEngine {
         return AntikytheraRunTime.getStaticVariable(ownerClassName, fieldName);
     }
 
-    private Variable evaluateAssignment(Expression expr) throws ReflectiveOperationException {
+    Variable evaluateAssignment(Expression expr) throws ReflectiveOperationException {
         AssignExpr assignExpr = expr.asAssignExpr();
         Expression target = assignExpr.getTarget();
         Expression value = assignExpr.getValue();
 
         Variable v = switch (assignExpr.getOperator()) {
-            case PLUS -> evaluateBinaryExpression(BinaryExpr.Operator.PLUS, target, value);
-            case MULTIPLY -> evaluateBinaryExpression(BinaryExpr.Operator.MULTIPLY, target, value);
-            case MINUS -> evaluateBinaryExpression(BinaryExpr.Operator.MINUS, target, value);
-            case DIVIDE -> evaluateBinaryExpression(BinaryExpr.Operator.DIVIDE, target, value);
+            case PLUS -> evaluateCompoundAssignment(BinaryExpr.Operator.PLUS, target, value);
+            case MULTIPLY -> evaluateCompoundAssignment(BinaryExpr.Operator.MULTIPLY, target, value);
+            case MINUS -> evaluateCompoundAssignment(BinaryExpr.Operator.MINUS, target, value);
+            case DIVIDE -> evaluateCompoundAssignment(BinaryExpr.Operator.DIVIDE, target, value);
             default -> evaluateExpression(value);
         };
 
@@ -831,8 +866,7 @@ public class Evaluator implements EvaluationEngine {
     }
 
     private Variable createUsingEvaluator(TypeDeclaration<?> match, ObjectCreationExpr oce, Evaluator eval) throws ReflectiveOperationException {
-        List<ConstructorDeclaration> constructors = match.findAll(ConstructorDeclaration.class);
-        if (constructors.isEmpty()) {
+        if (match.findFirst(ConstructorDeclaration.class).isEmpty()) {
             return new Variable(eval);
         }
         MCEWrapper mce = wrapCallExpression(oce);
@@ -925,42 +959,97 @@ public class Evaluator implements EvaluationEngine {
      * @param name the name of the variable to look up
      * @return the Variable if it's found or null.
      */
-    @SuppressWarnings("java:S3776")
     @Override
     public Symbol getLocal(Node node, String name) {
-        Node n = node;
-
-        while (n != null) {
-            BlockStmt block = AbstractCompiler.findBlockStatement(n);
-            int hash = (block != null) ? block.hashCode() : 0;
-            if (hash == 0) {
-                for (Map<String, Symbol> entry : locals.values()) {
-                    Symbol v = entry.get(name);
+        LocalSlots.Lookup lookup = LocalSlots.lookup(node, name);
+        Frame frame = lookup.layout() == null ? null : frame(lookup.layout(), false);
+        Integer[] blocks = lookup.blocks();
+        int[] slots = lookup.slots();
+        for (int i = 0; i < blocks.length; i++) {
+            if (frame != null && slots[i] >= 0) {
+                Symbol v = frame.values[slots[i]];
+                if (v != null) {
+                    return v;
+                }
+            }
+            if (!locals.isEmpty()) {
+                Map<String, Symbol> localsVars = this.locals.get(blocks[i]);
+                if (localsVars != null) {
+                    Symbol v = localsVars.get(name);
                     if (v != null) {
                         return v;
                     }
                 }
-                break;
             }
+        }
+        return lookup.searchAll() ? findLocal(name) : null;
+    }
 
-            Map<String, Symbol> localsVars = this.locals.get(hash);
-
-            if (localsVars != null) {
-                Symbol v = localsVars.get(name);
-                if (v != null)
-                    return v;
+    /**
+     * Finds a local variable in any block of any method that is being executed.
+     *
+     * @param name the name of the variable to look up
+     * @return the first variable with that name or null.
+     */
+    public Symbol findLocal(String name) {
+        for (Map<String, Symbol> entry : locals.values()) {
+            Symbol v = entry.get(name);
+            if (v != null) {
+                return v;
             }
-            if (n instanceof MethodDeclaration) {
-                localsVars = this.locals.get(hash);
-                return localsVars == null ? null : localsVars.get(name);
+        }
+        for (Frame frame : frames.values()) {
+            for (int i = 0; i < frame.values.length; i++) {
+                if (frame.values[i] != null && frame.layout.nameOf(i).equals(name)) {
+                    return frame.values[i];
+                }
             }
-
-            n = block.getParentNode().orElse(null);
-
         }
         return null;
     }
 
+    /**
+     * Finds the frame for the method with the given layout. A frame that was filled in with an
+     * older layout of the same method is moved over to the new one.
+     *
+     * @param layout the current layout of the method
+     * @param create true if a frame should be created when there isn't one
+     * @return the frame or null if there isn't one and create is false.
+     */
+    private Frame frame(LocalSlots layout, boolean create) {
+        Frame frame = lastFrame;
+        if (frame != null && frame.layout == layout) {
+            return frame;
+        }
+        frame = frames.get(layout.getMethodId());
+        if (frame == null) {
+            if (!create) {
+                return null;
+            }
+            frame = new Frame(layout);
+            frames.put(layout.getMethodId(), frame);
+        } else if (frame.layout != layout) {
+            Symbol[] values = new Symbol[layout.size()];
+            for (int i = 0; i < frame.values.length; i++) {
+                Symbol v = frame.values[i];
+                if (v != null) {
+                    Integer block = frame.layout.blockOf(i);
+                    String name = frame.layout.nameOf(i);
+                    int slot = layout.slot(block, name);
+                    if (slot >= 0) {
+                        values[slot] = v;
+                    } else {
+                        locals.computeIfAbsent(block, k -> new HashMap<>()).put(name, v);
+                    }
+                }
+            }
+            frame.layout = layout;
+            frame.values = values;
+        }
+        lastFrame = frame;
+        return frame;
+    }
+
     /**
      * Sets a local variable
      *
@@ -989,11 +1078,13 @@ public class Evaluator implements EvaluationEngine {
             }
         }
 
-        BlockStmt block = AbstractCompiler.findBlockStatement(node);
-        int hash = (block != null) ? block.hashCode() : 0;
-
-        Map<String, Symbol> localVars = this.locals.computeIfAbsent(hash, k -> new HashMap<>());
-        localVars.put(nameAsString, v);
+        LocalSlots.Target target = LocalSlots.target(node, nameAsString);
+        if (target.slot() >= 0) {
+            frame(target.layout(), true).values[target.slot()] = v;
+        } else {
+            Map<String, Symbol> localVars = this.locals.computeIfAbsent(target.block(), k -> new HashMap<>());
+            localVars.put(nameAsString, v);
+        }
     }
 
     /**
@@ -1326,8 +1417,18 @@ public class Evaluator implements EvaluationEngine {
     }
 
     Variable reflectiveMethodCall(Variable v, ReflectionArguments reflectionArguments) throws ReflectiveOperationException {
+        if (v.getValue() instanceof BaseStream<?, ?>) {
+            // The JDK stream pipelines are not accessible, so the reflective route would only
+            // end up here after failing to invoke them. Going straight to the stream evaluator
+            // keeps each call to a single dispatch.
+            Variable result = StreamEvaluator.handleStreamMethods(v, reflectionArguments);
+            if (result != null) {
+                returnValue = result;
+                return returnValue;
+            }
+        }
         Class<?> targetClass = v.getClazz();
-        
+
         // Minimal type resolution: if we have a TypeWrapper with a runtime class, use it
         if (targetClass == null && v.getType() != null) {
             TypeWrapper wrapper = AbstractCompiler.findType(cu, v.getType().asString());
@@ -1408,7 +1509,7 @@ public class Evaluator implements EvaluationEngine {
         returnFrom = null;
         TypeDeclaration<?> cdecl = AbstractCompiler.getMatchingType(cu, getClassName()).orElseThrow();
         MCEWrapper mceWrapper = sc.getMCEWrapper();
-        Optional<Callable> n = AbstractCompiler.findCallableDeclaration(mceWrapper, cdecl);
+        Optional<Callable> n = CallSiteCache.findCallableDeclaration(mceWrapper, cdecl);
 
         if (n.isPresent()) {
             mceWrapper.setMatchingCallable(n.get());
@@ -1426,6 +1527,7 @@ public class Evaluator implements EvaluationEngine {
     }
 
     protected Variable executeCallable(Scope sc, Callable callable) throws ReflectiveOperationException {
+        EvaluationBudget.step();
         if (callable.isMethodDeclaration()) {
             MethodDeclaration methodDeclaration = callable.asMethodDeclaration();
             Type returnType = methodDeclaration.getType();
@@ -1496,7 +1598,7 @@ public class Evaluator implements EvaluationEngine {
                  * it maybe a getter or setter that has been defined through lombok annotations.
                  */
 
-                Optional<Callable> mdecl = AbstractCompiler.findMethodDeclaration(methodCallWrapper, cdecl.get());
+                Optional<Callable> mdecl = CallSiteCache.findMethodDeclaration(methodCallWrapper, cdecl.get());
 
                 if (mdecl.isPresent()) {
                     return executeMethod(mdecl.get().getCallableDeclaration());
@@ -1533,7 +1635,7 @@ public class Evaluator implements EvaluationEngine {
             if (old == null) {
                 field = "is" + methodName.replace("set", "");
             }
-            if (AntikytheraRunTime.stack.isEmpty()) {
+            if (AntikytheraRunTime.isStackEmpty()) {
                 logger.debug("Skipping Lombok setter '{}': no argument on stack", methodName);
                 return new Variable(null);
             }
@@ -1559,7 +1661,7 @@ public class Evaluator implements EvaluationEngine {
                 AbstractCompiler.instanceToClassName(AbstractCompiler.fullyQualifiedToShortName(className))).orElse(null);
         if (decl != null) {
             MCEWrapper wrapper = wrapCallExpression(methodCall);
-            Optional<Callable> md = AbstractCompiler.findMethodDeclaration(wrapper, decl);
+            Optional<Callable> md = CallSiteCache.findMethodDeclaration(wrapper, decl);
             if (md.isPresent() && md.get().isMethodDeclaration()) {
                 return executeMethod(md.get().asMethodDeclaration());
             }
@@ -1580,6 +1682,13 @@ public class Evaluator implements EvaluationEngine {
         return BinaryOps.binaryOps(operator, leftExpression, rightExpression, left, right);
     }
 
+    private Variable evaluateCompoundAssignment(BinaryExpr.Operator operator,
+                                                Expression target, Expression value) throws ReflectiveOperationException {
+        Variable current = evaluateExpression(target);
+        Variable result = BinaryOps.binaryOps(operator, target, value, current, evaluateExpression(value));
+        return Arithmetics.assign(current, result);
+    }
+
     @SuppressWarnings({"java:S3776", "java:S1130"})
     Variable resolveVariableDeclaration(VariableDeclarator variable) throws ReflectiveOperationException {
         List<TypeWrapper> resolvedTypes = AbstractCompiler.findTypesInVariable(variable);
@@ -1604,9 +1713,44 @@ public class Evaluator implements EvaluationEngine {
     }
 
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The variables of a method are kept in slots, the map is a live view over those slots and
+     * the variables that do not have one. Changes made through it are seen by the evaluator.</p>
+     */
     @Override
     public Map<Integer, Map<String, Symbol>> getLocals() {
-        return locals;
+        return new LocalsView();
+    }
+
+    /**
+     * Drops all the local variables.
+     */
+    protected void clearLocals() {
+        locals.clear();
+        frames.clear();
+        lastFrame = null;
+    }
+
+    /**
+     * Drops the local variables of a method before it is executed again.
+     *
+     * @param md the method that is about to be executed
+     */
+    private void clearLocals(MethodDeclaration md) {
+        frames.remove(NodeIds.of(md));
+        lastFrame = null;
+        if (!frames.isEmpty() || !locals.isEmpty()) {
+            for (Node n : md.getBody().orElseThrow().findAll(Node.class,
+                    n -> n instanceof BlockStmt || n instanceof MethodDeclaration)) {
+                if (n instanceof MethodDeclaration nested) {
+                    frames.remove(NodeIds.of(nested));
+                } else {
+                    locals.remove(NodeIds.of(n));
+                }
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -1786,19 +1930,27 @@ public class Evaluator implements EvaluationEngine {
             returnFrom = null;
             returnValue = null;
 
-            BlockStmt body = md.getBody().orElseThrow();
-            body.findAll(BlockStmt.class).forEach(block -> locals.remove(block.hashCode()));
+            clearLocals(md);
 
-            List<Statement> statements = body.getStatements();
             setupParameters(md);
 
-            executeBlock(statements);
+            executeBody(md);
 
             return returnValue;
         }
         return null;
     }
 
+    /**
+     * Executes the statements in the body of a method after its parameters have been set up.
+     *
+     * @param md the method declaration whose body is to be executed
+     * @throws ReflectiveOperationException if a reflection operation fails
+     */
+    protected void executeBody(MethodDeclaration md) throws ReflectiveOperationException {
+        executeBlock(md.getBody().orElseThrow().getStatements());
+    }
+
     @Override
     public Variable executeMethod(MethodDeclaration md) throws ReflectiveOperationException {
         return executeMethod((CallableDeclaration<?>) md);
@@ -1857,6 +2009,8 @@ public class Evaluator implements EvaluationEngine {
         }
         try {
             executeBlockHelper(statements);
+        } catch (BudgetExceededException e) {
+            throw e;
         } catch (Exception e) {
             handleApplicationException(e, statements.getFirst().findAncestor(BlockStmt.class).orElse(null));
         }
@@ -1866,6 +2020,7 @@ public class Evaluator implements EvaluationEngine {
     private void executeBlockHelper(List<Statement> statements) throws Exception {
         Evaluator.clearLastExceptionContext();
         for (Statement stmt : statements) {
+            EvaluationBudget.step();
             if (lastExceptionContext != null && lastExceptionContext.getException() != null) {
                 throw lastExceptionContext.getException();
             }
@@ -1893,6 +2048,20 @@ public class Evaluator implements EvaluationEngine {
      * @throws Exception if the execution fails.
      */
     void executeStatement(Statement stmt) throws Exception {
+        if (compiled) {
+            CompiledCallable.statement(stmt).execute(this);
+        } else {
+            interpretStatement(stmt);
+        }
+    }
+
+    /**
+     * Executes a statement by testing it against each kind of statement in turn.
+     *
+     * @param stmt the statement to execute
+     * @throws Exception if the execution fails.
+     */
+    void interpretStatement(Statement stmt) throws Exception {
         if (stmt.isExpressionStmt()) {
             /*
              * A line of code that is an expression. The expression itself can fall into various different
@@ -1910,8 +2079,7 @@ public class Evaluator implements EvaluationEngine {
             /*
              * Try takes a bit of trying
              */
-            catching.addLast(stmt.asTryStmt());
-            executeBlock(stmt.asTryStmt().getTryBlock().getStatements());
+            executeTry(stmt.asTryStmt());
         } else if (stmt.isThrowStmt()) {
             /*
              * Throw is tricky because we need to distinguish between what exceptions were raised by
@@ -1960,14 +2128,23 @@ public class Evaluator implements EvaluationEngine {
              * Breaking means signalling that the loop has to be ended for that we keep a stack
              * in with a flag for all the loops that are in our trace
              */
-            loops.pollLast();
-            loops.addLast(Boolean.FALSE);
+            executeBreak();
         } else {
             logger.info("Unhandled statement: {}", stmt);
         }
     }
 
-    private void executeSwitchStatement(SwitchStmt switchStmt) throws Exception {
+    void executeTry(TryStmt tryStmt) throws ReflectiveOperationException {
+        catching.addLast(tryStmt);
+        executeBlock(tryStmt.getTryBlock().getStatements());
+    }
+
+    void executeBreak() {
+        loops.pollLast();
+        loops.addLast(Boolean.FALSE);
+    }
+
+    void executeSwitchStatement(SwitchStmt switchStmt) throws Exception {
         boolean matchFound = false;
         Statement defaultStmt = null;
 
@@ -1994,7 +2171,7 @@ public class Evaluator implements EvaluationEngine {
         }
     }
 
-    private void executeForEach(Statement stmt) throws ReflectiveOperationException {
+    void executeForEach(Statement stmt) throws ReflectiveOperationException {
         loops.addLast(true);
         ForEachStmt forEachStmt = stmt.asForEachStmt();
         Variable iter = evaluateExpression(forEachStmt.getIterable());
@@ -2014,6 +2191,7 @@ public class Evaluator implements EvaluationEngine {
         evaluateExpression(forEachStmt.getVariable());
 
         for (int i = 0; i < Array.getLength(iterValue); i++) {
+            EvaluationBudget.step();
             Object value = Array.get(iterValue, i);
             for (VariableDeclarator vdecl : forEachStmt.getVariable().getVariables()) {
                 Symbol v = getLocal(forEachStmt, vdecl.getNameAsString());
@@ -2047,6 +2225,7 @@ public class Evaluator implements EvaluationEngine {
         try {
             int iteration = 0;
             for (Object value : list) {
+                EvaluationBudget.step();
                 loopCtx.setIterationWhenThrown(iteration);
                 loopCtx.setCurrentElement(new Variable(value));
                 
@@ -2068,7 +2247,7 @@ public class Evaluator implements EvaluationEngine {
     }
 
     @SuppressWarnings("java:S112")
-    private void executeThrow(Statement stmt) throws Exception {
+    void executeThrow(Statement stmt) throws Exception {
         ThrowStmt t = stmt.asThrowStmt();
         if (t.getExpression().isObjectCreationExpr()) {
             ObjectCreationExpr oce = t.getExpression().asObjectCreationExpr();
@@ -2084,7 +2263,7 @@ public class Evaluator implements EvaluationEngine {
         }
     }
 
-    private void executeForLoop(ForStmt forStmt) throws ReflectiveOperationException {
+    void executeForLoop(ForStmt forStmt) throws ReflectiveOperationException {
         // Create loop context for exception tracking
         LoopContext loopCtx = new LoopContext();
         loopCtx.setLoopStatement(forStmt);
@@ -2102,6 +2281,7 @@ public class Evaluator implements EvaluationEngine {
             }
             while ((boolean) evaluateExpression(forStmt.getCompare().orElseThrow()).getValue() &&
                     Boolean.TRUE.equals(loops.peekLast())) {
+                EvaluationBudget.step();
                 loopCtx.setIterationWhenThrown(iteration);
                 executeBlock(forStmt.getBody().asBlockStmt().getStatements());
                 for (Node n : forStmt.getUpdate()) {
@@ -2117,7 +2297,7 @@ public class Evaluator implements EvaluationEngine {
         }
     }
 
-    private void executeDoWhile(DoStmt whileStmt) throws ReflectiveOperationException {
+    void executeDoWhile(DoStmt whileStmt) throws ReflectiveOperationException {
         // Create loop context for exception tracking
         LoopContext loopCtx = new LoopContext();
         loopCtx.setLoopStatement(whileStmt);
@@ -2129,6 +2309,7 @@ public class Evaluator implements EvaluationEngine {
         try {
             int iteration = 0;
             do {
+                EvaluationBudget.step();
                 loopCtx.setIterationWhenThrown(iteration);
                 executeBlock(whileStmt.getBody().asBlockStmt().getStatements());
                 iteration++;
@@ -2146,7 +2327,7 @@ public class Evaluator implements EvaluationEngine {
      * @throws AntikytheraException         if there is an error in the execution
      * @throws ReflectiveOperationException if the classes cannot be instantiated as needed with reflection
      */
-    private void executeWhile(WhileStmt whileStmt) throws ReflectiveOperationException {
+    void executeWhile(WhileStmt whileStmt) throws ReflectiveOperationException {
         // Create loop context for exception tracking
         LoopContext loopCtx = new LoopContext();
         loopCtx.setLoopStatement(whileStmt);
@@ -2158,6 +2339,7 @@ public class Evaluator implements EvaluationEngine {
         try {
             int iteration = 0;
             while ((boolean) evaluateExpression(whileStmt.getCondition()).getValue() && Boolean.TRUE.equals(loops.peekLast())) {
+                EvaluationBudget.step();
                 loopCtx.setIterationWhenThrown(iteration);
                 executeBlock(whileStmt.getBody().asBlockStmt().getStatements());
                 iteration++;
@@ -2272,6 +2454,10 @@ public class Evaluator implements EvaluationEngine {
     public void setupFields() {
         cu.accept(new LazyFieldVisitor(className), null);
         processParentClasses(typeDeclaration, "LazyFieldVisitor");
+        setupLogger();
+    }
+
+    void setupLogger() {
         if (typeDeclaration != null) {
             typeDeclaration.getAnnotationByName("Slf4j").ifPresent(annotation -> {
                 try {
@@ -2440,7 +2626,7 @@ public class Evaluator implements EvaluationEngine {
     }
 
     public void reset() {
-        locals.clear();
+        clearLocals();
     }
 
     @Override
@@ -2528,6 +2714,9 @@ public class Evaluator implements EvaluationEngine {
                             || matchingClass.endsWith("." + cdecl.getNameAsString())));
                     if (sameClass) {
                         setupField(field, variable);
+                        if (fieldRecorder != null) {
+                            fieldRecorder.add(field, variable, (Variable) fields.get(variable.getNameAsString()));
+                        }
                     }
                 });
             }
@@ -2575,6 +2764,9 @@ public class Evaluator implements EvaluationEngine {
                     .flatMap(ClassOrInterfaceDeclaration::getFullyQualifiedName)
                     .ifPresent(name -> {
                         if (name.equals(matchingClass)) {
+                            if (fieldRecorder != null) {
+                                fieldRecorder.abandon();
+                            }
                             try {
                                 executeBlock(init.getBody().getStatements());
                             } catch (ReflectiveOperationException e) {
@@ -2613,4 +2805,243 @@ public class Evaluator implements EvaluationEngine {
     public static void clearLastExceptionContext() {
         lastExceptionContext = null;
     }
+
+    /**
+     * The local variables keyed by the node id of the block that they are declared in, see
+     * {@link #getLocals()}.
+     */
+    private final class LocalsView extends AbstractMap<Integer, Map<String, Symbol>> {
+        @Override
+        public Map<String, Symbol> get(Object key) {
+            return containsKey(key) ? new BlockView((Integer) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer block && blocks().contains(block);
+        }
+
+        @Override
+        public Map<String, Symbol> put(Integer key, Map<String, Symbol> value) {
+            Map<String, Symbol> old = remove(key);
+            new BlockView(key).putAll(value);
+            return old;
+        }
+
+        /**
+         * Returns a view of the block rather than the map made by the function, so that the
+         * variables put into it are seen by the evaluator.
+         */
+        @Override
+        public Map<String, Symbol> computeIfAbsent(Integer key,
+                Function<? super Integer, ? extends Map<String, Symbol>> mappingFunction) {
+            if (!containsKey(key)) {
+                Map<String, Symbol> value = mappingFunction.apply(key);
+                if (value == null) {
+                    return null;
+                }
+                new BlockView(key).putAll(value);
+            }
+            return new BlockView(key);
+        }
+
+        @Override
+        public Map<String, Symbol> remove(Object key) {
+            if (!containsKey(key)) {
+                return null;
+            }
+            BlockView view = new BlockView((Integer) key);
+            Map<String, Symbol> old = new HashMap<>(view);
+            view.clear();
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            clearLocals();
+        }
+
+        @Override
+        public Set<Entry<Integer, Map<String, Symbol>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, Map<String, Symbol>>> iterator() {
+                    Iterator<Integer> keys = blocks().iterator();
+                    return new Iterator<>() {
+                        private Integer last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Integer, Map<String, Symbol>> next() {
+                            last = keys.next();
+                            return new SimpleImmutableEntry<>(last, new BlockView(last));
+                        }
+
+                        @Override
+                        public void remove() {
+                            LocalsView.this.remove(last);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return blocks().size();
+                }
+            };
+        }
+
+        private Set<Integer> blocks() {
+            Set<Integer> blocks = new LinkedHashSet<>();
+            locals.forEach((block, vars) -> {
+                if (!vars.isEmpty()) {
+                    blocks.add(block);
+                }
+            });
+            for (Frame frame : frames.values()) {
+                for (int i = 0; i < frame.values.length; i++) {
+                    if (frame.values[i] != null) {
+                        blocks.add(frame.layout.blockOf(i));
+                    }
+                }
+            }
+            return blocks;
+        }
+    }
+
+    /**
+     * The local variables declared in one block. A variable is written to its slot when a frame
+     * has one for it, otherwise it goes to the map of the variables without a slot.
+     */
+    private final class BlockView extends AbstractMap<String, Symbol> {
+        private final Integer block;
+
+        BlockView(Integer block) {
+            this.block = block;
+        }
+
+        @Override
+        public Symbol get(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            for (Frame frame : frames.values()) {
+                int slot = frame.layout.slot(block, name);
+                if (slot >= 0 && frame.values[slot] != null) {
+                    return frame.values[slot];
+                }
+            }
+            Map<String, Symbol> vars = locals.get(block);
+            return vars == null ? null : vars.get(name);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Symbol put(String name, Symbol value) {
+            for (Frame frame : frames.values()) {
+                int slot = frame.layout.slot(block, name);
+                if (slot >= 0) {
+                    Symbol old = frame.values[slot];
+                    frame.values[slot] = value;
+                    return old;
+                }
+            }
+            return locals.computeIfAbsent(block, k -> new HashMap<>()).put(name, value);
+        }
+
+        @Override
+        public Symbol remove(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            Symbol old = null;
+            for (Frame frame : frames.values()) {
+                int slot = frame.layout.slot(block, name);
+                if (slot >= 0 && frame.values[slot] != null) {
+                    old = frame.values[slot];
+                    frame.values[slot] = null;
+                }
+            }
+            Map<String, Symbol> vars = locals.get(block);
+            Symbol v = vars == null ? null : vars.remove(name);
+            return old == null ? v : old;
+        }
+
+        @Override
+        public Set<Entry<String, Symbol>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Symbol>> iterator() {
+                    Iterator<String> names = names().iterator();
+                    return new Iterator<>() {
+                        private String last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Symbol> next() {
+                            last = names.next();
+                            return new SimpleEntry<>(last, get(last)) {
+                                @Override
+                                public Symbol setValue(Symbol value) {
+                                    super.setValue(value);
+                                    return put(getKey(), value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            BlockView.this.remove(last);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return names().size();
+                }
+            };
+        }
+
+        private Set<String> names() {
+            Set<String> names = new LinkedHashSet<>();
+            Map<String, Symbol> vars = locals.get(block);
+            if (vars != null) {
+                names.addAll(vars.keySet());
+            }
+            for (Frame frame : frames.values()) {
+                for (int i = 0; i < frame.values.length; i++) {
+                    if (frame.values[i] != null && block.equals(frame.layout.blockOf(i))) {
+                        names.add(frame.layout.nameOf(i));
+                    }
+                }
+            }
+            return names;
+        }
+    }
+
+    /**
+     * The values of the local variables of a method, indexed by their slot in the layout.
+     */
+    private static final class Frame {
+        private LocalSlots layout;
+        private Symbol[] values;
+
+        Frame(LocalSlots layout) {
+            this.layout = layout;
+            this.values = new Symbol[layout.size()];
+        }
+    }
 }
@@ -55,7 +55,8 @@ public class EvaluatorFactory {
      * <p>
      * If an auto-wired evaluator exists for the requested class, that instance is returned. Otherwise,
      * a new evaluator of the specified type is created, its fields are discovered via the compilation
-     * unit, and dependent field evaluators are created and initialized.
+     * unit, and dependent field evaluators are created and initialized. After the first instance of
+     * a class the fields are replayed from a {@link FieldPrototype} instead of being discovered again.
      * </p>
      *
      * @param c the creation context wrapping the target class name and optional enclosing evaluator
@@ -70,8 +71,7 @@ public class EvaluatorFactory {
 
         Evaluator eval = createLazily(c, evaluatorType);
         if (eval.getCompilationUnit() != null) {
-            eval.setupFields();
-            eval.initializeFields();
+            FieldPrototype.initialize(eval);
         }
         return evaluatorType.cast(eval);
     }
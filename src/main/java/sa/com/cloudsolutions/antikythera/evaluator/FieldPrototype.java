@@ -0,0 +1,229 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LiteralExpr;
+import com.github.javaparser.ast.type.Type;
+import sa.com.cloudsolutions.antikythera.parser.TypeResolutionCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>The fields of a class as they were set up for the first evaluator of that class, so that the
+ * following evaluators can be initialised without walking the compilation units of the class and
+ * its parents again.</p>
+ *
+ * <p>Each field is replayed in the order in which the visitors found it. A field whose value can
+ * not change, one without an initializer or with a literal one, is copied from the prototype or
+ * given its default again. Every other field goes through {@link Evaluator#setupField} as before,
+ * so initializers that create objects, call methods or read other fields are evaluated for each
+ * instance. Classes with initializer blocks and enums are always initialised in full.</p>
+ */
+final class FieldPrototype {
+    private static final DataKey<Prototypes> PROTOTYPES = new DataKey<>() {};
+
+    /**
+     * Marks a class that can not be stamped out from a prototype.
+     */
+    private static final FieldPrototype NONE = new FieldPrototype(List.of());
+
+    private static final Set<String> COPYABLE_TYPES = Set.of("String", "java.lang.String", "Integer", "Long",
+            "Double", "Float", "Short", "Byte", "Character", "Boolean");
+
+    /**
+     * Evaluators that set up their fields the way {@link Evaluator} does. Subclasses that override
+     * the field setup always have each field replayed through their own {@link Evaluator#setupField}.
+     */
+    private static final ClassValue<Boolean> PLAIN_FIELD_SETUP = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != Evaluator.class && c != null; c = c.getSuperclass()) {
+                for (var method : c.getDeclaredMethods()) {
+                    switch (method.getName()) {
+                        case "setupField", "setupFieldWithoutInitializer", "resolveVariableDeclaration" -> {
+                            return false;
+                        }
+                        default -> {
+                            // not part of the field setup
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+    };
+
+    private static final LongAdder stamped = new LongAdder();
+
+    private enum Kind { COPY, DEFAULT, SETUP }
+
+    private record Stamp(Kind kind, FieldDeclaration field, VariableDeclarator variable, Variable value) {}
+
+    /**
+     * The prototypes of one type declaration. The owner is kept because cloned nodes carry the
+     * data of the node they were cloned from.
+     *
+     * <p>The stamps also hold the fields of the parent classes, which are declared in other
+     * compilation units. When one of those is compiled again, or a parent that could not be found
+     * is registered, the type resolution cache moves on and the prototypes are recorded again.</p>
+     *
+     * @param generation the generation of the type resolution cache when the prototypes were recorded
+     * @param additions the number of types that had been registered at the time
+     */
+    private record Prototypes(TypeDeclaration<?> owner, int generation, int additions,
+                              Map<Class<?>, FieldPrototype> byEvaluator) {
+        boolean isCurrent(TypeDeclaration<?> type) {
+            return owner == type && generation == TypeResolutionCache.getGeneration()
+                    && additions == TypeResolutionCache.getAdditions();
+        }
+    }
+
+    private final List<Stamp> stamps;
+
+    private FieldPrototype(List<Stamp> stamps) {
+        this.stamps = stamps;
+    }
+
+    /**
+     * Set up and initialise the fields of a newly created evaluator, from the prototype of its
+     * class when there is one, or in full while recording the prototype when there is not.
+     */
+    static void initialize(Evaluator eval) {
+        TypeDeclaration<?> type = eval.typeDeclaration;
+        if (type == null || type.isEnumDeclaration()) {
+            eval.setupFields();
+            eval.initializeFields();
+            return;
+        }
+
+        FieldPrototype prototype = find(type, eval.getClass());
+        if (prototype == NONE) {
+            eval.setupFields();
+            eval.initializeFields();
+        } else if (prototype != null) {
+            prototype.stamp(eval);
+            stamped.increment();
+        } else {
+            int generation = TypeResolutionCache.getGeneration();
+            int additions = TypeResolutionCache.getAdditions();
+            Recorder recorder = new Recorder(PLAIN_FIELD_SETUP.get(eval.getClass()));
+            eval.fieldRecorder = recorder;
+            try {
+                eval.setupFields();
+                eval.initializeFields();
+            } finally {
+                eval.fieldRecorder = null;
+            }
+            store(type, eval.getClass(), recorder.build(), generation, additions);
+        }
+    }
+
+    private void stamp(Evaluator eval) {
+        for (Stamp stamp : stamps) {
+            switch (stamp.kind()) {
+                case COPY -> eval.fields.put(stamp.variable().getNameAsString(), stamp.value().copy());
+                case DEFAULT -> eval.setupFieldWithoutInitializer(stamp.variable());
+                case SETUP -> eval.setupField(stamp.field(), stamp.variable());
+            }
+        }
+        eval.setupLogger();
+    }
+
+    private static FieldPrototype find(TypeDeclaration<?> type, Class<?> evaluatorType) {
+        synchronized (type) {
+            Prototypes prototypes = type.containsData(PROTOTYPES) ? type.getData(PROTOTYPES) : null;
+            if (prototypes == null || !prototypes.isCurrent(type)) {
+                return null;
+            }
+            return prototypes.byEvaluator().get(evaluatorType);
+        }
+    }
+
+    /**
+     * Saves a prototype unless the types it was recorded against changed in the meantime.
+     */
+    private static void store(TypeDeclaration<?> type, Class<?> evaluatorType, FieldPrototype prototype,
+                              int generation, int additions) {
+        synchronized (type) {
+            if (generation != TypeResolutionCache.getGeneration() || additions != TypeResolutionCache.getAdditions()) {
+                return;
+            }
+            Prototypes prototypes = type.containsData(PROTOTYPES) ? type.getData(PROTOTYPES) : null;
+            if (prototypes == null || !prototypes.isCurrent(type)) {
+                prototypes = new Prototypes(type, generation, additions, new HashMap<>());
+                type.setData(PROTOTYPES, prototypes);
+            }
+            prototypes.byEvaluator().putIfAbsent(evaluatorType, prototype);
+        }
+    }
+
+    /**
+     * @return the number of evaluators whose fields were stamped out from a prototype
+     */
+    static long getStamped() {
+        return stamped.sum();
+    }
+
+    static void resetStatistics() {
+        stamped.reset();
+    }
+
+    /**
+     * Collects the fields in the order in which the visitors set them up.
+     */
+    static final class Recorder {
+        private final boolean plain;
+        private final List<Stamp> stamps = new ArrayList<>();
+        private boolean abandoned;
+
+        private Recorder(boolean plain) {
+            this.plain = plain;
+        }
+
+        void add(FieldDeclaration field, VariableDeclarator variable, Variable value) {
+            Kind kind = kindOf(field, variable, value);
+            stamps.add(new Stamp(kind, field, variable, kind == Kind.COPY ? value.copy() : null));
+        }
+
+        /**
+         * Called when an initializer block is executed, the class has to be set up in full.
+         */
+        void abandon() {
+            abandoned = true;
+        }
+
+        private Kind kindOf(FieldDeclaration field, VariableDeclarator variable, Variable value) {
+            if (!plain || field.isStatic() || field.getAnnotationByName("Mock").isPresent()
+                    || field.getAnnotationByName("Autowired").isPresent()
+                    || field.getAnnotationByName("OneToOne").isPresent()
+                    || field.getAnnotationByName("Id").isPresent()) {
+                return Kind.SETUP;
+            }
+            Expression init = variable.getInitializer().orElse(null);
+            if (init == null) {
+                return Kind.DEFAULT;
+            }
+            if (init instanceof LiteralExpr && value != null && isCopyable(variable.getType())
+                    && Variable.isImmutable(value.getValue())) {
+                return Kind.COPY;
+            }
+            return Kind.SETUP;
+        }
+
+        private static boolean isCopyable(Type type) {
+            return type.isPrimitiveType() || COPYABLE_TYPES.contains(type.asString());
+        }
+
+        private FieldPrototype build() {
+            return abandoned ? NONE : new FieldPrototype(List.copyOf(stamps));
+        }
+    }
+}
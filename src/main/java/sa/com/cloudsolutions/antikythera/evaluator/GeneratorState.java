@@ -13,35 +13,56 @@ import java.util.Map;
 import java.util.Set;
 
 /**
- * Holds static state accumulated during code evaluation that is used by the test generator.
+ * Holds the state accumulated during code evaluation that is used by the test generator, for the
+ * current {@link AnalysisSession}.
  * This allows the core evaluators (ControlFlowEvaluator, MockingRegistry, Reflect) to
  * record imports and mock setups without directly depending on TestGenerator.
  */
 public class GeneratorState {
-    private static List<Expression> whenThen = new ArrayList<>();
-    private static Set<ImportDeclaration> imports = new HashSet<>();
-
-    /** {@code scopeVariable|methodName} → fully qualified cast target for methods that return Object. */
-    private static final Map<String, String> mockStubReturnHints = new HashMap<>();
+    /**
+     * The state of this class, which belongs to the {@link AnalysisSession} of the current thread.
+     */
+    private static final class State {
+        final List<Expression> whenThen = new ArrayList<>();
+        final Set<ImportDeclaration> imports = new HashSet<>();
+
+        /** {@code scopeVariable|methodName} → fully qualified cast target for methods that return Object. */
+        final Map<String, String> mockStubReturnHints = new HashMap<>();
+
+        /**
+         * When evaluating {@code (T) mock.call()}, holds {@code T} so Mockito stubs use a cast-compatible
+         * {@code thenReturn} value instead of {@code new Object()}.
+         */
+        final Deque<String> pendingObjectStubReturnFqns = new ArrayDeque<>();
+    }
 
     /**
-     * When evaluating {@code (T) mock.call()}, holds {@code T} so Mockito stubs use a cast-compatible
-     * {@code thenReturn} value instead of {@code new Object()}.
+     * A copy of the state that the test generators read while they create a test.
+     *
+     * @param whenThen the mock setups
+     * @param imports the imports needed by the test
+     * @param mockStubReturnHints the cast targets for methods that return Object
      */
-    private static final Deque<String> pendingObjectStubReturnFqns = new ArrayDeque<>();
+    public record Snapshot(List<Expression> whenThen, Set<ImportDeclaration> imports,
+                           Map<String, String> mockStubReturnHints) {
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
 
     private GeneratorState() {}
 
     public static void addWhenThen(Expression expr) {
-        whenThen.add(expr);
+        state().whenThen.add(expr);
     }
 
     public static void clearWhenThen() {
-        whenThen.clear();
+        state().whenThen.clear();
     }
 
     public static List<Expression> getWhenThen() {
-        return whenThen;
+        return state().whenThen;
     }
 
     public static void addImport(ImportDeclaration s) {
@@ -51,52 +72,77 @@ public class GeneratorState {
         if (name.startsWith("sa.com.cloudsolutions.antikythera.") || name.contains("$")) {
             return;
         }
-        imports.add(s);
+        state().imports.add(s);
     }
 
     public static Set<ImportDeclaration> getImports() {
-        return imports;
+        return state().imports;
     }
 
     public static void clearImports() {
-        imports.clear();
+        state().imports.clear();
     }
 
     public static void clearMockStubReturnHints() {
-        mockStubReturnHints.clear();
+        state().mockStubReturnHints.clear();
     }
 
     public static void putMockStubReturnHint(String scopeVariableName, String methodName, String returnTypeFqn) {
         if (scopeVariableName == null || methodName == null || returnTypeFqn == null) {
             return;
         }
-        mockStubReturnHints.put(scopeVariableName + "|" + methodName, returnTypeFqn);
+        state().mockStubReturnHints.put(scopeVariableName + "|" + methodName, returnTypeFqn);
     }
 
     public static String getMockStubReturnHint(String scopeVariableName, String methodName) {
         if (scopeVariableName == null || methodName == null) {
             return null;
         }
-        return mockStubReturnHints.get(scopeVariableName + "|" + methodName);
+        return state().mockStubReturnHints.get(scopeVariableName + "|" + methodName);
     }
 
     public static void pushPendingObjectStubReturnFqn(String fqn) {
         if (fqn != null) {
-            pendingObjectStubReturnFqns.push(fqn);
+            state().pendingObjectStubReturnFqns.push(fqn);
         }
     }
 
     public static void popPendingObjectStubReturnFqn() {
-        if (!pendingObjectStubReturnFqns.isEmpty()) {
-            pendingObjectStubReturnFqns.pop();
+        Deque<String> pending = state().pendingObjectStubReturnFqns;
+        if (!pending.isEmpty()) {
+            pending.pop();
         }
     }
 
     public static String peekPendingObjectStubReturnFqn() {
-        return pendingObjectStubReturnFqns.isEmpty() ? null : pendingObjectStubReturnFqns.peek();
+        return state().pendingObjectStubReturnFqns.peek();
     }
 
     public static void clearPendingObjectStubReturnFqns() {
-        pendingObjectStubReturnFqns.clear();
+        state().pendingObjectStubReturnFqns.clear();
+    }
+
+    /**
+     * @return a copy of the state of the current session
+     */
+    public static Snapshot snapshot() {
+        State state = state();
+        return new Snapshot(new ArrayList<>(state.whenThen), new HashSet<>(state.imports),
+                new HashMap<>(state.mockStubReturnHints));
+    }
+
+    /**
+     * Replaces the state of the current session with a snapshot.
+     *
+     * @param snapshot a snapshot taken with {@link #snapshot()}
+     */
+    public static void restore(Snapshot snapshot) {
+        State state = state();
+        state.whenThen.clear();
+        state.whenThen.addAll(snapshot.whenThen());
+        state.imports.clear();
+        state.imports.addAll(snapshot.imports());
+        state.mockStubReturnHints.clear();
+        state.mockStubReturnHints.putAll(snapshot.mockStubReturnHints());
     }
 }
@@ -11,9 +11,9 @@ import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import sa.com.cloudsolutions.antikythera.parser.Callable;
+import sa.com.cloudsolutions.antikythera.parser.CallSiteCache;
 import sa.com.cloudsolutions.antikythera.parser.MCEWrapper;
 
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -32,11 +32,9 @@ public class InnerClassEvaluator extends Evaluator {
     public Symbol getValue(Node n, String name) {
         Symbol v = super.getValue(n, name);
         if (v == null) {
-            for (Map<String, Symbol> local : enclosure.getLocals().values()) {
-                v = local.get(name);
-                if (v != null) {
-                    return v;
-                }
+            v = enclosure.findLocal(name);
+            if (v != null) {
+                return v;
             }
             return enclosure.getField(name);
         }
@@ -68,7 +66,7 @@ public class InnerClassEvaluator extends Evaluator {
                 Optional<TypeDeclaration> parent = t.get().findAncestor(TypeDeclaration.class);
                 if (parent.isPresent() && parent.get().isClassOrInterfaceDeclaration()) {
                     ClassOrInterfaceDeclaration cdecl = parent.get().asClassOrInterfaceDeclaration();
-                    Optional<Callable> mdecl = AbstractCompiler.findMethodDeclaration(methodCall, cdecl);
+                    Optional<Callable> mdecl = CallSiteCache.findMethodDeclaration(methodCall, cdecl);
                     if (mdecl.isPresent()) {
                         return enclosure.executeMethod(mdecl.get().getCallableDeclaration());
                     }
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Set;
 
 import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
 
 
 /**
@@ -104,12 +105,12 @@ public class LineOfCode {
      * Checks if this `LineOfCode` is equal to another object.
      *
      * @param obj The object to compare with.
-     * @return `true` if the object is a `LineOfCode` with the same statement, otherwise `false`.
+     * @return `true` if the object is a `LineOfCode` for the same statement, otherwise `false`.
      */
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof LineOfCode b) {
-            return b.statement.equals(statement);
+            return NodeIds.same(b.statement, statement);
         }
         return false;
     }
@@ -117,11 +118,11 @@ public class LineOfCode {
     /**
      * Returns the hash code of this `LineOfCode`.
      *
-     * @return The hash code of the statement.
+     * @return The node id of the statement.
      */
     @Override
     public int hashCode() {
-        return statement.hashCode() + 109 * (callableDeclaration == null ? 11 : callableDeclaration.hashCode());
+        return NodeIds.ofNullable(statement);
     }
 
     /**
@@ -0,0 +1,415 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.TypePatternExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.observer.AstObserver;
+import com.github.javaparser.ast.observer.AstObserverAdapter;
+import com.github.javaparser.ast.observer.ObservableProperty;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.CatchClause;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The layout of the local variables of a method.</p>
+ *
+ * <p>Local variables belong to the innermost block around the node where they are declared. A
+ * name is looked up in the block of the node that uses it and then in each enclosing block up to
+ * the method declaration. All of that only depends on the shape of the AST, so it is worked out
+ * once per method: every local variable, parameter, pattern variable and catch parameter is given
+ * a slot, and every name expression in the method records the slots that it may refer to. The
+ * {@link Evaluator} keeps the values for a method in an array and reads them by index.</p>
+ *
+ * <p>Variables that are not declared inside a method, such as the ones in constructors, have no
+ * slot. Those are still kept in the map of the evaluator, keyed by the id of their block, and
+ * the {@link Lookup} tells which blocks of that map to search. Only method declarations get a
+ * layout, constructors, initializer blocks and lambdas outside of methods stay on the map.</p>
+ *
+ * <p>Each method is watched by a single observer, registered the first time a layout is made for
+ * it. A layout is thrown away if any node in the method is changed, added or moved, and the next
+ * lookup builds it again under the same observer. Like {@link NodeIds} the owner is saved along
+ * with everything stored on a node, because JavaParser copies node data over to clones.</p>
+ */
+final class LocalSlots {
+    private static final DataKey<LocalSlots> LAYOUT = new DataKey<>() {
+    };
+    private static final DataKey<Lookup> LOOKUP = new DataKey<>() {
+    };
+    private static final DataKey<Observer> OBSERVER = new DataKey<>() {
+    };
+    private static final Integer NO_BLOCK = 0;
+    private static final Integer[] NO_BLOCKS = new Integer[0];
+    private static final int[] NO_SLOTS = new int[0];
+
+    /**
+     * Used when there is no node to start from: nothing is searched.
+     */
+    private static final Lookup EMPTY = new Lookup(null, null, null, NO_BLOCKS, NO_SLOTS, false);
+
+    /**
+     * Where to look for a name that is used at a node.
+     *
+     * @param owner the node that the lookup was made for
+     * @param layout the layout of the enclosing method, or null if there is no such method
+     * @param name the name of the variable
+     * @param blocks the ids of the blocks to search, innermost first
+     * @param slots the slot of the name in each of those blocks, or -1 if it doesn't have one
+     * @param searchAll true if the walk ran out of blocks before it reached a method declaration.
+     *                  Every variable should then be searched after the blocks of the lookup.
+     */
+    record Lookup(Node owner, LocalSlots layout, String name, Integer[] blocks, int[] slots, boolean searchAll) {
+    }
+
+    /**
+     * Where a variable that is declared at a node is stored.
+     *
+     * @param layout the layout of the enclosing method, or null if there is no such method
+     * @param block the id of the innermost block, or zero if there is no enclosing block
+     * @param slot the slot of the variable, or -1 if it does not have one
+     */
+    record Target(LocalSlots layout, Integer block, int slot) {
+    }
+
+    private final MethodDeclaration method;
+    private final int methodId;
+    /**
+     * The slots of the variables declared in each block, keyed by the id of the block.
+     */
+    private final Map<Integer, Map<String, Integer>> declared = new HashMap<>();
+    /**
+     * The blocks to search, innermost first, starting from each block of the method.
+     */
+    private final Map<BlockStmt, Integer[]> chains = new IdentityHashMap<>();
+    private final List<Integer> slotBlocks = new ArrayList<>();
+    private final List<String> slotNames = new ArrayList<>();
+    private volatile boolean stale;
+
+    private LocalSlots(MethodDeclaration method) {
+        this.method = method;
+        this.methodId = NodeIds.of(method);
+    }
+
+    MethodDeclaration getMethod() {
+        return method;
+    }
+
+    /**
+     * The id of the method. Methods synthesised over and over again from the same origin share
+     * their ids, so the values kept for one copy are found again through the next.
+     */
+    int getMethodId() {
+        return methodId;
+    }
+
+    int size() {
+        return slotNames.size();
+    }
+
+    boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * The slot of the variable with the given name that is declared in the given block.
+     *
+     * @return the slot or -1 if the layout does not have one.
+     */
+    int slot(Integer block, String name) {
+        Map<String, Integer> names = declared.get(block);
+        if (names == null) {
+            return -1;
+        }
+        Integer slot = names.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return the id of the block that the variable in the given slot is declared in.
+     */
+    Integer blockOf(int slot) {
+        return slotBlocks.get(slot);
+    }
+
+    String nameOf(int slot) {
+        return slotNames.get(slot);
+    }
+
+    /**
+     * Finds the layout of a method, building it if it has not been done yet or if the method
+     * was changed after the layout was made.
+     *
+     * @param md a method declaration with a body
+     * @return the current layout of the method.
+     */
+    static LocalSlots of(MethodDeclaration md) {
+        // the data map of a node is not thread safe
+        synchronized (md) {
+            LocalSlots layout = md.findData(LAYOUT).orElse(null);
+            if (layout != null && layout.method == md && !layout.stale) {
+                return layout;
+            }
+            layout = new LocalSlots(md);
+            layout.build();
+            md.setData(LAYOUT, layout);
+            observe(md).layout = layout;
+            return layout;
+        }
+    }
+
+    /**
+     * Finds where to look for a local variable.
+     *
+     * @param node the node being evaluated, which may be null
+     * @param name the name of the variable
+     * @return the blocks and slots to search for the variable.
+     */
+    static Lookup lookup(Node node, String name) {
+        if (node == null) {
+            return EMPTY;
+        }
+        Lookup lookup;
+        synchronized (node) {
+            lookup = node.findData(LOOKUP).orElse(null);
+        }
+        if (lookup != null && lookup.owner == node && lookup.name.equals(name)
+                && (lookup.layout == null || !lookup.layout.stale)) {
+            return lookup;
+        }
+        MethodDeclaration md = methodOf(node);
+        if (md == null) {
+            lookup = unscoped(node, name);
+        } else {
+            lookup = of(md).resolve(node, name);
+        }
+        remember(node, lookup);
+        return lookup;
+    }
+
+    /**
+     * Finds where a variable that is declared at the given node should be stored.
+     *
+     * @param node the node being evaluated
+     * @param name the name of the variable
+     * @return the layout and slot for the variable, or the block id to store it against when
+     *      there is no slot for it.
+     */
+    static Target target(Node node, String name) {
+        MethodDeclaration md = methodOf(node);
+        Integer block = keyOf(node);
+        if (md == null) {
+            return new Target(null, block, -1);
+        }
+        LocalSlots layout = of(md);
+        return new Target(layout, block, layout.slot(block, name));
+    }
+
+    /**
+     * The key in the locals map of the evaluator for variables declared at the given node.
+     *
+     * @param node the node being evaluated
+     * @return the node id of the innermost block, or zero if there is no enclosing block.
+     */
+    static Integer keyOf(Node node) {
+        BlockStmt block = AbstractCompiler.findBlockStatement(node);
+        return block == null ? NO_BLOCK : Integer.valueOf(NodeIds.of(block));
+    }
+
+    /**
+     * The method that owns the local variables visible at the node: the nearest method
+     * declaration, which the node may be itself.
+     */
+    private static MethodDeclaration methodOf(Node node) {
+        Node n = node;
+        while (n != null) {
+            if (n instanceof MethodDeclaration md) {
+                return md.getBody().isPresent() ? md : null;
+            }
+            n = n.getParentNode().orElse(null);
+        }
+        return null;
+    }
+
+    private static void remember(Node node, Lookup lookup) {
+        synchronized (node) {
+            node.setData(LOOKUP, lookup);
+        }
+    }
+
+    /**
+     * Code outside of methods has no layout: the enclosing blocks are searched first, then
+     * every variable.
+     */
+    private static Lookup unscoped(Node node, String name) {
+        List<Integer> ids = new ArrayList<>();
+        BlockStmt block = AbstractCompiler.findBlockStatement(node);
+        while (block != null) {
+            Integer id = NodeIds.of(block);
+            if (ids.isEmpty() || !ids.getLast().equals(id)) {
+                ids.add(id);
+            }
+            block = block.getParentNode().map(AbstractCompiler::findBlockStatement).orElse(null);
+        }
+        int[] slots = new int[ids.size()];
+        Arrays.fill(slots, -1);
+        return new Lookup(node, null, name, ids.toArray(NO_BLOCKS), slots, true);
+    }
+
+    private Lookup resolve(Node node, String name) {
+        Integer[] blocks;
+        if (node == method) {
+            // the lookup stops at the method body when it starts from the method itself
+            blocks = chains.get(method.getBody().orElseThrow());
+        } else {
+            blocks = chains.get(AbstractCompiler.findBlockStatement(node));
+        }
+        if (blocks == null) {
+            // a node that was attached to the method without telling its observers
+            blocks = chain(AbstractCompiler.findBlockStatement(node));
+        }
+        int[] slots = new int[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            slots[i] = slot(blocks[i], name);
+        }
+        return new Lookup(node, this, name, blocks, slots, false);
+    }
+
+    private Integer[] chain(BlockStmt start) {
+        List<Integer> ids = new ArrayList<>();
+        Node n = start;
+        while (n != null) {
+            BlockStmt block = AbstractCompiler.findBlockStatement(n);
+            Integer id = NodeIds.of(block);
+            if (ids.isEmpty() || !ids.getLast().equals(id)) {
+                ids.add(id);
+            }
+            if (n instanceof MethodDeclaration) {
+                break;
+            }
+            n = block.getParentNode().orElse(null);
+        }
+        return ids.toArray(NO_BLOCKS);
+    }
+
+    /**
+     * The pre-pass over the method. Nested method declarations, which belong to local or
+     * anonymous classes, have layouts of their own and are skipped.
+     */
+    private void build() {
+        BlockStmt body = method.getBody().orElseThrow();
+        chains.put(body, chain(body));
+        Integer bodyId = NodeIds.of(body);
+        for (Parameter p : method.getParameters()) {
+            declare(bodyId, p.getNameAsString());
+        }
+        List<Node> names = new ArrayList<>();
+        visit(body, names);
+        for (Node n : names) {
+            String name = n instanceof NameExpr ne ? ne.getNameAsString()
+                    : ((AssignExpr) n).getTarget().asNameExpr().getNameAsString();
+            remember(n, resolve(n, name));
+        }
+    }
+
+    /**
+     * Finds the observer of a method, registering it if the method is not watched yet.
+     */
+    private static Observer observe(MethodDeclaration md) {
+        Observer observer = md.findData(OBSERVER).orElse(null);
+        if (observer == null || observer.method != md) {
+            observer = new Observer(md);
+            md.register(observer, Node.ObserverRegistrationMode.SELF_PROPAGATING);
+            md.setData(OBSERVER, observer);
+        }
+        return observer;
+    }
+
+    /**
+     * @return the observer that watches the method of this layout.
+     */
+    AstObserver getObserver() {
+        return method.findData(OBSERVER).orElseThrow();
+    }
+
+    private void visit(Node node, List<Node> names) {
+        switch (node) {
+            case BlockStmt block -> chains.put(block, chain(block));
+            case VariableDeclarator vd when vd.getParentNode().orElse(null) instanceof VariableDeclarationExpr ->
+                    declare(keyOf(vd), vd.getNameAsString());
+            case TypePatternExpr pattern -> declare(keyOf(pattern), pattern.getNameAsString());
+            case CatchClause clause -> declare(keyOf(clause.getParentNode().orElseThrow()),
+                    clause.getParameter().getNameAsString());
+            case NameExpr ignored -> names.add(node);
+            case AssignExpr assign when assign.getTarget().isNameExpr() -> names.add(node);
+            default -> {
+                // nothing is declared or looked up here
+            }
+        }
+        for (Node child : node.getChildNodes()) {
+            if (!(child instanceof MethodDeclaration)) {
+                visit(child, names);
+            }
+        }
+    }
+
+    private void declare(Integer block, String name) {
+        declared.computeIfAbsent(block, k -> new HashMap<>()).computeIfAbsent(name, k -> {
+            slotBlocks.add(block);
+            slotNames.add(name);
+            return slotNames.size() - 1;
+        });
+    }
+
+    /**
+     * Marks the current layout of the method as stale when anything in the method changes.
+     */
+    private static final class Observer extends AstObserverAdapter {
+        private final MethodDeclaration method;
+        private volatile LocalSlots layout;
+
+        private Observer(MethodDeclaration method) {
+            this.method = method;
+        }
+
+        private void changed() {
+            LocalSlots current = layout;
+            if (current != null) {
+                current.stale = true;
+            }
+        }
+
+        @Override
+        public void propertyChange(Node observedNode, ObservableProperty property, Object oldValue, Object newValue) {
+            changed();
+        }
+
+        @Override
+        public void parentChange(Node observedNode, Node previousParent, Node newParent) {
+            changed();
+        }
+
+        @Override
+        public void listChange(NodeList<?> observedNode, ListChangeType type, int index, Node nodeAddedOrRemoved) {
+            changed();
+        }
+
+        @Override
+        public void listReplacement(NodeList<?> observedNode, int index, Node oldNode, Node newNode) {
+            changed();
+        }
+    }
+}
@@ -15,6 +15,9 @@ import sa.com.cloudsolutions.antikythera.parser.Callable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Intercepts constructor and method invocations on Byte Buddy–generated instances and forwards them to
@@ -40,9 +43,24 @@ import java.lang.reflect.Method;
  */
 public class MethodInterceptor {
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MethodInterceptor.class);
+
     private final EvaluationEngine evaluator;
     private Class<?> wrappedClass = Object.class;
 
+    /**
+     * What the last synchronization wrote into each field of the instance, keyed by field name.
+     * A field is only written again when the evaluator holds a different value or something else
+     * has overwritten the instance field since.
+     */
+    private final Map<String, Synced> synced = new HashMap<>();
+    private Object syncedInstance;
+
+    /**
+     * @param source the value held by the evaluator
+     * @param written the value written into the instance field, a proxy when the source is an evaluator
+     */
+    private record Synced(Object source, Object written) {}
+
     /**
      * Creates an interceptor that forwards calls to the supplied evaluation engine.
      *
@@ -137,24 +155,22 @@ public class MethodInterceptor {
             }
 
             // Fallback: read directly from instance field
-            try {
-                Field field = instance.getClass().getDeclaredField(fieldName);
-                field.setAccessible(true);
+            Field field = instanceField(instance, fieldName);
+            if (field != null) {
                 return field.get(instance);
-            } catch (NoSuchFieldException e) {
-                logger.debug("Getter fallback: field '{}' not found on {}", fieldName, instance.getClass().getName());
             }
+            logger.debug("Getter fallback: field '{}' not found on {}", fieldName, instance.getClass().getName());
         }
 
         // For setters, write directly to both instance and evaluator
         if (args.length == 1 && method.getName().startsWith("set") &&
                 (method.getReturnType().equals(void.class) || method.getReturnType().equals(Void.class))) {
             String fieldName = getFieldNameFromSetter(method.getName());
-            try {
+            Field field = instanceField(instance, fieldName);
+            if (field != null) {
                 // Update instance field
-                Field field = instance.getClass().getDeclaredField(fieldName);
-                field.setAccessible(true);
                 field.set(instance, args[0]);
+                markSynced(instance, fieldName, args[0], args[0]);
 
                 // Update evaluator field
                 evaluator.setField(fieldName, new Variable(args[0]));
@@ -165,9 +181,8 @@ public class MethodInterceptor {
                     evaluator.executeMethod(methodDecl);
                 }
                 return null; // setters return void
-            } catch (NoSuchFieldException e) {
-                logger.debug("Setter fallback: field '{}' not found on {}", fieldName, instance.getClass().getName());
             }
+            logger.debug("Setter fallback: field '{}' not found on {}", fieldName, instance.getClass().getName());
         }
 
         pushArgs(args);
@@ -206,20 +221,19 @@ public class MethodInterceptor {
         // Iterate through all fields in the type declaration
         for (FieldDeclaration field : dtoType.getFields()) {
             String fieldName = field.getVariable(0).getNameAsString();
-            try {
-                Field instanceField = instance.getClass().getDeclaredField(fieldName);
-                instanceField.setAccessible(true);
-                Object value = instanceField.get(instance);
-
-                // Only update if instance has a non-null value and evaluator doesn't
-                if (value != null) {
-                    Symbol existingValue = evaluator.getField(fieldName);
-                    if (existingValue == null || existingValue.getValue() == null) {
-                        evaluator.setField(fieldName, new Variable(value));
-                    }
-                }
-            } catch (NoSuchFieldException e) {
+            Field instanceField = instanceField(instance, fieldName);
+            if (instanceField == null) {
                 logger.debug("Sync to evaluator: field '{}' not found on {} (skipping)", fieldName, instance.getClass().getName());
+                continue;
+            }
+            Object value = instanceField.get(instance);
+
+            // Only update if instance has a non-null value and evaluator doesn't
+            if (value != null) {
+                Symbol existingValue = evaluator.getField(fieldName);
+                if (existingValue == null || existingValue.getValue() == null) {
+                    evaluator.setField(fieldName, new Variable(value));
+                }
             }
         }
     }
@@ -230,6 +244,8 @@ public class MethodInterceptor {
      * For each field declared in the parsed type, this reads the evaluator’s value and writes it to the instance via
      * reflection. If a field value is itself an EvaluationEngine (nested object), a dynamic proxy instance is created
      * via AKBuddy so callers interact with a concrete object while evaluation continues to be routed through the engine.
+     * Fields whose evaluator value and instance value are both unchanged since the previous synchronization are
+     * skipped, so a nested object keeps its proxy instead of getting a new one on every call.
      *
      * @param instance the concrete instance to receive evaluator field values
      * @throws ReflectiveOperationException if reflection access fails
@@ -251,27 +267,63 @@ public class MethodInterceptor {
             Symbol evaluatorFieldValue = evaluator.getField(fieldName);
 
             if (evaluatorFieldValue != null) {
-                try {
-                    Field instanceField = instance.getClass().getDeclaredField(fieldName);
-                    instanceField.setAccessible(true);
-
-                    Object value = evaluatorFieldValue.getValue();
-                    if (value instanceof EvaluationEngine eval) {
-                        // Handle nested evaluator objects
-                        MethodInterceptor nestedInterceptor = new MethodInterceptor(eval);
-                        Class<?> nestedClass = AKBuddy.createDynamicClass(nestedInterceptor);
-                        Object nestedInstance = AKBuddy.createInstance(nestedClass, nestedInterceptor);
-                        instanceField.set(instance, nestedInstance);
-                    } else {
-                        instanceField.set(instance, value);
-                    }
-                } catch (NoSuchFieldException e) {
+                Field instanceField = instanceField(instance, fieldName);
+                if (instanceField == null) {
                     logger.debug("Sync to instance: field '{}' not found on {} (skipping)", fieldName, instance.getClass().getName());
+                    continue;
+                }
+
+                Object value = evaluatorFieldValue.getValue();
+                if (isSynced(instance, instanceField, value)) {
+                    continue;
+                }
+                Object written = value;
+                if (value instanceof EvaluationEngine eval) {
+                    // Handle nested evaluator objects
+                    MethodInterceptor nestedInterceptor = new MethodInterceptor(eval);
+                    Class<?> nestedClass = AKBuddy.createDynamicClass(nestedInterceptor);
+                    written = AKBuddy.createInstance(nestedClass, nestedInterceptor);
                 }
+                instanceField.set(instance, written);
+                markSynced(instance, fieldName, value, written);
             }
         }
     }
 
+    /**
+     * Looks up a declared field of the generated class of the instance, so that the field
+     * synchronization does not look it up again on every intercepted call.
+     *
+     * @return the accessible field, or null when the class has no such field
+     */
+    private static Field instanceField(Object instance, String fieldName) {
+        return AKBuddy.declaredField(instance.getClass(), fieldName);
+    }
+
+    /**
+     * True when the evaluator still holds the value that was last written into the field and the
+     * instance field has not been changed since.
+     */
+    private boolean isSynced(Object instance, Field instanceField, Object value) throws IllegalAccessException {
+        if (syncedInstance != instance) {
+            return false;
+        }
+        Synced last = synced.get(instanceField.getName());
+        if (last == null || last.source() != value) {
+            return false;
+        }
+        Object current = instanceField.get(instance);
+        return instanceField.getType().isPrimitive() ? Objects.equals(current, last.written()) : current == last.written();
+    }
+
+    private void markSynced(Object instance, String fieldName, Object source, Object written) {
+        if (syncedInstance != instance) {
+            synced.clear();
+            syncedInstance = instance;
+        }
+        synced.put(fieldName, new Synced(source, written));
+    }
+
     /**
      * Intercepts a method invocation when no evaluator has been provided and returns a value based on
      * stubbing, delegation, or defaulting:
@@ -479,11 +531,10 @@ public class MethodInterceptor {
             if (args.length == 1 && method.getName().startsWith("set") && method.getReturnType().equals(void.class)) {
                 String fieldName = method.getName().substring(3);
                 fieldName = Character.toLowerCase(fieldName.charAt(0)) + fieldName.substring(1);
-                try {
-                    Field field = instance.getClass().getDeclaredField(fieldName);
-                    field.setAccessible(true);
+                Field field = instanceField(instance, fieldName);
+                if (field != null) {
                     field.set(instance, args[0]);
-                } catch (NoSuchFieldException e) {
+                } else {
                     logger.debug("MethodDeclarationSupport: field '{}' not found on {} (setter path)", fieldName, instance.getClass().getName());
                 }
             }
@@ -199,7 +199,7 @@ public class MockingEvaluator extends ControlFlowEvaluator {
             }
             MethodCallExpr methodCall = sc.getScopedMethodCall();
             Statement stmt = methodCall.findAncestor(Statement.class).orElseThrow();
-            LineOfCode l = Branching.get(stmt.hashCode());
+            LineOfCode l = Branching.get(stmt);
             Variable v;
             if (l == null) {
                 l = new LineOfCode(stmt);
@@ -229,7 +229,7 @@ public class MockingEvaluator extends ControlFlowEvaluator {
     private Variable createRepositoryBooleanVariable(Scope sc) {
         MethodCallExpr methodCall = sc.getScopedMethodCall();
         Statement stmt = methodCall.findAncestor(Statement.class).orElseThrow();
-        LineOfCode l = Branching.get(stmt.hashCode());
+        LineOfCode l = Branching.get(stmt);
         boolean value;
 
         if (l == null) {
@@ -634,7 +634,7 @@ public class MockingEvaluator extends ControlFlowEvaluator {
     private Variable handleRepositoryOptionalDeclaration(Scope sc, MethodDeclaration md) {
         MethodCallExpr methodCall = sc.getScopedMethodCall();
         Statement stmt = methodCall.findAncestor(Statement.class).orElseThrow();
-        LineOfCode branch = Branching.get(stmt.hashCode());
+        LineOfCode branch = Branching.get(stmt);
         Variable v;
         if (branch == null) {
             branch = new LineOfCode(stmt);
@@ -683,7 +683,7 @@ public class MockingEvaluator extends ControlFlowEvaluator {
     Variable handleRepositoryCollectionHelper(Scope sc, String collectionTypeName) {
         MethodCallExpr methodCall = sc.getScopedMethodCall();
         Statement stmt = methodCall.findAncestor(Statement.class).orElseThrow();
-        LineOfCode l = Branching.get(stmt.hashCode());
+        LineOfCode l = Branching.get(stmt);
 
         Variable v;
         if (l == null) {
@@ -819,7 +819,7 @@ public class MockingEvaluator extends ControlFlowEvaluator {
     private Variable stubEntityReturnWithBranching(Scope sc, String entityFullName, String entityShortName) {
         MethodCallExpr methodCall = sc.getScopedMethodCall();
         Statement stmt = methodCall.findAncestor(Statement.class).orElseThrow();
-        LineOfCode l = Branching.get(stmt.hashCode());
+        LineOfCode l = Branching.get(stmt);
 
         if (l == null) {
             // First iteration: return null so the null-path test is generated.
@@ -33,17 +33,7 @@ public class NumericComparator {
             throw new IllegalArgumentException("Cannot compare " + left + " and " + right);
         }
         return switch (left) {
-            case Number leftNumber when right instanceof Number rightNumber -> {
-                if (leftNumber instanceof Double || rightNumber instanceof Double) {
-                    yield Double.compare(leftNumber.doubleValue(), rightNumber.doubleValue());
-                } else if (leftNumber instanceof Float || rightNumber instanceof Float) {
-                    yield Float.compare(leftNumber.floatValue(), rightNumber.floatValue());
-                } else if (leftNumber instanceof Long || rightNumber instanceof Long) {
-                    yield Long.compare(leftNumber.longValue(), rightNumber.longValue());
-                } else {
-                    yield Integer.compare(leftNumber.intValue(), rightNumber.intValue());
-                }
-            }
+            case Number leftNumber when right instanceof Number rightNumber -> compare(leftNumber, rightNumber);
             case String leftString when right instanceof String rightString ->
                 leftString.compareTo(rightString);
             case Comparable leftComparable when right instanceof Comparable rightComparable ->
@@ -51,4 +41,17 @@ public class NumericComparator {
             default -> throw new IllegalArgumentException("Cannot compare " + left + " and " + right);
         };
     }
+
+    private static int compare(Number left, Number right) {
+        NumericType type = NumericType.of(left, right);
+        if (type == null) {
+            return Integer.compare(left.intValue(), right.intValue());
+        }
+        return switch (type) {
+            case DOUBLE -> Double.compare(left.doubleValue(), right.doubleValue());
+            case FLOAT -> Float.compare(left.floatValue(), right.floatValue());
+            case LONG -> Long.compare(left.longValue(), right.longValue());
+            default -> Integer.compare(left.intValue(), right.intValue());
+        };
+    }
 }
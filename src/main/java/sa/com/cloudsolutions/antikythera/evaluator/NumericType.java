@@ -0,0 +1,80 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+/**
+ * <p>The primitive numeric types that the evaluator does arithmetic and comparisons in.</p>
+ *
+ * <p>The type of an operation is found once from the classes of both the operands, after which
+ * the operation is carried out directly in that type instead of going through {@code double}.
+ * As in compiled code, byte and short operands are promoted to int. The constants are declared
+ * from the narrowest to the widest so that the wider of two types is the one with the larger
+ * ordinal.</p>
+ */
+enum NumericType {
+    BYTE, SHORT, INT, LONG, FLOAT, DOUBLE;
+
+    /**
+     * @param value the value of an operand
+     * @return the type for the boxed primitive, or null if the value is not one of them. Other
+     *      numbers such as {@code BigDecimal} are not handled here.
+     */
+    static NumericType of(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> c = value.getClass();
+        if (c == Integer.class) {
+            return INT;
+        }
+        if (c == Long.class) {
+            return LONG;
+        }
+        if (c == Double.class) {
+            return DOUBLE;
+        }
+        if (c == Float.class) {
+            return FLOAT;
+        }
+        if (c == Short.class) {
+            return SHORT;
+        }
+        if (c == Byte.class) {
+            return BYTE;
+        }
+        return null;
+    }
+
+    /**
+     * @return the type that an operation on the two values is carried out in, which is the wider
+     *      of their types but at least int. A number that is not a boxed primitive takes the type
+     *      of the other operand, null is returned if neither of them is a boxed primitive.
+     */
+    static NumericType of(Object left, Object right) {
+        NumericType l = of(left);
+        NumericType r = of(right);
+        if (l == null || r == null) {
+            return l == null ? (r == null ? null : r.promote()) : l.promote();
+        }
+        return (l.ordinal() >= r.ordinal() ? l : r).promote();
+    }
+
+    /**
+     * @return the type that a value of this type has after unary numeric promotion
+     */
+    NumericType promote() {
+        return ordinal() < INT.ordinal() ? INT : this;
+    }
+
+    /**
+     * Converts a number to this type the way that a cast would.
+     */
+    Number convert(Number value) {
+        return switch (this) {
+            case BYTE -> value.byteValue();
+            case SHORT -> value.shortValue();
+            case INT -> value.intValue();
+            case LONG -> value.longValue();
+            case FLOAT -> value.floatValue();
+            case DOUBLE -> value.doubleValue();
+        };
+    }
+}
@@ -32,6 +32,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -42,6 +43,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -154,46 +156,50 @@ public class Reflect {
 
     }
 
-    private static final ClassValue<Map<String, Method>> METHOD_CACHE = new ClassValue<>() {
+    private static final ClassValue<Map<Signature, Method>> METHOD_CACHE = new ClassValue<>() {
         @Override
-        protected Map<String, Method> computeValue(Class<?> type) {
+        protected Map<Signature, Method> computeValue(Class<?> type) {
             return new ConcurrentHashMap<>();
         }
     };
 
-    private static final ClassValue<Map<String, Constructor<?>>> CONSTRUCTOR_CACHE = new ClassValue<>() {
+    private static final ClassValue<Map<Signature, Constructor<?>>> CONSTRUCTOR_CACHE = new ClassValue<>() {
         @Override
-        protected Map<String, Constructor<?>> computeValue(Class<?> type) {
+        protected Map<Signature, Constructor<?>> computeValue(Class<?> type) {
             return new ConcurrentHashMap<>();
         }
     };
 
-    private static String generateMethodKey(String methodName, Class<?>[] argumentTypes) {
-        StringBuilder key = new StringBuilder(methodName);
-        if (argumentTypes != null) {
-            for (Class<?> type : argumentTypes) {
-                if (type == null) {
-                    key.append("#null");
-                } else {
-                    key.append('#').append(type.getName());
-                }
-            }
+    private static final String CONSTRUCTOR = "<init>";
+
+    private static final LongAdder hits = new LongAdder();
+
+    /**
+     * The key of the method and constructor caches: the name and the types of the arguments that
+     * the member was looked up with. The argument types are compared by content instead of being
+     * turned into a string. They are copied when the key is made because matching the parameters
+     * goes on to change them, for example replacing a lambda with its functional interface.
+     */
+    private record Signature(String name, Class<?>[] argumentTypes) {
+        Signature {
+            argumentTypes = argumentTypes == null ? null : argumentTypes.clone();
         }
-        return key.toString();
-    }
 
-    private static String generateConstructorKey(Class<?>[] argumentTypes) {
-        StringBuilder key = new StringBuilder("<init>");
-        if (argumentTypes != null) {
-            for (Class<?> type : argumentTypes) {
-                if (type == null) {
-                    key.append("#null");
-                } else {
-                    key.append('#').append(type.getName());
-                }
-            }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature other && name.equals(other.name)
+                    && Arrays.equals(argumentTypes, other.argumentTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + Arrays.hashCode(argumentTypes);
+        }
+
+        @Override
+        public String toString() {
+            return name + Arrays.toString(argumentTypes);
         }
-        return key.toString();
     }
 
     private Reflect() {
@@ -665,12 +671,13 @@ public class Reflect {
         Class<?>[] argumentTypes = reflectionArguments.getArgumentTypes();
         Object[] arguments = reflectionArguments.getArguments();
 
-        String key = generateMethodKey(methodName, argumentTypes);
-        Map<String, Method> methods = METHOD_CACHE.get(clazz);
+        Signature key = new Signature(methodName, argumentTypes);
+        Map<Signature, Method> methods = METHOD_CACHE.get(clazz);
         Method cachedMethod = methods.get(key);
 
         if (isCacheHit(cachedMethod, argumentTypes, arguments)) {
             // Apply side effects to argumentTypes
+            hits.increment();
             reflectionArguments.setMethod(cachedMethod);
             return cachedMethod;
         }
@@ -692,6 +699,17 @@ public class Reflect {
         return null;
     }
 
+    /**
+     * @return the number of methods and constructors that were found in the caches
+     */
+    static long getHits() {
+        return hits.sum();
+    }
+
+    static void resetStatistics() {
+        hits.reset();
+    }
+
     private static boolean isCacheHit(java.lang.reflect.Executable cachedExecutable, Class<?>[] argumentTypes,
             Object[] arguments) {
         return cachedExecutable != null && matchParameters(argumentTypes, cachedExecutable.getParameterTypes(),
@@ -798,12 +816,13 @@ public class Reflect {
      */
     @SuppressWarnings("unchecked")
     public static <T> Constructor<T> findConstructor(Class<T> clazz, Class<?>[] argumentTypes, Object[] arguments) {
-        String key = generateConstructorKey(argumentTypes);
-        Map<String, Constructor<?>> constructors = CONSTRUCTOR_CACHE.get(clazz);
+        Signature key = new Signature(CONSTRUCTOR, argumentTypes);
+        Map<Signature, Constructor<?>> constructors = CONSTRUCTOR_CACHE.get(clazz);
         Constructor<?> cachedConstructor = constructors.get(key);
 
         if (isCacheHit(cachedConstructor, argumentTypes, arguments)) {
             // Apply side effects to argumentTypes
+            hits.increment();
             return (Constructor<T>) cachedConstructor;
         }
 
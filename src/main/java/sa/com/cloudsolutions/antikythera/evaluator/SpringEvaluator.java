@@ -38,6 +38,7 @@ import sa.com.cloudsolutions.antikythera.evaluator.logging.LogRecorder;
 import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingCall;
 import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingRegistry;
 import sa.com.cloudsolutions.antikythera.exception.AUTException;
+import sa.com.cloudsolutions.antikythera.exception.BudgetExceededException;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 import sa.com.cloudsolutions.antikythera.evaluator.GeneratorState;
@@ -79,7 +80,18 @@ public class SpringEvaluator extends ControlFlowEvaluator {
      */
     private static final Map<String, RepositoryParser> repositories = new HashMap<>();
 
-    private static ArgumentGenerator argumentGenerator;
+    /**
+     * The argument generator, which belongs to the {@link AnalysisSession} of the current thread
+     * because it keeps the arguments of the method that is being evaluated.
+     */
+    private static final class State {
+        ArgumentGenerator argumentGenerator;
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
+
     /**
      * <p>List of test generators that we have.</p>
      * <p>
@@ -94,6 +106,11 @@ public class SpringEvaluator extends ControlFlowEvaluator {
     private CallableDeclaration<?> currentCallable;
     private BranchAttempt currentTargetAttempt;
     private boolean onTest;
+    /**
+     * The state of the method currently being analyzed where it reaches its first branch, null
+     * unless branch snapshots are enabled and the method starts with code that can be skipped.
+     */
+    private BranchSnapshots branchSnapshots;
 
     protected SpringEvaluator(EvaluatorFactory.Context context) {
         super(context);
@@ -288,6 +305,9 @@ public class SpringEvaluator extends ControlFlowEvaluator {
 
     private void visitCallable(CallableDeclaration<?> cd) throws AntikytheraException, ReflectiveOperationException {
         beforeVisit(cd);
+        branchSnapshots = BranchSnapshots.isEnabled() && cd instanceof MethodDeclaration md
+                ? BranchSnapshots.of(md) : null;
+        EvaluationBudget budget = EvaluationBudget.start();
         try {
             int oldSize = Branching.size(cd);
 
@@ -338,12 +358,21 @@ public class SpringEvaluator extends ControlFlowEvaluator {
                 }
             }
         } catch (AUTException aex) {
-            logger.warn("This has probably been handled {}", aex.getMessage());
+            if (!budget.isExhausted()) {
+                logger.warn("This has probably been handled {}", aex.getMessage());
+            }
+        } finally {
+            budget.end();
+            branchSnapshots = null;
+        }
+        if (budget.isExhausted()) {
+            // the exception may have been wrapped or caught by the code that was being evaluated
+            throw new BudgetExceededException(budget.getReason());
         }
     }
 
     private void prepareInvocationContext(CallableDeclaration<?> cd) throws AntikytheraException, ReflectiveOperationException {
-        getLocals().clear();
+        clearLocals();
         LogRecorder.clearLogs();
         currentTargetAttempt = null;
         setupFields();
@@ -363,6 +392,9 @@ public class SpringEvaluator extends ControlFlowEvaluator {
             if (cd instanceof MethodDeclaration md) {
                 md.findCompilationUnit().ifPresent(cu -> md.findAncestor(ClassOrInterfaceDeclaration.class)
                         .ifPresent(coid -> MethodBodyMockStubAnalyzer.registerHintsForType(coid, cu)));
+                if (branchSnapshots != null) {
+                    branchSnapshots.arm();
+                }
                 executeMethod(md);
             } else if (cd instanceof ConstructorDeclaration constructorDeclaration) {
                 executeConstructor(constructorDeclaration);
@@ -449,6 +481,31 @@ public class SpringEvaluator extends ControlFlowEvaluator {
         }
     }
 
+    /**
+     * Starts the method being analyzed at its first branch when the state in which the method
+     * reaches the branch has been kept and the preconditions cannot change it.
+     */
+    @Override
+    protected void executeBody(MethodDeclaration md) throws ReflectiveOperationException {
+        if (branchSnapshots == null || md != currentCallable) {
+            super.executeBody(md);
+            return;
+        }
+        Collection<Precondition> preconditions = currentConditional == null
+                || currentConditional.getPreconditions() == null ? List.of() : currentConditional.getPreconditions();
+        List<Statement> statements = md.getBody().orElseThrow().getStatements();
+        int start = branchSnapshots.begin(this, preconditions);
+        executeBlock(statements.subList(start, statements.size()));
+    }
+
+    @Override
+    void executeStatement(Statement stmt) throws Exception {
+        if (branchSnapshots != null && branchSnapshots.isPoint(stmt)) {
+            branchSnapshots.capture(this);
+        }
+        super.executeStatement(stmt);
+    }
+
     @Override
     public void executeConstructor(ConstructorDeclaration cd) throws ReflectiveOperationException {
         super.executeConstructor(cd);
@@ -791,7 +848,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
     void mockMethodArguments(CallableDeclaration<?> md) throws ReflectiveOperationException {
         for (int i = md.getParameters().size() - 1; i >= 0; i--) {
             var param = md.getParameter(i);
-            argumentGenerator.generateArgument(param);
+            state().argumentGenerator.generateArgument(param);
         }
     }
 
@@ -1066,6 +1123,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
 
     public void addGenerator(ITestGenerator generator) {
         generators.add(generator);
+        ArgumentGenerator argumentGenerator = state().argumentGenerator;
         if (argumentGenerator != null) {
             generator.setArgumentGenerator(argumentGenerator);
         }
@@ -1385,12 +1443,12 @@ public class SpringEvaluator extends ControlFlowEvaluator {
         }
 
         if (rightType != null && rightType.getType() instanceof EnumDeclaration enumDecl) {
-            EnumConstantDeclaration enumConst = findEnumConstant(enumDecl, left, right);
-            rightType.setEnumConstant(enumConst);
+            // the type wrapper may be shared, so the constant goes into a wrapper of its own
+            TypeWrapper constant = new TypeWrapper(findEnumConstant(enumDecl, left, right));
             if (conditionMatches) {
-                result.put(left, right instanceof FieldAccessExpr ? right : rightType.getEnumConstant());
+                result.put(left, right instanceof FieldAccessExpr ? right : constant.getEnumConstant());
             } else {
-                setupEnumMismatch(rightType, entry.getKey(), result, left);
+                setupEnumMismatch(constant, entry.getKey(), result, left);
             }
         }
     }
@@ -1599,7 +1657,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
 
     private Variable buildRepositoryOptionalVariable(Statement stmt, MethodDeclaration md) {
         ClassOrInterfaceType classType = md.getType().asClassOrInterfaceType();
-        LineOfCode branch = Branching.get(stmt.hashCode());
+        LineOfCode branch = Branching.get(stmt);
         if (branch == null) {
             branch = new LineOfCode(stmt);
             Branching.add(branch.markPreconditionOnly());
@@ -1695,7 +1753,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
             logger.warn(e.getMessage());
         }
 
-        LineOfCode branch = Branching.get(stmt.hashCode());
+        LineOfCode branch = Branching.get(stmt);
         if (branch == null) {
             branch = new LineOfCode(stmt);
             Branching.add(branch);
@@ -1783,7 +1841,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
     }
 
     public void setArgumentGenerator(ArgumentGenerator argumentGenerator) {
-        SpringEvaluator.argumentGenerator = argumentGenerator;
+        state().argumentGenerator = argumentGenerator;
         for (ITestGenerator gen : generators) {
             gen.setArgumentGenerator(argumentGenerator);
         }
@@ -1,5 +1,6 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalConverter;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 
 import java.lang.reflect.InvocationTargetException;
@@ -195,28 +196,38 @@ class StreamEvaluator {
     }
 
     // ── Type-adaptation helpers ─────────────────────────────────────────
+    //
+    // Lambdas reach the stream methods as dynamic proxies around their FPEvaluator. The
+    // helpers unwrap the proxy so that each element calls the evaluator directly instead
+    // of going through the reflective proxy dispatch.
 
     @SuppressWarnings("unchecked")
     static UnaryOperator<Object> toStreamFunction(Object arg) {
-        if (arg instanceof UnaryOperator<?> uo) {
+        Object fn = FunctionalConverter.unwrap(arg);
+        if (fn instanceof UnaryOperator<?> uo) {
             return (UnaryOperator<Object>) uo;
         }
-        if (arg instanceof Function<?, ?> f) {
+        if (fn instanceof Function<?, ?> f) {
             Function<Object, Object> fnRaw = (Function<Object, Object>) f;
             return fnRaw::apply;
         }
+        if (fn instanceof Predicate<?> p) {
+            Predicate<Object> predicate = (Predicate<Object>) p;
+            return predicate::test;
+        }
         throw new AntikytheraException("Expected Function for stream operation but got: "
                 + (arg == null ? "null" : arg.getClass().getName()));
     }
 
     @SuppressWarnings("unchecked")
     static Consumer<Object> toStreamConsumer(Object arg) {
-        if (arg instanceof Consumer<?> c) {
+        Object fn = FunctionalConverter.unwrap(arg);
+        if (fn instanceof Consumer<?> c) {
             return (Consumer<Object>) c;
         }
-        if (arg instanceof Function<?, ?>) {
-            UnaryOperator<Object> fn = toStreamFunction(arg);
-            return fn::apply;
+        if (fn instanceof Function<?, ?>) {
+            UnaryOperator<Object> function = toStreamFunction(arg);
+            return function::apply;
         }
         throw new AntikytheraException("Expected Consumer for stream operation but got: "
                 + (arg == null ? "null" : arg.getClass().getName()));
@@ -224,10 +235,11 @@ class StreamEvaluator {
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     static Comparator<Object> toStreamComparator(Object arg) {
-        if (arg instanceof Comparator<?> c) {
+        Object fn = FunctionalConverter.unwrap(arg);
+        if (fn instanceof Comparator<?> c) {
             return (Comparator<Object>) c;
         }
-        if (arg instanceof BiFunction<?, ?, ?> bf) {
+        if (fn instanceof BiFunction<?, ?, ?> bf) {
             BiFunction bfRaw = bf;
             return (a, b) -> {
                 Object r = bfRaw.apply(a, b);
@@ -240,10 +252,11 @@ class StreamEvaluator {
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     static BinaryOperator<Object> toStreamBinaryOperator(Object arg) {
-        if (arg instanceof BinaryOperator<?> bo) {
+        Object fn = FunctionalConverter.unwrap(arg);
+        if (fn instanceof BinaryOperator<?> bo) {
             return (BinaryOperator<Object>) bo;
         }
-        if (arg instanceof BiFunction<?, ?, ?> bf) {
+        if (fn instanceof BiFunction<?, ?, ?> bf) {
             BiFunction bfRaw = bf;
             return bfRaw::apply;
         }
@@ -1,13 +1,11 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalConverter;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.ToDoubleFunction;
@@ -34,7 +32,7 @@ final class StreamOperationRegistry {
 
     @FunctionalInterface
     interface StreamOpHandler {
-        Variable handle(Stream<?> stream, Object[] args)
+        Variable handle(Stream<Object> stream, Object[] args)
                 throws ReflectiveOperationException;
     }
 
@@ -59,7 +57,7 @@ final class StreamOperationRegistry {
         if (handler == null) {
             return new StreamEvaluator.IntermediateResult(false, null);
         }
-        return new StreamEvaluator.IntermediateResult(true, handler.handle(stream, args));
+        return new StreamEvaluator.IntermediateResult(true, handler.handle(objects(stream), args));
     }
 
     static Variable tryTerminal(String methodName, Stream<?> stream, Object[] args)
@@ -68,72 +66,57 @@ final class StreamOperationRegistry {
         if (handler == null) {
             return null;
         }
-        return handler.handle(stream, args);
+        return handler.handle(objects(stream), args);
     }
 
-    @SuppressWarnings({"java:S3740", "unchecked"})
+    /**
+     * The handlers call the {@link Stream} methods directly rather than through reflection so
+     * that the pipeline stays a single lazy JDK stream: each symbolic lambda is adapted once
+     * when its stage is added and the elements are only pulled through when the terminal
+     * operation runs, which also lets {@code findFirst}, {@code anyMatch} and {@code limit}
+     * stop evaluating lambda bodies as soon as the answer is known.
+     */
+    @SuppressWarnings("unchecked")
     private static void registerDefaults() {
         // ── Intermediate operations ──
 
-        registerIntermediate("filter", (s, a) -> wrap(
-                Stream.class.getMethod("filter", Predicate.class)
-                        .invoke(s, toPredicate(a[0]))));
-
-        registerIntermediate("takeWhile", (s, a) -> wrap(
-                Stream.class.getMethod("takeWhile", Predicate.class)
-                        .invoke(s, toPredicate(a[0]))));
-
-        registerIntermediate("dropWhile", (s, a) -> wrap(
-                Stream.class.getMethod("dropWhile", Predicate.class)
-                        .invoke(s, toPredicate(a[0]))));
-
-        registerIntermediate("map", (s, a) -> wrap(
-                Stream.class.getMethod("map", java.util.function.Function.class)
-                        .invoke(s, toStreamFunction(a[0]))));
-
-        registerIntermediate("flatMap", (s, a) -> wrap(
-                Stream.class.getMethod("flatMap", java.util.function.Function.class)
-                        .invoke(s, toStreamFunction(a[0]))));
-
-        registerIntermediate("peek", (s, a) -> wrap(
-                Stream.class.getMethod("peek", Consumer.class)
-                        .invoke(s, toStreamConsumer(a[0]))));
+        registerIntermediate("filter", (s, a) -> wrap(s.filter(toPredicate(a[0]))));
+        registerIntermediate("takeWhile", (s, a) -> wrap(s.takeWhile(toPredicate(a[0]))));
+        registerIntermediate("dropWhile", (s, a) -> wrap(s.dropWhile(toPredicate(a[0]))));
+        registerIntermediate("map", (s, a) -> wrap(s.map(toStreamFunction(a[0]))));
+        registerIntermediate("flatMap", (s, a) -> {
+            UnaryOperator<Object> fn = toStreamFunction(a[0]);
+            return wrap(s.flatMap(x -> (Stream<?>) fn.apply(x)));
+        });
+        registerIntermediate("peek", (s, a) -> wrap(s.peek(toStreamConsumer(a[0]))));
 
         registerIntermediate(SORTED, (s, a) -> {
             if (a.length == 0 || a[0] == null) {
-                return wrap(Stream.class.getMethod(SORTED).invoke(s));
+                return wrap(s.sorted());
             }
-            Comparator<Object> comp = toStreamComparator(a[0]);
-            return wrap(Stream.class.getMethod(SORTED, Comparator.class).invoke(s, comp));
+            return wrap(s.sorted(toStreamComparator(a[0])));
         });
 
-        registerIntermediate("distinct", (s, a) -> wrap(
-                Stream.class.getMethod("distinct").invoke(s)));
-
-        registerIntermediate("limit", (s, a) -> wrap(
-                Stream.class.getMethod("limit", long.class)
-                        .invoke(s, ((Number) a[0]).longValue())));
-
-        registerIntermediate("skip", (s, a) -> wrap(
-                Stream.class.getMethod("skip", long.class)
-                        .invoke(s, ((Number) a[0]).longValue())));
+        registerIntermediate("distinct", (s, a) -> wrap(s.distinct()));
+        registerIntermediate("limit", (s, a) -> wrap(s.limit(((Number) a[0]).longValue())));
+        registerIntermediate("skip", (s, a) -> wrap(s.skip(((Number) a[0]).longValue())));
 
         registerIntermediate("mapToInt", (s, a) -> {
             UnaryOperator<Object> fn = toStreamFunction(a[0]);
             ToIntFunction<Object> toIntFn = x -> ((Number) fn.apply(x)).intValue();
-            return wrap(Stream.class.getMethod("mapToInt", ToIntFunction.class).invoke(s, toIntFn));
+            return wrap(s.mapToInt(toIntFn));
         });
 
         registerIntermediate("mapToLong", (s, a) -> {
             UnaryOperator<Object> fn = toStreamFunction(a[0]);
             ToLongFunction<Object> toLongFn = x -> ((Number) fn.apply(x)).longValue();
-            return wrap(Stream.class.getMethod("mapToLong", ToLongFunction.class).invoke(s, toLongFn));
+            return wrap(s.mapToLong(toLongFn));
         });
 
         registerIntermediate("mapToDouble", (s, a) -> {
             UnaryOperator<Object> fn = toStreamFunction(a[0]);
             ToDoubleFunction<Object> toDblFn = x -> ((Number) fn.apply(x)).doubleValue();
-            return wrap(Stream.class.getMethod("mapToDouble", ToDoubleFunction.class).invoke(s, toDblFn));
+            return wrap(s.mapToDouble(toDblFn));
         });
 
         // ── Terminal operations ──
@@ -147,10 +130,9 @@ final class StreamOperationRegistry {
         registerTerminal("collect", (s, a) -> {
             if (a.length == 1) {
                 Collector<Object, ?, Object> col = (Collector<Object, ?, Object>) a[0];
-                return wrap(Stream.class.getMethod("collect", Collector.class).invoke(s, col));
+                return wrap(s.collect(col));
             } else if (a.length == 3) {
-                Stream<Object> objectStream = (Stream<Object>) s;
-                Object result = objectStream.collect(
+                Object result = s.collect(
                         (java.util.function.Supplier<Object>) a[0],
                         (java.util.function.BiConsumer<Object, Object>) a[1],
                         (java.util.function.BiConsumer<Object, Object>) a[2]);
@@ -159,35 +141,26 @@ final class StreamOperationRegistry {
             throw new AntikytheraException("Unsupported collect overload with " + a.length + " arguments");
         });
 
-        registerTerminal("count", (s, a) -> wrap(Stream.class.getMethod("count").invoke(s)));
-        registerTerminal("toList", (s, a) -> wrap(Stream.class.getMethod("toList").invoke(s)));
-        registerTerminal("toArray", (s, a) -> wrap(Stream.class.getMethod("toArray").invoke(s)));
-        registerTerminal("findFirst", (s, a) -> wrapOptional(Stream.class.getMethod("findFirst").invoke(s)));
-        registerTerminal("findAny", (s, a) -> wrapOptional(Stream.class.getMethod("findAny").invoke(s)));
+        registerTerminal("count", (s, a) -> wrap(s.count()));
+        registerTerminal("toList", (s, a) -> wrap(s.toList()));
+        registerTerminal("toArray", (s, a) -> wrap(s.toArray()));
+        registerTerminal("findFirst", (s, a) -> wrapOptional(s.findFirst()));
+        registerTerminal("findAny", (s, a) -> wrapOptional(s.findAny()));
 
-        registerTerminal("anyMatch", (s, a) -> wrap(
-                Stream.class.getMethod("anyMatch", Predicate.class).invoke(s, toPredicate(a[0]))));
-        registerTerminal("allMatch", (s, a) -> wrap(
-                Stream.class.getMethod("allMatch", Predicate.class).invoke(s, toPredicate(a[0]))));
-        registerTerminal("noneMatch", (s, a) -> wrap(
-                Stream.class.getMethod("noneMatch", Predicate.class).invoke(s, toPredicate(a[0]))));
+        registerTerminal("anyMatch", (s, a) -> wrap(s.anyMatch(toPredicate(a[0]))));
+        registerTerminal("allMatch", (s, a) -> wrap(s.allMatch(toPredicate(a[0]))));
+        registerTerminal("noneMatch", (s, a) -> wrap(s.noneMatch(toPredicate(a[0]))));
 
-        registerTerminal("min", (s, a) -> wrapOptional(
-                Stream.class.getMethod("min", Comparator.class).invoke(s, toStreamComparator(a[0]))));
-        registerTerminal("max", (s, a) -> wrapOptional(
-                Stream.class.getMethod("max", Comparator.class).invoke(s, toStreamComparator(a[0]))));
+        registerTerminal("min", (s, a) -> wrapOptional(s.min(toStreamComparator(a[0]))));
+        registerTerminal("max", (s, a) -> wrapOptional(s.max(toStreamComparator(a[0]))));
 
         registerTerminal(REDUCE, (s, a) -> {
             if (a.length == 1) {
-                BinaryOperator<Object> op = toStreamBinaryOperator(a[0]);
-                return wrapOptional(Stream.class.getMethod(REDUCE, BinaryOperator.class).invoke(s, op));
+                return wrapOptional(s.reduce(toStreamBinaryOperator(a[0])));
             } else if (a.length == 2) {
-                BinaryOperator<Object> op = toStreamBinaryOperator(a[1]);
-                return wrap(Stream.class.getMethod(REDUCE, Object.class, BinaryOperator.class)
-                        .invoke(s, a[0], op));
+                return wrap(s.reduce(a[0], toStreamBinaryOperator(a[1])));
             } else if (a.length == 3) {
-                Stream<Object> objectStream = (Stream<Object>) s;
-                Object result = objectStream.reduce(
+                Object result = s.reduce(
                         a[0],
                         (java.util.function.BiFunction<Object, Object, Object>) a[1],
                         toStreamBinaryOperator(a[2]));
@@ -197,7 +170,16 @@ final class StreamOperationRegistry {
         });
     }
 
+    @SuppressWarnings("unchecked")
+    private static Stream<Object> objects(Stream<?> stream) {
+        return (Stream<Object>) stream;
+    }
+
+    @SuppressWarnings("unchecked")
     private static Predicate<Object> toPredicate(Object arg) {
+        if (FunctionalConverter.unwrap(arg) instanceof Predicate<?> p) {
+            return (Predicate<Object>) p;
+        }
         UnaryOperator<Object> fn = toStreamFunction(arg);
         return x -> Boolean.TRUE.equals(fn.apply(x));
     }
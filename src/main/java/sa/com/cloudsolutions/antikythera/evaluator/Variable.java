@@ -5,10 +5,14 @@ import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.type.VoidType;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Random;
+import java.util.UUID;
 
 /**
  * Represents a named value within the symbolic execution environment.
@@ -145,6 +149,35 @@ public class Variable implements Symbol {
         this.initializer = new ArrayList<>(initializer);
     }
 
+    /**
+     * A new variable holding the same value, type and initializer as this one.
+     * Only meaningful when the value is immutable, see {@link #isImmutable(Object)}.
+     */
+    Variable copy() {
+        Variable copy = new Variable(value);
+        copy.setClazz(clazz);
+        if (type != null) {
+            copy.setType(type);
+        }
+        copy.setInitializer(initializer);
+        copy.setName(name);
+        return copy;
+    }
+
+    /**
+     * True for the values that can be shared between variables because nothing can change them.
+     */
+    static boolean isImmutable(Object value) {
+        if (value instanceof Optional<?> optional) {
+            return isImmutable(optional.orElse(null));
+        }
+        return value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum<?> || value instanceof UUID || value instanceof BigDecimal
+                || value instanceof BigInteger
+                || (value instanceof Number && value.getClass().getPackageName().equals("java.lang"))
+                || value.getClass().getPackageName().equals("java.time");
+    }
+
     public boolean isFailedMock() {
         return failedMock;
     }
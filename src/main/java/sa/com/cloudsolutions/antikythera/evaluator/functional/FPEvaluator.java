@@ -1,5 +1,6 @@
 package sa.com.cloudsolutions.antikythera.evaluator.functional;
 
+import com.github.javaparser.ast.DataKey;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
@@ -14,6 +15,7 @@ import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.type.UnknownType;
 import com.github.javaparser.ast.type.VoidType;
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
 import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
 import sa.com.cloudsolutions.antikythera.evaluator.EvaluatorFactory;
 import sa.com.cloudsolutions.antikythera.evaluator.InnerClassEvaluator;
@@ -23,9 +25,12 @@ import sa.com.cloudsolutions.antikythera.evaluator.Symbol;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
 
 /**
  * Abstract base for functional-interface evaluators (Function, Consumer, Supplier, etc.).
@@ -34,14 +39,72 @@ import java.util.Optional;
  */
 public abstract class FPEvaluator<T> extends InnerClassEvaluator {
     public static final String OBJECT_TYPE = "Object";
+    private static final DataKey<Template> TEMPLATE = new DataKey<>() {
+    };
+
     protected MethodDeclaration methodDeclaration;
     Expression expr;
 
+    /**
+     * The method synthesised for a lambda and the kind of evaluator that runs it. They only depend
+     * on the lambda, so they are shared by all the evaluators created for it, each of which keeps
+     * its own locals. Evaluating the method leaves data on its nodes, such as the slots of the
+     * locals and the resolved types, and node data is not safe for concurrent use. Each session,
+     * which may run on a thread of its own, therefore synthesises a method of its own with the same
+     * derived ids. The owner is kept because JavaParser copies the node data over to clones.
+     *
+     * @param owner the lambda that the methods were synthesised for
+     * @param evaluator creates the evaluator for the functional interface that the lambda implements
+     * @param methods the method synthesised for each session, weakly keyed so that the lambda does
+     *                not keep a finished session alive
+     */
+    private record Template(LambdaExpr owner, Supplier<FPEvaluator<?>> evaluator,
+                            Map<AnalysisSession, MethodDeclaration> methods) {
+    }
+
     protected FPEvaluator(EvaluatorFactory.Context context) {
         super(context);
     }
 
     public static Variable create(LambdaExpr lambda, Evaluator enclosure) {
+        Template template;
+        MethodDeclaration md;
+        synchronized (lambda) {
+            template = templateFor(lambda);
+            md = template.methods().computeIfAbsent(AnalysisSession.current(), session -> synthesize(lambda));
+        }
+        FPEvaluator<?> fp = template.evaluator().get();
+        fp.setMethod(md);
+        fp.enclosure = enclosure;
+        fp.expr = lambda;
+        Variable v = new Variable(fp);
+        v.setType(fp.getType());
+
+        return v;
+    }
+
+    /**
+     * A lambda in a loop or in a stream pipeline is evaluated over and over again, so the method
+     * is synthesised the first time that a session needs it and remembered on the lambda.
+     *
+     * <p>The evaluator is not kept. The functional interfaces don't have a compilation unit, so
+     * creating an evaluator for one does not set up any fields: it comes down to the constructor
+     * and a look up of the autowired beans. The evaluator also holds the locals and the enclosure
+     * of one evaluation of the lambda, which a shared prototype would have to copy anyway.</p>
+     */
+    private static Template templateFor(LambdaExpr lambda) {
+        Template template = lambda.containsData(TEMPLATE) ? lambda.getData(TEMPLATE) : null;
+        if (template == null || template.owner() != lambda) {
+            MethodDeclaration md = synthesize(lambda);
+            Map<AnalysisSession, MethodDeclaration> methods = new WeakHashMap<>();
+            methods.put(AnalysisSession.current(), md);
+            template = new Template(lambda, evaluatorFor(md), methods);
+            lambda.setData(TEMPLATE, template);
+        }
+        return template;
+    }
+
+    private static MethodDeclaration synthesize(LambdaExpr lambda) {
         LambdaExpr lambdaExpr = lambda.clone();
         lambdaExpr.setParentNode(lambda.getParentNode().orElseThrow());
 
@@ -75,34 +138,26 @@ public abstract class FPEvaluator<T> extends InnerClassEvaluator {
             }
         }
 
-        FPEvaluator<?> fp = createEvaluator(md);
-        fp.enclosure = enclosure;
-        fp.expr = lambda;
-        Variable v = new Variable(fp);
-        v.setType(fp.getType());
-
-        return v;
+        // branches and locals inside the lambda are tracked against these ids
+        NodeIds.derive(lambda, md);
+        return md;
     }
 
-    private static FPEvaluator<?> createEvaluator(MethodDeclaration md) {
+    private static Supplier<FPEvaluator<?>> evaluatorFor(MethodDeclaration md) {
         if (md.getBody().orElseThrow().findFirst(ReturnStmt.class).isPresent()) {
-            FPEvaluator<?> eval = switch (md.getParameters().size()) {
-                case 0 -> EvaluatorFactory.create("java.util.function.Supplier", SupplierEvaluator.class);
-                case 1 -> EvaluatorFactory.create("java.util.function.Function", FunctionEvaluator.class);
-                case 2 -> EvaluatorFactory.create("java.util.function.BiFunction", BiFunctionEvaluator.class);
-                default -> EvaluatorFactory.create("java.util.function.Function", NAryFunctionEvaluator.class);
+            return switch (md.getParameters().size()) {
+                case 0 -> () -> EvaluatorFactory.create("java.util.function.Supplier", SupplierEvaluator.class);
+                case 1 -> () -> EvaluatorFactory.create("java.util.function.Function", FunctionEvaluator.class);
+                case 2 -> () -> EvaluatorFactory.create("java.util.function.BiFunction", BiFunctionEvaluator.class);
+                default -> () -> EvaluatorFactory.create("java.util.function.Function", NAryFunctionEvaluator.class);
             };
-            eval.setMethod(md);
-            return eval;
         } else {
-            FPEvaluator<?> eval = switch (md.getParameters().size()) {
-                case 0 -> EvaluatorFactory.create("java.lang.Runnable", RunnableEvaluator.class);
-                case 1 -> EvaluatorFactory.create("java.util.function.Consumer", ConsumerEvaluator.class);
-                case 2 -> EvaluatorFactory.create("java.util.function.BiConsumer", BiConsumerEvaluator.class);
-                default -> EvaluatorFactory.create("java.util.function.Consumer", NAryConsumerEvaluator.class);
+            return switch (md.getParameters().size()) {
+                case 0 -> () -> EvaluatorFactory.create("java.lang.Runnable", RunnableEvaluator.class);
+                case 1 -> () -> EvaluatorFactory.create("java.util.function.Consumer", ConsumerEvaluator.class);
+                case 2 -> () -> EvaluatorFactory.create("java.util.function.BiConsumer", BiConsumerEvaluator.class);
+                default -> () -> EvaluatorFactory.create("java.util.function.Consumer", NAryConsumerEvaluator.class);
             };
-            eval.setMethod(md);
-            return eval;
         }
     }
 
@@ -162,11 +217,9 @@ public abstract class FPEvaluator<T> extends InnerClassEvaluator {
                 if (v != null) {
                     return v;
                 }
-                for (Map<String, Symbol> local : enclosure.getLocals().values()) {
-                    v = local.get(name);
-                    if (v != null) {
-                        return v;
-                    }
+                v = enclosure.findLocal(name);
+                if (v != null) {
+                    return v;
                 }
             }
         }
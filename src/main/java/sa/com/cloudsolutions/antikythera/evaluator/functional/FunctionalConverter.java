@@ -25,6 +25,7 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
 import java.util.Optional;
 
 /**
@@ -69,6 +70,19 @@ public class FunctionalConverter {
         return lambda;
     }
 
+    /**
+     * Returns the {@link FPEvaluator} behind a proxy that was created to pass a lambda to a
+     * JDK method, so that callers which invoke the lambda many times can call the evaluator
+     * directly. Any other value is returned unchanged.
+     */
+    public static Object unwrap(Object functional) {
+        if (functional != null && Proxy.isProxyClass(functional.getClass())
+                && Proxy.getInvocationHandler(functional) instanceof FunctionalInvocationHandler handler) {
+            return handler.evaluator();
+        }
+        return functional;
+    }
+
     private static void searchForFunctionals(MethodReferenceExpr methodRef, Variable outerScope, MethodCallExpr mce, BlockStmt body, MethodCallExpr call) {
 
         String name = mce.getNameAsString();
@@ -1,5 +1,7 @@
 package sa.com.cloudsolutions.antikythera.evaluator.logging;
 
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -7,25 +9,51 @@ import java.util.Map;
 
 /**
  * Captures and tracks logging calls made through SLF4J loggers.
+ * The entries belong to the {@link AnalysisSession} of the current thread.
  */
 public class LogRecorder {
-    private static final Map<String, List<LogEntry>> logEntries = new HashMap<>();
+    private static final class State {
+        final Map<String, List<LogEntry>> logEntries = new HashMap<>();
+    }
+
+    private static Map<String, List<LogEntry>> logEntries() {
+        return AnalysisSession.current().get(State.class, State::new).logEntries;
+    }
 
     public static void clearLogs() {
-        logEntries.clear();
+        logEntries().clear();
     }
 
     public static boolean hasLogs() {
-        return !logEntries.isEmpty();
+        return !logEntries().isEmpty();
     }
 
     public static void captureLog(String className, String level, String message, Object[] args) {
-        logEntries.computeIfAbsent(className, k -> new ArrayList<>())
+        logEntries().computeIfAbsent(className, k -> new ArrayList<>())
                 .add(new LogEntry(level, message, args));
     }
 
     public static List<LogEntry> getLogEntries(String className) {
-        return logEntries.getOrDefault(className, new ArrayList<>());
+        return logEntries().getOrDefault(className, new ArrayList<>());
+    }
+
+    /**
+     * @return a copy of the entries that have been captured so far
+     */
+    public static Map<String, List<LogEntry>> snapshot() {
+        Map<String, List<LogEntry>> copy = new HashMap<>();
+        logEntries().forEach((k, v) -> copy.put(k, new ArrayList<>(v)));
+        return copy;
+    }
+
+    /**
+     * Replaces the captured entries with a snapshot.
+     * @param snapshot the entries as returned by {@link #snapshot()}
+     */
+    public static void restore(Map<String, List<LogEntry>> snapshot) {
+        Map<String, List<LogEntry>> entries = logEntries();
+        entries.clear();
+        snapshot.forEach((k, v) -> entries.put(k, new ArrayList<>(v)));
     }
 
     public record LogEntry(String level, String message, Object[] args) {
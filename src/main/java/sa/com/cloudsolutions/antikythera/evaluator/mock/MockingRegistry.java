@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.evaluator.AKBuddy;
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
 import sa.com.cloudsolutions.antikythera.evaluator.EvaluatorFactory;
@@ -54,14 +55,25 @@ import static org.mockito.Mockito.withSettings;
  */
 public class MockingRegistry {
     private static final Logger logger = LoggerFactory.getLogger(MockingRegistry.class);
-    private static final Map<String, Map<Callable, MockingCall>> mockedFields = new HashMap<>();
-    private static Map<String, List<Expression>> customMockExpressions = new HashMap<>();
-    /** Types for which all mock-creation attempts have already failed; suppress duplicate warnings. */
-    private static final java.util.Set<String> unmockableTypes = new java.util.HashSet<>();
 
     public static final String MOCKITO = "Mockito";
     public static final String MOCKITO_FQN = "org.mockito.Mockito";
 
+    /**
+     * The state of this class, which belongs to the {@link AnalysisSession} of the current thread.
+     */
+    private static final class State {
+        final Map<String, Map<Callable, MockingCall>> mockedFields = new HashMap<>();
+        Map<String, List<Expression>> customMockExpressions = new HashMap<>();
+
+        /** Types for which all mock-creation attempts have already failed; suppress duplicate warnings. */
+        final java.util.Set<String> unmockableTypes = new java.util.HashSet<>();
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
+
     private MockingRegistry() {
 
     }
@@ -71,11 +83,11 @@ public class MockingRegistry {
      * @param className the name of the class to mark as mocked
      */
     public static void markAsMocked(String className) {
-        mockedFields.put(className, new HashMap<>());
+        state().mockedFields.put(className, new HashMap<>());
     }
 
     public static boolean isMockTarget(String className) {
-        return mockedFields.containsKey(className);
+        return state().mockedFields.containsKey(className);
     }
 
     public static String generateRegistryKey(List<TypeWrapper> resolvedTypes) {
@@ -94,8 +106,9 @@ public class MockingRegistry {
     }
 
     public static void reset() {
-        mockedFields.clear();
-        unmockableTypes.clear();
+        State state = state();
+        state.mockedFields.clear();
+        state.unmockableTypes.clear();
         clearCustomMockExpressions();
     }
 
@@ -104,7 +117,7 @@ public class MockingRegistry {
      * Use this between service generations to avoid cross-service state leakage.
      */
     public static void clearMockedFields() {
-        mockedFields.clear();
+        state().mockedFields.clear();
     }
 
     /**
@@ -116,7 +129,7 @@ public class MockingRegistry {
      * @param mockingCall represents the method being called and the mocked return value
      */
     public static void when(String className, MockingCall mockingCall) {
-        Map<Callable, MockingCall> map = mockedFields.computeIfAbsent(className, k -> new HashMap<>());
+        Map<Callable, MockingCall> map = state().mockedFields.computeIfAbsent(className, k -> new HashMap<>());
         map.put(mockingCall.getCallable(), mockingCall);
     }
 
@@ -229,7 +242,7 @@ public class MockingRegistry {
                 return v;
             } catch (Throwable e3) {
                 // Only warn once per unmockable type to avoid log spam when the same type appears multiple times
-                if (unmockableTypes.add(cls.getName())) {
+                if (state().unmockableTypes.add(cls.getName())) {
                     logger.warn("Cannot create any mock for {} — tests involving this type will lack mock setup. Reason: {}",
                             cls.getName(), firstMeaningfulLine(e2));
                 } else {
@@ -263,7 +276,7 @@ public class MockingRegistry {
 
     public static List<MockingCall> getAllMocks() {
         List<MockingCall> result = new ArrayList<>();
-        for (Map<Callable, MockingCall> map : mockedFields.values()) {
+        for (Map<Callable, MockingCall> map : state().mockedFields.values()) {
             result.addAll(map.values());
         }
         return result;
@@ -277,7 +290,7 @@ public class MockingRegistry {
      * @return the MockingCall that was created for the method.
      */
     public static MockingCall getThen(String className, Callable callable) {
-        Map<Callable, MockingCall> map = mockedFields.get(className);
+        Map<Callable, MockingCall> map = state().mockedFields.get(className);
         if (map != null) {
             return map.get(callable);
         }
@@ -356,7 +369,6 @@ public class MockingRegistry {
         return fqn != null ? fqn : md.getType().asString();
     }
 
-
     public static NodeList<Expression> fakeArguments(MethodDeclaration md) {
         NodeList<Expression> args = new NodeList<>();
         md.getParameters().forEach(param -> {
@@ -388,7 +400,6 @@ public class MockingRegistry {
         return args;
     }
 
-
     public static Expression expressionFactory(String qualifiedName) {
         if (qualifiedName == null) {
             return new NullLiteralExpr();
@@ -563,15 +574,15 @@ public class MockingRegistry {
     }
 
     public static void addCustomMockExpression(String className, Expression expr) {
-        customMockExpressions.computeIfAbsent(className, k -> new ArrayList<>()).add(expr);
+        state().customMockExpressions.computeIfAbsent(className, k -> new ArrayList<>()).add(expr);
     }
     public static List<Expression> getCustomMockExpressions(String className) {
-        return customMockExpressions.getOrDefault(className, new ArrayList<>());
+        return state().customMockExpressions.getOrDefault(className, new ArrayList<>());
     }
     public static void clearCustomMockExpressions() {
-        customMockExpressions.clear();
+        state().customMockExpressions.clear();
     }
     public static void setCustomMockExpressions(Map<String, List<Expression>> customMockExpressions) {
-        MockingRegistry.customMockExpressions = customMockExpressions;
+        state().customMockExpressions = customMockExpressions;
     }
 }
@@ -0,0 +1,11 @@
+package sa.com.cloudsolutions.antikythera.exception;
+
+/**
+ * Thrown when the evaluation of a method takes longer or needs more steps than it is allowed to.
+ * The method is abandoned, the tests that were generated before that are kept.
+ */
+public class BudgetExceededException extends EvaluatorException {
+    public BudgetExceededException(String message) {
+        super(message);
+    }
+}
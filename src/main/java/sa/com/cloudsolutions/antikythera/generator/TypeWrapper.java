@@ -41,6 +41,27 @@ public class TypeWrapper {
 
     }
 
+    /**
+     * Creates a wrapper with the same type and flags, which can be changed without affecting
+     * this one.
+     *
+     * @return a copy of this wrapper
+     */
+    public TypeWrapper copy() {
+        TypeWrapper copy = new TypeWrapper();
+        copy.type = type;
+        copy.clazz = clazz;
+        copy.enumConstant = enumConstant;
+        copy.isController = isController;
+        copy.isService = isService;
+        copy.component = component;
+        copy.repository = repository;
+        copy.configuration = configuration;
+        copy.isInterface = isInterface;
+        copy.isEntity = isEntity;
+        return copy;
+    }
+
     @SuppressWarnings("java:S1452")
     public TypeDeclaration<?> getType() {
         return type;
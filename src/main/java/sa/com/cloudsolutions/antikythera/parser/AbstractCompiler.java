@@ -51,6 +51,7 @@ import java.io.File;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.URL;
@@ -59,14 +60,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.evaluator.Reflect;
 import sa.com.cloudsolutions.antikythera.evaluator.ReflectionArguments;
@@ -97,11 +105,67 @@ public class AbstractCompiler {
     private static final Logger logger = LoggerFactory.getLogger(AbstractCompiler.class);
     public static final String MAVEN_SRC_JAVA = "src/main/java";
 
-    private static JavaParser javaParser;
+    /**
+     * JavaParser instances are not thread safe. Each thread that parses source files gets its
+     * own parser built from the shared configuration. A fresh ThreadLocal is installed every
+     * time the parser is set up so that parsers holding a stale configuration are discarded.
+     */
+    private static ThreadLocal<JavaParser> javaParser = new ThreadLocal<>();
     protected static JavaSymbolSolver symbolResolver;
     protected static CombinedTypeSolver combinedTypeSolver;
+    /**
+     * The type solvers of the dependency jars. Empty when the {@link JarIndex} is enabled, the
+     * jars are then only opened on demand by a {@link LazyJarTypeSolver} each.
+     */
     protected static ArrayList<JarTypeSolver> jarSolvers;
     protected static ClassLoader loader;
+    /**
+     * The names that the current class loader could not load. Looking up a missing class throws
+     * a new exception from deep inside the class loader chain, which becomes expensive when the
+     * same names are probed over and over again. A new class loader may be able to find them, so
+     * the set is replaced along with it. Classes defined straight into the class loader are taken
+     * out again, see {@link #classDefined(Class)}.
+     */
+    private static Set<String> missingClasses = ConcurrentHashMap.newKeySet();
+    /**
+     * The classes that were defined straight into the current class loader, which the
+     * {@link JarIndex} knows nothing about, see {@link #classDefined(Class)}.
+     */
+    private static Map<String, Class<?>> definedClasses = new ConcurrentHashMap<>();
+    /**
+     * The names that {@code Class.forName} could not load. This uses the class loader of the
+     * compiler itself, which never changes.
+     */
+    private static final Set<String> missingSystemClasses = ConcurrentHashMap.newKeySet();
+    /**
+     * The jars that the current class loader was created with.
+     */
+    private static Set<String> classPath = Set.of();
+    /**
+     * Incremented every time the class loader is replaced, see {@link #getClassLoaderGeneration()}.
+     */
+    private static int classLoaderGeneration;
+    /**
+     * The classes in the jars on the class path, null unless it has been enabled in the settings.
+     */
+    private static JarIndex jarIndex;
+    /**
+     * The persistent parse cache, null unless it has been enabled in the settings.
+     */
+    private static ParseCache parseCache;
+    /**
+     * Whether the names resolved in the compiled sources should be remembered, see
+     * {@link TypeResolutionCache}.
+     */
+    private static boolean typeResolutionCache = true;
+    /**
+     * The source files seen by the last incremental pre-processing run, loaded on first use.
+     */
+    private static SourceManifest sourceManifest;
+    /**
+     * The types declared in or depending on the files that changed, see {@link #getAffectedTypes()}.
+     */
+    private static final Set<String> affectedTypes = new HashSet<>();
     private static final List<Path> sourceDirectories = new ArrayList<>();
     protected CompilationUnit cu;
     protected String className;
@@ -161,25 +225,31 @@ public class AbstractCompiler {
         setupSourcePaths();
         jarSolvers = new ArrayList<>();
 
-        Set<String> jarFiles = new HashSet<>();
-        List<URL> urls = new ArrayList<>();
-        for (String s : Settings.getJarFiles()) {
-            jarFiles.add(s);
-            urls.add(Paths.get(s).toUri().toURL());
-        }
-        for (String s : MavenHelper.getJarPaths()) {
-            jarFiles.add(s);
-            urls.add(Paths.get(s).toUri().toURL());
+        Set<String> jarFiles = new LinkedHashSet<>();
+        jarFiles.addAll(Arrays.asList(Settings.getJarFiles()));
+        jarFiles.addAll(Arrays.asList(MavenHelper.getJarPaths()));
+
+        setupClassLoader(jarFiles);
+        jarIndex = JarIndex.create();
+        if (jarIndex != null) {
+            jarIndex.addAll(classPath);
         }
+        LazyJarTypeSolver.closeAll();
 
         for (String jarFile : jarFiles) {
-            JarTypeSolver jarSolver = new JarTypeSolver(jarFile);
-            jarSolvers.add(jarSolver);
-            combinedTypeSolver.add(jarSolver);
+            if (jarIndex == null) {
+                JarTypeSolver jarSolver = new JarTypeSolver(jarFile);
+                jarSolvers.add(jarSolver);
+                combinedTypeSolver.add(jarSolver);
+            } else {
+                /*
+                 * With the jar index at hand, a jar only needs to be opened when one of its
+                 * packages is looked up.
+                 */
+                combinedTypeSolver.add(new LazyJarTypeSolver(jarFile, jarIndex.getPackages(jarFile)));
+            }
         }
 
-        loader = new URLClassLoader(urls.toArray(new URL[0]),
-                loader == null ? AbstractCompiler.class.getClassLoader() : loader);
         Collection<String> finch = Settings.getPropertyList("finch", String.class);
 
         for (String path : finch) {
@@ -190,10 +260,58 @@ public class AbstractCompiler {
         ParserConfiguration parserConfiguration = new ParserConfiguration()
                 .setSymbolResolver(symbolResolver)
                 .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_21);
-        javaParser = new JavaParser(parserConfiguration);
+        parseCache = ParseCache.create(parserConfiguration.getLanguageLevel(), jarFiles);
+        typeResolutionCache = Settings.getProperty(Settings.TYPE_RESOLUTION_CACHE, Boolean.class).orElse(true);
+        CallSiteCache.setEnabled(Settings.getProperty(Settings.CALL_SITE_CACHE, Boolean.class).orElse(true));
+        TypeResolutionCache.invalidate();
+        sourceManifest = null;
+        javaParser = ThreadLocal.withInitial(() -> new JavaParser(parserConfiguration));
         StaticJavaParser.setConfiguration(parserConfiguration);
     }
 
+    /**
+     * Replaces the class loader with a new generation unless it was created with the same jars.
+     * Each generation is a single loader for all the jars, with the class loader of the compiler
+     * itself as the parent, so looking up a class costs the same no matter how many times the
+     * compiler has been set up. The previous generation is closed, after which it can no longer
+     * load classes and becomes eligible for unloading together with the classes it defined once
+     * nothing else refers to them.
+     */
+    private static void setupClassLoader(Set<String> jarFiles) throws IOException {
+        if (loader != null && classPath.equals(jarFiles)) {
+            return;
+        }
+        List<URL> urls = new ArrayList<>();
+        for (String jarFile : jarFiles) {
+            urls.add(Paths.get(jarFile).toUri().toURL());
+        }
+        ClassLoader previous = loader;
+        classLoaderGeneration++;
+        loader = new URLClassLoader("antikythera-" + classLoaderGeneration, urls.toArray(new URL[0]),
+                AbstractCompiler.class.getClassLoader());
+        classPath = jarFiles;
+        missingClasses = ConcurrentHashMap.newKeySet();
+        definedClasses = new ConcurrentHashMap<>();
+        if (previous instanceof URLClassLoader urlClassLoader) {
+            try {
+                urlClassLoader.close();
+            } catch (IOException e) {
+                logger.debug("Could not close the previous class loader: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The class loader is replaced whenever the compiler is set up with a different set of jars.
+     * Anything that holds on to classes loaded by it, such as the classes generated by
+     * {@code AKBuddy}, should be discarded when the generation changes.
+     *
+     * @return a number that changes every time the class loader is replaced
+     */
+    public static int getClassLoaderGeneration() {
+        return classLoaderGeneration;
+    }
+
     private static void setupSourcePaths() {
         // Add source roots from Maven POM if available
         sourceDirectories.clear();
@@ -258,10 +376,62 @@ public class AbstractCompiler {
     }
 
     public static Class<?> loadClass(String resolvedClass) throws ClassNotFoundException {
+        if (missingClasses.contains(resolvedClass)) {
+            throw new MissingClassException(resolvedClass);
+        }
         try {
-            return Class.forName(resolvedClass);
+            return forName(resolvedClass);
         } catch (ClassNotFoundException | NoClassDefFoundError cnf) {
-            return loader.loadClass(resolvedClass);
+            Class<?> defined = definedClasses.get(resolvedClass);
+            if (defined != null) {
+                return defined;
+            }
+            // the index only covers the jars, classes defined at runtime have been dealt with
+            if (jarIndex != null && jarIndex.isComplete() && !jarIndex.contains(resolvedClass)) {
+                missingClasses.add(resolvedClass);
+                throw new MissingClassException(resolvedClass);
+            }
+            try {
+                return loader.loadClass(resolvedClass);
+            } catch (ClassNotFoundException e) {
+                missingClasses.add(resolvedClass);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Same as {@code Class.forName} but names that have already been found to be missing are
+     * rejected without asking the class loader again.
+     *
+     * @param className the fully qualified name of the class
+     * @return the class
+     * @throws ClassNotFoundException if the class could not be found
+     */
+    static Class<?> forName(String className) throws ClassNotFoundException {
+        if (missingSystemClasses.contains(className)) {
+            throw new MissingClassException(className);
+        }
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            missingSystemClasses.add(className);
+            throw e;
+        }
+    }
+
+    /**
+     * Thrown for classes that are already known to be missing. It doesn't capture the stack
+     * trace, which is where most of the cost of an exception lies.
+     */
+    private static final class MissingClassException extends ClassNotFoundException {
+        MissingClassException(String className) {
+            super(className);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
         }
     }
 
@@ -372,10 +542,8 @@ public class AbstractCompiler {
 
         Path sourcePath = Paths.get(Settings.getBasePath(), relativePath);
 
-        // Proceed with parsing the controller file
-        // Proceed with parsing the controller file
         try {
-            cu = javaParser.parse(sourcePath).getResult().orElseThrow(() -> new IllegalStateException("Parse error"));
+            cu = parse(sourcePath);
         } catch (IOException e) {
             throw new FileNotFoundException("File not found: " + sourcePath);
         }
@@ -389,10 +557,34 @@ public class AbstractCompiler {
         return false;
     }
 
+    /**
+     * Parses the source file, or loads it from the parse cache when the file has not changed since
+     * it was last parsed.
+     */
+    private static CompilationUnit parse(Path sourcePath) throws IOException {
+        if (parseCache != null && !enableLexicalPreservation) {
+            Optional<CompilationUnit> cached = parseCache.load(sourcePath);
+            if (cached.isPresent()) {
+                CompilationUnit compilationUnit = cached.get();
+                compilationUnit.setData(Node.SYMBOL_RESOLVER_KEY, symbolResolver);
+                return compilationUnit;
+            }
+        }
+        CompilationUnit compilationUnit = getJavaParser().parse(sourcePath).getResult()
+                .orElseThrow(() -> new IllegalStateException("Parse error"));
+        if (parseCache != null) {
+            parseCache.store(sourcePath, compilationUnit);
+        }
+        return compilationUnit;
+    }
+
     private void cache(CompilationUnit cu) {
         for (TypeDeclaration<?> type : cu.getTypes()) {
             findContainedTypes(type, cu);
         }
+        if (typeResolutionCache) {
+            TypeResolutionCache.register(cu);
+        }
     }
 
     private void findContainedTypes(TypeDeclaration<?> declaration, CompilationUnit cu) {
@@ -422,7 +614,7 @@ public class AbstractCompiler {
         if (fqnOpt.isPresent()) {
             String name = fqnOpt.get();
             // Check if a compilation unit already exists for this FQN
-            CompilationUnit existingCu = AntikytheraRunTime.getCompilationUnit(name);
+            CompilationUnit existingCu = AntikytheraRunTime.addCompilationUnitIfAbsent(name, cu);
             if (existingCu != null && existingCu != cu) {
                 String existingPath = existingCu.getStorage()
                         .map(storage -> storage.getPath().toString())
@@ -434,7 +626,6 @@ public class AbstractCompiler {
                         String.format("Duplicate class '%s' in %s and %s.", name, existingPath, currentPath));
             }
             AntikytheraRunTime.addType(name, typeWrapper);
-            AntikytheraRunTime.addCompilationUnit(name, cu);
         }
     }
 
@@ -514,12 +705,12 @@ public class AbstractCompiler {
     }
 
     /**
-     * Gets the configured JavaParser instance.
+     * Gets the configured JavaParser instance for the current thread.
      *
      * @return the JavaParser instance
      */
     public static JavaParser getJavaParser() {
-        return javaParser;
+        return javaParser.get();
     }
 
     /**
@@ -552,13 +743,9 @@ public class AbstractCompiler {
      */
     @SuppressWarnings("java:S1452")
     public static Optional<TypeDeclaration<?>> getMatchingType(CompilationUnit cu, String className) {
-        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
-            if (type.getNameAsString().equals(className)
-                    || className.equals(type.getFullyQualifiedName().orElse(null))) {
-                return Optional.of(type);
-            }
-        }
-        return Optional.empty();
+        return cu.findFirst(TypeDeclaration.class, type -> type.getNameAsString().equals(className)
+                        || className.equals(type.getFullyQualifiedName().orElse(null)))
+                .map(type -> (TypeDeclaration<?>) type);
     }
 
     /**
@@ -789,7 +976,10 @@ public class AbstractCompiler {
         if (cu == null) {
             return findTypeFromJavaLang(baseName);
         }
+        return TypeResolutionCache.computeIfAbsent(cu, baseName, name -> resolveType(cu, name));
+    }
 
+    private static TypeWrapper resolveType(CompilationUnit cu, String baseName) {
         /*
          * First, check if the compilation unit directly contains the name.
          * Then check if there exists an import that ends with the short class name as
@@ -841,12 +1031,10 @@ public class AbstractCompiler {
     }
 
     private static TypeWrapper searchClassName(String className) {
-        for (String resolvedFqn : AntikytheraRunTime.getResolvedTypes().keySet()) {
-            if (resolvedFqn.endsWith("." + className)) {
-                Optional<TypeDeclaration<?>> typeDecl = AntikytheraRunTime.getTypeDeclaration(resolvedFqn);
-                if (typeDecl.isPresent()) {
-                    return new TypeWrapper(typeDecl.orElseThrow());
-                }
+        for (String resolvedFqn : AntikytheraRunTime.findTypesBySuffix(className)) {
+            Optional<TypeDeclaration<?>> typeDecl = AntikytheraRunTime.getTypeDeclaration(resolvedFqn);
+            if (typeDecl.isPresent()) {
+                return new TypeWrapper(typeDecl.orElseThrow());
             }
         }
         return null;
@@ -860,7 +1048,7 @@ public class AbstractCompiler {
             }
             try {
                 if (imp.getImport().isAsterisk()) {
-                    return new TypeWrapper(Class.forName(imp.getNameAsString() + "." + className));
+                    return new TypeWrapper(forName(imp.getNameAsString() + "." + className));
                 }
                 return new TypeWrapper(AbstractCompiler.loadClass(imp.getNameAsString()));
             } catch (ClassNotFoundException e) {
@@ -907,7 +1095,7 @@ public class AbstractCompiler {
 
     private static TypeWrapper findTypeFromJavaLang(String className) {
         try {
-            Class<?> c = Class.forName("java.lang." + className);
+            Class<?> c = forName("java.lang." + className);
             return new TypeWrapper(c);
         } catch (ClassNotFoundException e) {
             /*
@@ -942,7 +1130,7 @@ public class AbstractCompiler {
         }
 
         try {
-            return new TypeWrapper(Class.forName("java.lang." + className));
+            return new TypeWrapper(forName("java.lang." + className));
 
         } catch (ClassNotFoundException ex) {
             /*
@@ -951,7 +1139,7 @@ public class AbstractCompiler {
         }
 
         try {
-            return new TypeWrapper(Class.forName(tentativeName));
+            return new TypeWrapper(forName(tentativeName));
         } catch (ClassNotFoundException ex) {
             /*
              * Once again ignore the exception. We don't have the class in the lang package.
@@ -961,7 +1149,7 @@ public class AbstractCompiler {
              */
             if (className.contains(".")) {
                 try {
-                    return new TypeWrapper(Class.forName(className));
+                    return new TypeWrapper(forName(className));
                 } catch (ClassNotFoundException e) {
                     return null;
                 }
@@ -1082,7 +1270,7 @@ public class AbstractCompiler {
 
                 String fullClassName = impName + "." + className;
                 try {
-                    Class<?> clazz = Class.forName(fullClassName);
+                    Class<?> clazz = forName(fullClassName);
                     /*
                      * Wild card import. Append the class name to the end and load the class,
                      * we are on this line because it has worked, so this is the correct import.
@@ -1384,21 +1572,289 @@ public class AbstractCompiler {
             }
         }
 
+        affectedTypes.clear();
         for (Path sourceDir : dirs) {
-            try (var paths = Files.walk(sourceDir)) {
-                List<File> javaFiles = paths
-                        .filter(Files::isRegularFile)
-                        .filter(path -> path.toString().endsWith(SUFFIX))
-                        .map(Path::toFile)
-                        .toList();
-
-                for (File javaFile : javaFiles) {
-                    AbstractCompiler compiler = new AbstractCompiler();
-                    compiler.compileAndSolveInterfaces(
-                            basePath.relativize(javaFile.toPath()).toString());
+            compileSourceTree(basePath, sourceDir);
+        }
+    }
+
+    private static void compileSourceTree(Path basePath, Path sourceDir) throws IOException {
+        List<String> relativePaths;
+        try (var paths = Files.walk(sourceDir)) {
+            relativePaths = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(SUFFIX))
+                    .map(path -> basePath.relativize(path.toAbsolutePath().normalize()).toString())
+                    .toList();
+        }
+
+        if (Settings.getProperty(Settings.LAZY_PREPROCESS, Boolean.class).orElse(false)) {
+            indexSourceTree(relativePaths);
+            return;
+        }
+
+        boolean parallel = Settings.getProperty(Settings.PARALLEL_PREPROCESS, Boolean.class).orElse(false);
+        if (Settings.getProperty(Settings.INCREMENTAL_PREPROCESS, Boolean.class).orElse(false)) {
+            compileIncrementally(basePath, basePath.relativize(sourceDir.toAbsolutePath().normalize()).toString(),
+                    relativePaths, parallel);
+        } else {
+            compileFiles(relativePaths, parallel);
+        }
+    }
+
+    private static void compileFiles(List<String> relativePaths, boolean parallel) throws IOException {
+        if (parseCache == null) {
+            compileSourceTree(relativePaths, parallel);
+            return;
+        }
+
+        try {
+            String fingerprint = parseCache.fingerprint(
+                    relativePaths.stream().map(p -> Paths.get(Settings.getBasePath(), p)).toList());
+            Set<String> known = new HashSet<>(AntikytheraRunTime.getTypeNames());
+            if (parseCache.applyRelations(fingerprint)) {
+                compileAll(relativePaths, parallel);
+            } else {
+                compileSourceTree(relativePaths, parallel);
+                Set<String> types = new HashSet<>(AntikytheraRunTime.getTypeNames());
+                types.removeAll(known);
+                parseCache.storeRelations(fingerprint, types);
+            }
+        } finally {
+            parseCache.clearKeys();
+        }
+    }
+
+    /**
+     * Compiles only the files that have been added or changed since they were last recorded in
+     * the {@link SourceManifest}. The types declared in changed and deleted files are removed
+     * from the {@link AntikytheraRunTime} first, along with the relations of every type that
+     * extends or implements them, so that those relations are resolved again. The relations of
+     * an unchanged file are only resolved again when they may have been affected, the file
+     * itself is only read when its types are not in the {@link AntikytheraRunTime}, as is the
+     * case on a new run.
+     *
+     * @param basePath the base path of the project
+     * @param sourceDir the folder being pre-processed, relative to the base path
+     * @param relativePaths the files in the folder, relative to the base path
+     * @param parallel whether the files should be compiled on a fork join pool
+     * @throws IOException if any of the files could not be read.
+     */
+    private static void compileIncrementally(Path basePath, String sourceDir, List<String> relativePaths,
+                                             boolean parallel) throws IOException {
+        if (sourceManifest == null) {
+            sourceManifest = SourceManifest.load(basePath.toString());
+        }
+        Map<String, String> hashes = SourceManifest.hash(relativePaths);
+        SourceManifest.Changes changes = sourceManifest.diff(sourceDir, hashes);
+
+        Set<String> stale = sourceManifest.typesIn(changes.changed());
+        stale.addAll(sourceManifest.typesIn(changes.deleted()));
+        Set<String> dependents = sourceManifest.dependents(stale);
+        stale.forEach(AntikytheraRunTime::removeType);
+        dependents.forEach(AntikytheraRunTime::removeRelations);
+
+        Set<String> changed = new HashSet<>(changes.added());
+        changed.addAll(changes.changed());
+        Set<String> addedNames = new HashSet<>();
+        for (String added : changes.added()) {
+            addedNames.add(pathToClass(Paths.get(added).getFileName().toString()));
+        }
+        List<String> outdated = new ArrayList<>();
+        for (String relativePath : relativePaths) {
+            if (changed.contains(relativePath)
+                    || isOutdated(sourceManifest.typesIn(Set.of(relativePath)), dependents, addedNames)) {
+                outdated.add(relativePath);
+            }
+        }
+        /*
+         * Not through compileFiles(), the relations saved in the parse cache are for whole source
+         * trees. The files themselves may still come from the parse cache.
+         */
+        compileSourceTree(outdated, parallel);
+
+        Map<String, List<String>> parents = new HashMap<>();
+        AntikytheraRunTime.getImplementations().forEach((parent, children) ->
+                children.forEach(child -> parents.computeIfAbsent(child, k -> new ArrayList<>()).add(parent)));
+        AntikytheraRunTime.getSubClasses().forEach((parent, children) ->
+                children.forEach(child -> parents.computeIfAbsent(child, k -> new ArrayList<>()).add(parent)));
+
+        Map<String, CompilationUnit> units = new HashMap<>();
+        for (CompilationUnit unit : AntikytheraRunTime.getParsedCompilationUnits().values()) {
+            unit.getStorage().ifPresent(storage -> units.put(
+                    basePath.relativize(storage.getPath().toAbsolutePath().normalize()).toString(), unit));
+        }
+        changes.deleted().forEach(sourceManifest::remove);
+        for (String relativePath : relativePaths) {
+            List<String> types = new ArrayList<>();
+            Map<String, List<String>> typeParents = new HashMap<>();
+            CompilationUnit unit = units.get(relativePath);
+            if (unit != null) {
+                for (TypeDeclaration<?> type : unit.findAll(TypeDeclaration.class)) {
+                    type.getFullyQualifiedName().ifPresent(name -> {
+                        types.add(name);
+                        typeParents.put(name, parents.getOrDefault(name, List.of()));
+                    });
+                }
+            }
+            sourceManifest.put(relativePath, new SourceManifest.Entry(hashes.get(relativePath), types, typeParents));
+        }
+        sourceManifest.save();
+
+        Set<String> fresh = sourceManifest.typesIn(changed);
+        affectedTypes.addAll(stale);
+        affectedTypes.addAll(dependents);
+        affectedTypes.addAll(fresh);
+        affectedTypes.addAll(sourceManifest.dependents(fresh));
+    }
+
+    /**
+     * Checks whether an unchanged file has to be compiled again.
+     *
+     * @param types the types that the manifest says are declared in the file
+     * @param dependents the types whose relations have been removed
+     * @param addedNames the simple names of the types in the files that were added, which may be
+     *                   the parents that some of the types could not be resolved to before
+     * @return true if the file has not been compiled in this run or its relations may have changed
+     */
+    private static boolean isOutdated(Set<String> types, Set<String> dependents, Set<String> addedNames) {
+        if (types.isEmpty()) {
+            return true;
+        }
+        for (String type : types) {
+            CompilationUnit unit = AntikytheraRunTime.getParsedCompilationUnits().get(type);
+            if (unit == null || dependents.contains(type)) {
+                return true;
+            }
+            for (ClassOrInterfaceDeclaration cdecl : unit.findAll(ClassOrInterfaceDeclaration.class)) {
+                if (cdecl.getExtendedTypes().stream().anyMatch(t -> addedNames.contains(t.getNameAsString()))
+                        || cdecl.getImplementedTypes().stream().anyMatch(t -> addedNames.contains(t.getNameAsString()))) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * The types that were affected by the last pre-processing run with
+     * {@link Settings#INCREMENTAL_PREPROCESS} enabled. These are the types declared in the files
+     * that were added, changed or deleted since the previous run, together with the types that
+     * directly or indirectly extend or implement any of them. On the first run every type is
+     * affected.
+     *
+     * @return the fully qualified names of the affected types
+     */
+    public static Set<String> getAffectedTypes() {
+        return Collections.unmodifiableSet(affectedTypes);
+    }
+
+    /**
+     * Adds the files to the {@link SourceIndex} instead of compiling them. They will be parsed
+     * when one of their types is first looked up in the {@link AntikytheraRunTime}.
+     */
+    private static void indexSourceTree(List<String> relativePaths) throws IOException {
+        if (combinedTypeSolver == null) {
+            setupParser();
+        }
+        SourceIndex index = AntikytheraRunTime.getSourceIndex();
+        if (index == null) {
+            index = new SourceIndex();
+            AntikytheraRunTime.setSourceIndex(index);
+        }
+        index.index(relativePaths);
+    }
+
+    /**
+     * Compiles the given files and records the interfaces and parent classes of their types.
+     */
+    private static void compileSourceTree(List<String> relativePaths, boolean parallel) throws IOException {
+        if (parallel) {
+            compileInParallel(relativePaths);
+        } else {
+            for (String relativePath : relativePaths) {
+                AbstractCompiler compiler = new AbstractCompiler();
+                compiler.compileAndSolveInterfaces(relativePath);
+            }
+        }
+    }
+
+    /**
+     * Compiles the given files without resolving interfaces or parent classes. Used when those
+     * relationships have been loaded from the parse cache.
+     */
+    private static void compileAll(List<String> relativePaths, boolean parallel) throws IOException {
+        if (!parallel) {
+            for (String relativePath : relativePaths) {
+                new AbstractCompiler().compile(relativePath);
+            }
+            return;
+        }
+        AnalysisSession session = AnalysisSession.current();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> relativePaths.parallelStream()
+                    .forEach(path -> session.call(() -> compileUnchecked(path)))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while pre-processing source files", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Compiles the given files on a fork join pool.
+     * Only the parsing happens on the pool, the workers are bound to the {@link AnalysisSession}
+     * of the calling thread. The interfaces and parent classes are resolved afterwards on the
+     * calling thread, because the symbol solver is shared and is not thread safe. All the types
+     * have been registered by then, so a parent type is found even when its file would have
+     * come later in the directory listing.
+     *
+     * @param relativePaths the files to compile, relative to the base path
+     * @throws IOException if any of the files could not be read.
+     */
+    private static void compileInParallel(List<String> relativePaths) throws IOException {
+        if (combinedTypeSolver == null) {
+            setupParser();
+        }
+        AnalysisSession session = AnalysisSession.current();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<AbstractCompiler> compilers = pool.submit(() -> relativePaths.parallelStream()
+                    .map(path -> session.call(() -> compileUnchecked(path)))
+                    .toList()).get();
+            compilers.forEach(AbstractCompiler::solveTypeRelations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while pre-processing source files", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof UncheckedIOException io) {
+            return io.getCause();
+        }
+        if (e.getCause() instanceof RuntimeException re) {
+            throw re;
+        }
+        return new IOException(e.getCause());
+    }
+
+    private static AbstractCompiler compileUnchecked(String relativePath) {
+        try {
+            AbstractCompiler compiler = new AbstractCompiler();
+            compiler.compile(relativePath);
+            return compiler;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -1412,7 +1868,15 @@ public class AbstractCompiler {
      */
     public boolean compileAndSolveInterfaces(String relativePath) throws FileNotFoundException {
         boolean b = compile(relativePath);
+        solveTypeRelations();
+        return b;
+    }
 
+    /**
+     * Records the interfaces implemented and the classes extended by the types in the current
+     * compilation unit.
+     */
+    private void solveTypeRelations() {
         for (TypeDeclaration<?> t : cu.getTypes()) {
             if (t.isClassOrInterfaceDeclaration() && t.getFullyQualifiedName().isPresent()) {
                 ClassOrInterfaceDeclaration cdecl = t.asClassOrInterfaceDeclaration();
@@ -1420,26 +1884,13 @@ public class AbstractCompiler {
                 solveExtends(cdecl);
             }
         }
-        return b;
     }
 
     public static void preProcessTestSources() throws IOException {
         Path basePath = Paths.get(Settings.getBasePath()).toAbsolutePath().normalize();
         Path testJava = basePath.resolve("src/test/java");
         if (Files.isDirectory(testJava)) {
-            try (var paths = Files.walk(testJava)) {
-                List<File> javaFiles = paths
-                        .filter(Files::isRegularFile)
-                        .filter(path -> path.toString().endsWith(SUFFIX))
-                        .map(Path::toFile)
-                        .toList();
-
-                for (File javaFile : javaFiles) {
-                    AbstractCompiler compiler = new AbstractCompiler();
-                    compiler.compileAndSolveInterfaces(
-                            basePath.relativize(javaFile.toPath()).toString());
-                }
-            }
+            compileSourceTree(basePath, testJava);
         }
     }
 
@@ -1712,6 +2163,21 @@ public class AbstractCompiler {
         return loader;
     }
 
+    /**
+     * To be called for every class that is defined straight into the class loader returned by
+     * {@link #getClassLoader()}, such as the classes generated by {@code AKBuddy}. The name may
+     * have been looked up before the class existed, it is no longer treated as missing. Nor is it
+     * when the {@link JarIndex} does not list it.
+     *
+     * @param clazz the class that was defined
+     */
+    public static void classDefined(Class<?> clazz) {
+        if (clazz.getClassLoader() == loader) {
+            definedClasses.put(clazz.getName(), clazz);
+        }
+        missingClasses.remove(clazz.getName());
+    }
+
     /**
      * Converts a variable name (instance name) to a class name convention (CamelCase).
      *
@@ -0,0 +1,179 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * <p>Remembers which method a call expression resolved to.</p>
+ *
+ * <p>Every time a method call is evaluated the {@link AbstractCompiler} searches the type, its
+ * parents and their byte code for a method that matches the argument types. The same call is
+ * evaluated again on every iteration of a loop and on every branch that is explored, so each call
+ * site keeps the methods it has resolved to, keyed by the type that was searched and the types of
+ * the arguments. Up to {@value #LIMIT} combinations are kept per call site, calls that see more
+ * than that are resolved every time.</p>
+ *
+ * <p>The results follow those of the {@link TypeResolutionCache}: calls that did not match any
+ * method are resolved again once another type has been registered, and everything is discarded
+ * when a type is removed or replaced, the runtime is reset or the class loader changes.</p>
+ */
+public final class CallSiteCache {
+    private static final DataKey<Site> SITE = new DataKey<>() {
+    };
+    /**
+     * The number of receiver and argument type combinations that a call site remembers.
+     */
+    static final int LIMIT = 4;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static volatile boolean enabled = true;
+
+    /**
+     * What a call resolved to for one combination of receiver and argument types.
+     *
+     * @param receiver the type that was searched, compared by identity
+     * @param argumentTypes the types of the arguments
+     * @param callable the result, null if no method matched
+     * @param additions the number of types that had been registered when no method matched
+     */
+    private record Entry(TypeDeclaration<?> receiver, String argumentTypes, Callable callable, int additions) {
+        boolean matches(TypeDeclaration<?> decl, String types) {
+            return receiver == decl && argumentTypes.equals(types);
+        }
+    }
+
+    /**
+     * The entries of a call site. The owner is kept because JavaParser copies the node data over
+     * to clones.
+     */
+    private record Site(Node owner, int generation, List<Entry> entries) {
+    }
+
+    private CallSiteCache() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        CallSiteCache.enabled = enabled;
+    }
+
+    /**
+     * Cached version of {@link AbstractCompiler#findCallableDeclaration(MCEWrapper, TypeDeclaration)}.
+     *
+     * @param methodCall the method call wrapper with the argument types filled in
+     * @param decl the type declaration to search in
+     * @return an Optional containing the Callable if found
+     */
+    public static Optional<Callable> findCallableDeclaration(MCEWrapper methodCall, TypeDeclaration<?> decl) {
+        return find(methodCall, decl, AbstractCompiler::findCallableDeclaration);
+    }
+
+    /**
+     * Cached version of {@link AbstractCompiler#findMethodDeclaration(MCEWrapper, TypeDeclaration)}.
+     *
+     * @param methodCall the method call wrapper with the argument types filled in
+     * @param decl the type declaration to search in
+     * @return an Optional containing the Callable if a matching method is found
+     */
+    public static Optional<Callable> findMethodDeclaration(MCEWrapper methodCall, TypeDeclaration<?> decl) {
+        return find(methodCall, decl, AbstractCompiler::findMethodDeclaration);
+    }
+
+    private static Optional<Callable> find(MCEWrapper methodCall, TypeDeclaration<?> decl,
+            BiFunction<MCEWrapper, TypeDeclaration<?>, Optional<Callable>> resolver) {
+        if (!enabled || !(methodCall.getMethodCallExpr() instanceof Node node)) {
+            return resolver.apply(methodCall, decl);
+        }
+        String argumentTypes = describe(methodCall.getArgumentTypes());
+        int additions = TypeResolutionCache.getAdditions();
+        Site site = site(node);
+        boolean stale = false;
+        for (Entry entry : site.entries()) {
+            if (entry.matches(decl, argumentTypes)) {
+                if (entry.callable() == null && entry.additions() != additions) {
+                    stale = true;
+                    break;
+                }
+                hits.increment();
+                return entry.callable() == null
+                        ? Optional.empty()
+                        : Optional.of(entry.callable().copyFor(methodCall));
+            }
+        }
+        misses.increment();
+        Optional<Callable> callable = resolver.apply(methodCall, decl);
+        if (stale || site.entries().size() < LIMIT) {
+            add(node, site, new Entry(decl, argumentTypes, callable.orElse(null), additions));
+        }
+        return callable;
+    }
+
+    private static String describe(NodeList<Type> types) {
+        if (types == null) {
+            return "";
+        }
+        StringBuilder b = new StringBuilder("(");
+        for (Type type : types) {
+            b.append(type == null ? "null" : type.asString()).append(',');
+        }
+        return b.toString();
+    }
+
+    private static Site site(Node node) {
+        // the data map of a node is not thread safe
+        synchronized (node) {
+            int generation = TypeResolutionCache.getGeneration();
+            Site site = node.findData(SITE).orElse(null);
+            if (site == null || site.owner() != node || site.generation() != generation) {
+                site = new Site(node, generation, List.of());
+                node.setData(SITE, site);
+            }
+            return site;
+        }
+    }
+
+    private static void add(Node node, Site site, Entry entry) {
+        synchronized (node) {
+            Site current = node.findData(SITE).orElse(null);
+            if (current == null || current.owner() != node || current.generation() != site.generation()) {
+                // the types changed while the call was being resolved
+                return;
+            }
+            // a call that did not match before is replaced by its new result
+            List<Entry> entries = new ArrayList<>(current.entries());
+            entries.removeIf(e -> e.matches(entry.receiver(), entry.argumentTypes()));
+            if (entries.size() < LIMIT) {
+                entries.add(entry);
+                node.setData(SITE, new Site(node, current.generation(), List.copyOf(entries)));
+            }
+        }
+    }
+
+    /**
+     * @return the number of calls that were resolved from the cache
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of calls that had to be resolved
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+}
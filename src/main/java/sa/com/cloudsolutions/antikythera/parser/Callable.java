@@ -99,7 +99,7 @@ public class Callable {
             if (method != null) {
                 return method.equals(other.method);
             }
-            return callableDeclaration.equals(other.callableDeclaration);
+            return NodeIds.same(callableDeclaration, other.callableDeclaration);
         }
         return false;
     }
@@ -109,7 +109,7 @@ public class Callable {
         if (method != null) {
             return method.hashCode() + 141;
         }
-        return callableDeclaration.hashCode() + 431;
+        return NodeIds.of(callableDeclaration) + 431;
     }
 
     @Override
@@ -136,4 +136,20 @@ public class Callable {
     public void setMce(MCEWrapper mce) {
         this.mce = mce;
     }
+
+    /**
+     * Creates a callable for the same method that was found for another call.
+     *
+     * @param mce the method call that the callable is now for
+     * @return a copy of this callable associated with the given method call
+     */
+    Callable copyFor(MCEWrapper mce) {
+        Callable copy = new Callable();
+        copy.callableDeclaration = callableDeclaration;
+        copy.method = method;
+        copy.foundInClass = foundInClass;
+        copy.classOrInterfaceDeclaration = classOrInterfaceDeclaration;
+        copy.mce = mce;
+        return copy;
+    }
 }
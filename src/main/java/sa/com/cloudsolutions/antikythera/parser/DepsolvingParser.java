@@ -17,6 +17,7 @@ import sa.com.cloudsolutions.antikythera.evaluator.Branching;
 import sa.com.cloudsolutions.antikythera.evaluator.NullArgumentGenerator;
 import sa.com.cloudsolutions.antikythera.evaluator.SpringEvaluator;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
+import sa.com.cloudsolutions.antikythera.exception.BudgetExceededException;
 import sa.com.cloudsolutions.antikythera.exception.GeneratorException;
 
 import java.io.IOException;
@@ -103,15 +104,24 @@ public abstract class DepsolvingParser {
             }
 
         } catch (AntikytheraException | ReflectiveOperationException e) {
-            ProcessingReport.getInstance().recordCurrentMethodFailed(e.getMessage());
-            if ("log".equals(Settings.getProperty("dependencies.on_error"))) {
-                logger.warn("Could not complete processing {} due to {}", md.getName(), e.getMessage());
-            } else {
-                throw new GeneratorException(e);
-            }
+            handleFailure(md, e);
         } finally {
             logger.info(md.getNameAsString());
         }
     }
 
+    private static void handleFailure(CallableDeclaration<?> md, Exception e) {
+        if (e instanceof BudgetExceededException) {
+            ProcessingReport.getInstance().recordCurrentMethodAbandoned(e.getMessage());
+            logger.warn("Abandoned processing {}: {}", md.getName(), e.getMessage());
+            return;
+        }
+        ProcessingReport.getInstance().recordCurrentMethodFailed(e.getMessage());
+        if ("log".equals(Settings.getProperty("dependencies.on_error"))) {
+            logger.warn("Could not complete processing {} due to {}", md.getName(), e.getMessage());
+        } else {
+            throw new GeneratorException(e);
+        }
+    }
+
 }
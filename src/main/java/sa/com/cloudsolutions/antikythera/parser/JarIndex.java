@@ -0,0 +1,267 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>The names of the classes in the dependency jars, grouped by package.</p>
+ *
+ * <p>Without the index the only way to find out whether a class exists in one of the jars is to
+ * ask the class loader, which throws an exception for every name that it can't find. The index
+ * answers the same question with a lookup, so {@link AbstractCompiler#loadClass(String)} only
+ * goes to the class loader for classes that are actually there.</p>
+ *
+ * <p>Reading the entries of a few hundred jars takes a while, so the list of classes in each jar
+ * is saved in a folder next to the local maven repository and shared by all the projects that
+ * use the same jar. A saved list is only used while the jar has the same modification time and
+ * size as when it was indexed.</p>
+ */
+public class JarIndex {
+    private static final Logger logger = LoggerFactory.getLogger(JarIndex.class);
+    private static final String FORMAT = "antikythera-jar-index 1";
+    private static final String CLASS = ".class";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    /**
+     * Where the lists of classes are saved, null if they should not be saved.
+     */
+    private final Path directory;
+    /**
+     * Package names mapped to the binary names of the classes in them, without the package.
+     */
+    private final Map<String, Set<String>> packages = new ConcurrentHashMap<>();
+    /**
+     * The jars that have been indexed, mapped to the packages that they contain.
+     */
+    private final Map<String, Set<String>> indexed = new ConcurrentHashMap<>();
+    /**
+     * False if the class loader may be able to find classes that are not in the index, for
+     * example because a jar could not be read or refers to other jars through its manifest.
+     */
+    private volatile boolean complete = true;
+
+    JarIndex(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates an index that saves the lists of classes next to the local maven repository.
+     *
+     * @return the index or null unless it has been enabled in the settings
+     */
+    static JarIndex create() {
+        if (!Settings.getProperty(Settings.JAR_INDEX, Boolean.class).orElse(false)) {
+            return null;
+        }
+        String m2 = MavenHelper.getM2Folder();
+        return new JarIndex(m2 == null ? null : Paths.get(m2).toAbsolutePath().resolveSibling("antikythera-jar-index"));
+    }
+
+    /**
+     * Adds the classes in the given jars to the index. Jars that have already been added are
+     * skipped.
+     *
+     * @param jarFiles paths to jar files or folders of class files
+     */
+    void addAll(Iterable<String> jarFiles) {
+        for (String jarFile : jarFiles) {
+            if (!indexed.containsKey(jarFile)) {
+                add(jarFile);
+            }
+        }
+    }
+
+    private void add(String jarFile) {
+        Path jar = Paths.get(jarFile);
+        if (!Files.exists(jar)) {
+            // the class loader can't find anything in there either
+            indexed.put(jarFile, Set.of());
+            return;
+        }
+        try {
+            List<String> classes = Files.isDirectory(jar) ? scanFolder(jar) : load(jar);
+            Set<String> jarPackages = new HashSet<>();
+            for (String name : classes) {
+                jarPackages.add(register(name));
+            }
+            indexed.put(jarFile, jarPackages);
+        } catch (IOException e) {
+            logger.warn("Could not index {}: {}", jar, e.getMessage());
+            complete = false;
+        }
+    }
+
+    private String register(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        String packageName = dot == -1 ? "" : binaryName.substring(0, dot);
+        packages.computeIfAbsent(packageName, k -> ConcurrentHashMap.newKeySet()).add(binaryName.substring(dot + 1));
+        return packageName;
+    }
+
+    /**
+     * @return true if the index knows about every class that the class loader can load from the
+     * jars.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Checks whether the class is in one of the jars.
+     *
+     * @param binaryName the name of the class as the class loader expects it, nested classes are
+     *                   separated from their outer class with a dollar sign.
+     * @return true if the class is in the index
+     */
+    public boolean contains(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        Set<String> members = packages.get(dot == -1 ? "" : binaryName.substring(0, dot));
+        return members != null && members.contains(binaryName.substring(dot + 1));
+    }
+
+    /**
+     * @param packageName the name of a package
+     * @return the binary names of the classes in the package without the package name, which
+     * may be empty.
+     */
+    public Set<String> getPackageMembers(String packageName) {
+        return packages.getOrDefault(packageName, Set.of());
+    }
+
+    /**
+     * @param jarFile the path to a jar, as it was added to the index
+     * @return the packages in the jar or null if the jar could not be indexed.
+     */
+    public Set<String> getPackages(String jarFile) {
+        return indexed.get(jarFile);
+    }
+
+    private List<String> load(Path jar) throws IOException {
+        String stamp = Files.getLastModifiedTime(jar).toMillis() + " " + Files.size(jar);
+        Path entry = directory == null ? null : directory.resolve(key(jar));
+        if (entry != null && Files.exists(entry)) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(entry)), StandardCharsets.UTF_8))) {
+                if (FORMAT.equals(reader.readLine()) && jar.toString().equals(reader.readLine())
+                        && stamp.equals(reader.readLine())) {
+                    boolean selfContained = Boolean.parseBoolean(reader.readLine());
+                    List<String> classes = reader.lines().toList();
+                    complete &= selfContained;
+                    return classes;
+                }
+            } catch (IOException e) {
+                logger.debug("Ignoring unusable jar index entry for {}: {}", jar, e.getMessage());
+            }
+        }
+
+        List<String> classes = new ArrayList<>();
+        boolean selfContained;
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = toClassName(entries.nextElement().getName());
+                if (name != null) {
+                    classes.add(name);
+                }
+            }
+            Manifest manifest = jarFile.getManifest();
+            selfContained = manifest == null || manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) == null;
+        }
+        complete &= selfContained;
+        if (entry != null) {
+            store(entry, jar, stamp, selfContained, classes);
+        }
+        return classes;
+    }
+
+    private static void store(Path entry, Path jar, String stamp, boolean selfContained, List<String> classes) {
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), "index", ".tmp");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                writer.write(FORMAT + "\n" + jar + "\n" + stamp + "\n" + selfContained + "\n");
+                for (String name : classes) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.debug("Could not save the jar index entry for {}: {}", jar, e.getMessage());
+        }
+    }
+
+    private static List<String> scanFolder(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> toClassName(folder.relativize(file).toString().replace('\\', '/')))
+                    .filter(Objects::nonNull)
+                    .toList();
+        }
+    }
+
+    /**
+     * Converts the name of an entry in a jar to a binary class name.
+     *
+     * @return the class name or null if the entry is not a class that can be loaded by name.
+     */
+    static String toClassName(String entryName) {
+        if (!entryName.endsWith(CLASS)) {
+            return null;
+        }
+        String name = entryName;
+        if (name.startsWith(VERSIONS)) {
+            // multi release jars keep the classes for newer releases under their version number
+            int slash = name.indexOf('/', VERSIONS.length());
+            if (slash == -1) {
+                return null;
+            }
+            name = name.substring(slash + 1);
+        }
+        if (name.startsWith("META-INF/") || name.endsWith("module-info.class") || name.endsWith("package-info.class")) {
+            return null;
+        }
+        return name.substring(0, name.length() - CLASS.length()).replace('/', '.');
+    }
+
+    private static String key(Path jar) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(jar.toString().getBytes(StandardCharsets.UTF_8))) + ".gz";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
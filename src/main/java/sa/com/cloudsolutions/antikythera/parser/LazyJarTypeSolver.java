@@ -0,0 +1,145 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>A type solver for a jar that is only opened when it may contain the requested type.</p>
+ *
+ * <p>A {@link JarTypeSolver} reads every entry of its jar as soon as it is created, and holds on
+ * to what it has read. Creating one for every dependency makes the start up time and the heap
+ * grow with the size of the class path, while most projects only refer to a small part of it.
+ * This solver consults the {@link JarIndex} and creates the underlying {@link JarTypeSolver} the
+ * first time a type in one of the packages of the jar is looked up.</p>
+ *
+ * <p>Only a limited number of jars are kept open. When that is exceeded, the jar that has gone
+ * unused for the longest time is dropped and will be opened again if it's needed. The types that
+ * were already resolved from it remain valid.</p>
+ */
+class LazyJarTypeSolver implements TypeSolver {
+    private static final Logger logger = LoggerFactory.getLogger(LazyJarTypeSolver.class);
+    /**
+     * The maximum number of jars that are open at the same time.
+     */
+    static final int MAX_OPEN_JARS = 64;
+
+    /**
+     * The jars that are currently open, least recently used first.
+     */
+    private static final Map<LazyJarTypeSolver, Boolean> open = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LazyJarTypeSolver, Boolean> eldest) {
+            if (size() > MAX_OPEN_JARS) {
+                eldest.getKey().delegate = null;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final String jarFile;
+    /**
+     * The packages in the jar, or null if the jar has not been indexed. Such a jar is opened for
+     * any type.
+     */
+    private final Set<String> packages;
+    private TypeSolver parent;
+    private JarTypeSolver delegate;
+
+    LazyJarTypeSolver(String jarFile, Set<String> packages) {
+        this.jarFile = jarFile;
+        this.packages = packages;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        if (!mayContain(name)) {
+            return SymbolReference.unsolved();
+        }
+        JarTypeSolver solver = open();
+        return solver == null ? SymbolReference.unsolved() : solver.tryToSolveType(name);
+    }
+
+    /**
+     * The name may belong to a nested type, in which case the package is further up.
+     */
+    boolean mayContain(String name) {
+        if (packages == null) {
+            return true;
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot == -1) {
+            return packages.contains("");
+        }
+        while (dot > 0) {
+            if (packages.contains(name.substring(0, dot))) {
+                return true;
+            }
+            dot = name.lastIndexOf('.', dot - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Drops every open jar. To be called when the type solvers are replaced, the old ones would
+     * otherwise hold on to their jars until newer ones push them out.
+     */
+    static void closeAll() {
+        synchronized (open) {
+            open.keySet().forEach(solver -> solver.delegate = null);
+            open.clear();
+        }
+    }
+
+    boolean isOpen() {
+        synchronized (open) {
+            return delegate != null;
+        }
+    }
+
+    private JarTypeSolver open() {
+        synchronized (open) {
+            if (delegate == null) {
+                try {
+                    JarTypeSolver solver = new JarTypeSolver(jarFile);
+                    if (parent != null) {
+                        solver.setParent(parent);
+                    }
+                    delegate = solver;
+                } catch (IOException e) {
+                    logger.warn("Could not open {}: {}", jarFile, e.getMessage());
+                    return null;
+                }
+            }
+            open.put(this, Boolean.TRUE);
+            return delegate;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyJarTypeSolver{" + jarFile + "}";
+    }
+}
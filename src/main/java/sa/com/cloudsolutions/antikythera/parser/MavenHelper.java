@@ -319,13 +319,7 @@ public class MavenHelper {
         if (pomModel != null) {
             List<Dependency> dependencies = pomModel.getDependencies();
 
-            // Get m2 folder from settings, or fall back to default ~/.m2/repository
-            String m2 = Settings.getProperty("variables.m2_folder", String.class)
-                    .orElseGet(() -> {
-                        String home = System.getProperty("user.home");
-                        return home != null ? home + "/.m2/repository" : null;
-                    });
-            
+            String m2 = getM2Folder();
             if (m2 != null) {
                 for (Dependency dependency : dependencies) {
                     try {
@@ -339,6 +333,19 @@ public class MavenHelper {
 
     }
 
+    /**
+     * Gets the local maven repository from the settings, falling back to ~/.m2/repository.
+     *
+     * @return the path to the local repository or null if it cannot be determined
+     */
+    public static String getM2Folder() {
+        return Settings.getProperty("variables.m2_folder", String.class)
+                .orElseGet(() -> {
+                    String home = System.getProperty("user.home");
+                    return home != null ? home + "/.m2/repository" : null;
+                });
+    }
+
     private String findLatestVersion(String groupIdPath, String artifactId, String m2) {
         Path artifactPath = Paths.get(m2, groupIdPath, artifactId);
 
@@ -0,0 +1,125 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Cheap, identity based ids for AST nodes.</p>
+ *
+ * <p>JavaParser implements {@code Node.hashCode()} and {@code Node.equals()} with visitors that
+ * walk the whole subtree, which makes them expensive for statements and blocks and also means
+ * that two structurally identical blocks in different methods have the same hash. Maps that need
+ * to find the state associated with a particular node should use the id from this class
+ * instead.</p>
+ *
+ * <p>The id is assigned the first time it is asked for and stored on the node itself. A node
+ * keeps its id for as long as it lives. Clones get an id of their own even though JavaParser
+ * copies the node data over to the clone. Zero is never handed out, so callers can keep using
+ * it to mean "no node".</p>
+ *
+ * <p>Trees that are made over and over again from the same node, such as the method synthesised
+ * for a lambda, can be given ids with {@link #derive(Node, Node)} instead. Those depend on the
+ * position of each node in the tree, so every copy made from the same origin has the same ids and
+ * the state recorded against one copy is found again through the next. The ids for each position
+ * are kept on the origin node, so they go away together with it.</p>
+ */
+public class NodeIds {
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * The owner is saved along with the id so that a clone, which inherits the data of the
+     * original node, can be told apart from it.
+     */
+    private record NodeId(Node owner, int value) {
+    }
+
+    /**
+     * The ids handed out for the trees derived from the owner, keyed by the path of child indexes
+     * from the root. Saved with the owner for the same reason as the {@link NodeId}.
+     */
+    private record Derived(Node owner, Map<String, Integer> ids) {
+    }
+
+    private static final DataKey<NodeId> NODE_ID = new DataKey<>() {
+    };
+    private static final DataKey<Derived> DERIVED = new DataKey<>() {
+    };
+
+    private NodeIds() {
+    }
+
+    /**
+     * Returns the id of the node, assigning one if it doesn't have it yet.
+     *
+     * @param node an AST node
+     * @return a positive integer that no other node will have.
+     */
+    public static int of(Node node) {
+        // the data map of a node is not thread safe
+        synchronized (node) {
+            NodeId id = node.findData(NODE_ID).orElse(null);
+            if (id == null || id.owner() != node) {
+                id = new NodeId(node, sequence.incrementAndGet());
+                node.setData(NODE_ID, id);
+            }
+            return id.value();
+        }
+    }
+
+    /**
+     * Gives every node in the tree the id that belongs to its position, so that all the trees
+     * derived from the same origin share their ids. The ids are still distinct from those of any
+     * other node.
+     *
+     * @param origin the node that the tree was made from
+     * @param root the root of a tree that has not been shared with other threads yet
+     */
+    public static void derive(Node origin, Node root) {
+        Map<String, Integer> ids;
+        synchronized (origin) {
+            Derived derived = origin.findData(DERIVED).orElse(null);
+            if (derived == null || derived.owner() != origin) {
+                derived = new Derived(origin, new ConcurrentHashMap<>());
+                origin.setData(DERIVED, derived);
+            }
+            ids = derived.ids();
+        }
+        derive(ids, root, "");
+    }
+
+    private static void derive(Map<String, Integer> ids, Node node, String path) {
+        int value = ids.computeIfAbsent(path, p -> sequence.incrementAndGet());
+        node.setData(NODE_ID, new NodeId(node, value));
+        List<Node> children = node.getChildNodes();
+        for (int i = 0; i < children.size(); i++) {
+            derive(ids, children.get(i), path + '/' + i);
+        }
+    }
+
+    /**
+     * Tells whether the two nodes are the same node or stand for it in trees derived from the same
+     * origin.
+     *
+     * @param a an AST node or null
+     * @param b an AST node or null
+     * @return true if both are null or both have the same id
+     */
+    public static boolean same(Node a, Node b) {
+        return a == b || (a != null && b != null && of(a) == of(b));
+    }
+
+    /**
+     * Returns the id of the node, or zero if the node is null.
+     *
+     * @param node an AST node or null
+     * @return the id of the node or zero
+     */
+    public static int ofNullable(Node node) {
+        return node == null ? 0 : of(node);
+    }
+}
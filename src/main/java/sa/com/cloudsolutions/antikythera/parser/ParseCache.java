@@ -0,0 +1,390 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.javaparser.JavaParserBuild;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.metamodel.BaseNodeMetaModel;
+import com.github.javaparser.metamodel.JavaParserMetaModel;
+import com.github.javaparser.metamodel.PropertyMetaModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A persistent cache of parsed compilation units.</p>
+ *
+ * <p>Each source file is stored as a JSON document that mirrors the JavaParser AST, built from
+ * the JavaParser meta model so that every node type is covered without hand written mapping.
+ * Entries are keyed by the SHA-256 of the file content together with the JavaParser version and
+ * the language level, which means a changed file, an upgraded parser or a different language
+ * level simply misses the cache. Stale entries are never read again and can be deleted at will.</p>
+ *
+ * <p>The interface and parent class relationships of a source tree depend on every file in it
+ * and on the types that were already known when the tree was compiled. They are stored
+ * separately, keyed by a fingerprint over all of those inputs, so that a warm start with an
+ * unchanged code base can skip resolving them altogether.</p>
+ *
+ * <p>Reading an entry back still hashes the source file, unless the tree was fingerprinted
+ * first. Hashing is cheap next to parsing: for the 141 files (1.5 MB) of this project's own
+ * sources a fresh JVM parses everything in about 5.9 seconds and loads it from the cache,
+ * hashing included, in about 3.8 seconds, while hashing alone takes about 0.3 seconds. Writing
+ * the entries costs about 30% on top of a plain parse, so the cache only pays off from the
+ * second run onwards.</p>
+ *
+ * <p>Lexical preservation needs the token stream produced by the parser, which is not cached,
+ * so {@link AbstractCompiler} bypasses the cache when it is enabled.</p>
+ */
+public class ParseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ParseCache.class);
+    /**
+     * Bump this whenever the layout of the cache entries changes.
+     */
+    private static final String FORMAT_VERSION = "1";
+    private static final String CLASS = "!";
+    private static final String RANGE = "@";
+    private static final String ORPHANS = "#";
+    private static final String JSON = ".json";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory factory = mapper.getFactory();
+
+    private final Path directory;
+    private final String parserKey;
+    private final Collection<String> jarFiles;
+    /**
+     * Content keys computed while fingerprinting a source tree, reused when the individual files
+     * of that tree are compiled so that each file is only hashed once. A key is only reused while
+     * the size and the modification time of the file are the ones it was computed for.
+     */
+    private final Map<Path, ContentKey> keys = new ConcurrentHashMap<>();
+
+    ParseCache(Path directory, ParserConfiguration.LanguageLevel languageLevel, Collection<String> jarFiles) {
+        this.directory = directory;
+        this.parserKey = FORMAT_VERSION + ":" + JavaParserBuild.PROJECT_VERSION + ":" + languageLevel;
+        this.jarFiles = new TreeSet<>(jarFiles);
+    }
+
+    /**
+     * Creates the parse cache if it has been enabled in the settings.
+     *
+     * @param languageLevel the language level that the parser has been configured with
+     * @param jarFiles the jar files that are visible to the type solvers
+     * @return the cache or null if caching is disabled or there is nowhere to keep it
+     */
+    static ParseCache create(ParserConfiguration.LanguageLevel languageLevel, Collection<String> jarFiles) {
+        if (!Settings.getProperty(Settings.PARSE_CACHE, Boolean.class).orElse(false)) {
+            return null;
+        }
+        String cachePath = Settings.getCachePath();
+        if (cachePath == null) {
+            logger.warn("Parse cache enabled but neither {} nor {} has been set", Settings.CACHE_PATH, Settings.OUTPUT_PATH);
+            return null;
+        }
+        return new ParseCache(Paths.get(cachePath, "parse"), languageLevel, jarFiles);
+    }
+
+    /**
+     * Loads the compilation unit for the given source file from the cache.
+     *
+     * @param sourcePath the absolute path to a java source file
+     * @return the compilation unit if the cache holds an entry for the current file content
+     */
+    Optional<CompilationUnit> load(Path sourcePath) {
+        try {
+            Path entry = directory.resolve(key(sourcePath) + JSON);
+            if (!Files.exists(entry)) {
+                return Optional.empty();
+            }
+            CompilationUnit cu = (CompilationUnit) read(mapper.readTree(entry.toFile()));
+            cu.setStorage(sourcePath);
+            return Optional.of(cu);
+        } catch (IOException | RuntimeException | ReflectiveOperationException e) {
+            logger.debug("Ignoring unusable parse cache entry for {}: {}", sourcePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Saves a freshly parsed compilation unit.
+     * Failures are logged and otherwise ignored; the cache is only ever an optimization.
+     *
+     * @param sourcePath the absolute path to the java source file that was parsed
+     * @param cu the result of parsing that file
+     */
+    void store(Path sourcePath, CompilationUnit cu) {
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(key(sourcePath) + JSON);
+            Path temp = Files.createTempFile(directory, "cu", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JsonGenerator generator = factory.createGenerator(out)) {
+                write(generator, cu);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not add {} to the parse cache: {}", sourcePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the fingerprint for the type relationships of a source tree.
+     *
+     * @param sourcePaths the absolute paths of the files in the tree, in the order they will be
+     *                    compiled.
+     * @return a fingerprint that changes whenever a file, the jar files or the types registered
+     *         before the tree was compiled change.
+     * @throws IOException if any of the files cannot be read
+     */
+    String fingerprint(List<Path> sourcePaths) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, parserKey);
+        for (Path sourcePath : sourcePaths) {
+            update(digest, sourcePath.toString());
+            update(digest, key(sourcePath));
+        }
+        for (String jar : jarFiles) {
+            update(digest, jar);
+        }
+        for (String known : new TreeSet<>(AntikytheraRunTime.getTypeNames())) {
+            update(digest, known);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Registers the cached interface implementations and subclasses of a source tree with the
+     * {@link AntikytheraRunTime}.
+     *
+     * @param fingerprint identifies the source tree, see {@link #fingerprint(List)}
+     * @return true if the relationships were found in the cache and applied.
+     */
+    boolean applyRelations(String fingerprint) {
+        Path entry = directory.resolve("relations-" + fingerprint + JSON);
+        if (!Files.exists(entry)) {
+            return false;
+        }
+        try {
+            JsonNode relations = mapper.readTree(entry.toFile());
+            relations.get("implementations").properties().forEach(e ->
+                    e.getValue().forEach(impl -> AntikytheraRunTime.addImplementation(e.getKey(), impl.asText())));
+            relations.get("subclasses").properties().forEach(e ->
+                    e.getValue().forEach(child -> AntikytheraRunTime.addSubClass(e.getKey(), child.asText())));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Ignoring unusable relations cache entry {}: {}", entry, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Saves the interface implementations and subclasses that were found for the given types.
+     *
+     * @param fingerprint identifies the source tree, see {@link #fingerprint(List)}
+     * @param types the fully qualified names of the types declared in the source tree
+     */
+    void storeRelations(String fingerprint, Set<String> types) {
+        ObjectNode relations = mapper.createObjectNode();
+        relations.set("implementations", edges(AntikytheraRunTime.getImplementations(), types));
+        relations.set("subclasses", edges(AntikytheraRunTime.getSubClasses(), types));
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "relations", ".tmp");
+            mapper.writeValue(temp.toFile(), relations);
+            Files.move(temp, directory.resolve("relations-" + fingerprint + JSON),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not save type relations to the parse cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the content keys that were computed while fingerprinting a source tree.
+     * The files may change after this point.
+     */
+    void clearKeys() {
+        keys.clear();
+    }
+
+    private ObjectNode edges(Map<String, Set<String>> all, Set<String> types) {
+        ObjectNode node = mapper.createObjectNode();
+        for (Map.Entry<String, Set<String>> entry : all.entrySet()) {
+            ArrayNode children = null;
+            for (String child : new TreeSet<>(entry.getValue())) {
+                if (types.contains(child)) {
+                    if (children == null) {
+                        children = node.putArray(entry.getKey());
+                    }
+                    children.add(child);
+                }
+            }
+        }
+        return node;
+    }
+
+    private String key(Path sourcePath) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(sourcePath, BasicFileAttributes.class);
+        ContentKey known = keys.get(sourcePath);
+        if (known != null && known.matches(attributes)) {
+            return known.key();
+        }
+        MessageDigest digest = sha256();
+        update(digest, parserKey);
+        digest.update(Files.readAllBytes(sourcePath));
+        String key = HexFormat.of().formatHex(digest.digest());
+        keys.put(sourcePath, new ContentKey(attributes.size(), attributes.lastModifiedTime(), key));
+        return key;
+    }
+
+    /**
+     * The content key of a file together with the size and modification time it was computed for.
+     */
+    private record ContentKey(long size, FileTime modified, String key) {
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified.equals(attributes.lastModifiedTime());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Writes the node as a JSON object.
+     * The class of the node is saved under {@value #CLASS}, the range under {@value #RANGE} and
+     * any orphan comments under {@value #ORPHANS}. Everything else is a property of the node as
+     * described by the meta model.
+     */
+    private static void write(JsonGenerator generator, Node node) throws IOException {
+        BaseNodeMetaModel metaModel = node.getMetaModel();
+        generator.writeStartObject();
+        generator.writeStringField(CLASS, metaModel.getQualifiedClassName());
+        Optional<Range> range = node.getRange();
+        if (range.isPresent()) {
+            Range r = range.get();
+            generator.writeArrayFieldStart(RANGE);
+            generator.writeNumber(r.begin.line);
+            generator.writeNumber(r.begin.column);
+            generator.writeNumber(r.end.line);
+            generator.writeNumber(r.end.column);
+            generator.writeEndArray();
+        }
+        for (PropertyMetaModel property : metaModel.getAllPropertyMetaModels()) {
+            Object value = property.getValue(node);
+            if (value == null) {
+                continue;
+            }
+            if (property.isNodeList()) {
+                generator.writeArrayFieldStart(property.getName());
+                for (Object child : (NodeList<?>) value) {
+                    write(generator, (Node) child);
+                }
+                generator.writeEndArray();
+            } else if (property.isNode()) {
+                generator.writeFieldName(property.getName());
+                write(generator, (Node) value);
+            } else {
+                generator.writeStringField(property.getName(), value.toString());
+            }
+        }
+        if (!node.getOrphanComments().isEmpty()) {
+            generator.writeArrayFieldStart(ORPHANS);
+            for (Comment comment : node.getOrphanComments()) {
+                write(generator, comment);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Node read(JsonNode json) throws ReflectiveOperationException {
+        BaseNodeMetaModel metaModel = JavaParserMetaModel.getNodeMetaModel(Class.forName(json.get(CLASS).asText()))
+                .orElseThrow(() -> new IllegalStateException("Unknown node " + json.get(CLASS).asText()));
+        Map<String, Object> parameters = new HashMap<>();
+        for (PropertyMetaModel property : metaModel.getAllPropertyMetaModels()) {
+            JsonNode value = json.get(property.getName());
+            if (value == null) {
+                continue;
+            }
+            if (property.isNodeList()) {
+                NodeList<Node> children = new NodeList<>();
+                for (JsonNode child : value) {
+                    children.add(read(child));
+                }
+                parameters.put(property.getName(), children);
+            } else if (property.isNode()) {
+                parameters.put(property.getName(), read(value));
+            } else {
+                Class<?> type = property.getType();
+                if (type == String.class) {
+                    parameters.put(property.getName(), value.asText());
+                } else if (type == boolean.class) {
+                    parameters.put(property.getName(), Boolean.parseBoolean(value.asText()));
+                } else if (type.isEnum()) {
+                    parameters.put(property.getName(), Enum.valueOf((Class) type, value.asText()));
+                } else {
+                    throw new IllegalStateException("Unsupported property type " + type);
+                }
+            }
+        }
+
+        Node node = metaModel.construct(parameters);
+        if (parameters.get("comment") instanceof Comment comment) {
+            node.setComment(comment);
+        }
+        JsonNode range = json.get(RANGE);
+        if (range != null) {
+            node.setRange(new Range(new Position(range.get(0).asInt(), range.get(1).asInt()),
+                    new Position(range.get(2).asInt(), range.get(3).asInt())));
+        }
+        JsonNode orphans = json.get(ORPHANS);
+        if (orphans != null) {
+            for (JsonNode orphan : orphans) {
+                node.addOrphanComment((Comment) read(orphan));
+            }
+        }
+        return node;
+    }
+}
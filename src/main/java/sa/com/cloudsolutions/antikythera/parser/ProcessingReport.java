@@ -155,6 +155,17 @@ public class ProcessingReport {
         }
     }
 
+    /**
+     * Records that the evaluation of the currently active method was abandoned because it ran
+     * out of time or steps. The tests generated before that still count, so the status follows
+     * the same rules as {@link #recordCurrentMethodFailed(String)}.
+     */
+    public void recordCurrentMethodAbandoned(String reason) {
+        if (currentMethod == null) return;
+        recordCurrentMethodFailed(reason);
+        currentMethod.abandoned = true;
+    }
+
     /**
      * Increments the test count for the currently active method and ensures its
      * status is {@code "processed"}.
@@ -209,6 +220,9 @@ public class ProcessingReport {
         long methodsFailed    = classes.stream()
                 .flatMap(c -> c.methods.stream())
                 .filter(m -> "failed".equals(m.status)).count();
+        long methodsAbandoned = classes.stream()
+                .flatMap(c -> c.methods.stream())
+                .filter(m -> Boolean.TRUE.equals(m.abandoned)).count();
         long totalTests       = classes.stream()
                 .flatMap(c -> c.methods.stream())
                 .mapToLong(m -> m.testsGenerated == null ? 0 : m.testsGenerated).sum();
@@ -220,6 +234,7 @@ public class ProcessingReport {
         summary.put("methodsProcessed",  methodsProcessed);
         summary.put("methodsSkipped",    methodsSkipped);
         summary.put("methodsFailed",     methodsFailed);
+        summary.put("methodsAbandoned",  methodsAbandoned);
         summary.put("totalTestsGenerated", totalTests);
         return summary;
     }
@@ -248,6 +263,7 @@ public class ProcessingReport {
         public String reason;          // skip/fail explanation
         public String error;           // set when processed but a generator run also failed
         public Integer testsGenerated; // null for skipped/failed (no tests)
+        public Boolean abandoned;      // true when the evaluation ran out of time or steps
 
         MethodEntry(String name, String status) {
             this.name   = name;
@@ -0,0 +1,491 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>An index of the types declared in the source tree, used when lazy pre-processing is
+ * enabled.</p>
+ *
+ * <p>Instead of parsing every file, pre-processing scans the header of each file with a light
+ * weight tokenizer. That is enough to learn the package, the imports, the names of the types
+ * declared in the file and their extends and implements clauses. The interface implementations
+ * and subclasses are registered with the {@link AntikytheraRunTime} straight away, so that
+ * {@code findImplementations} and {@code findSubClasses} behave as they do after an eager
+ * pre-process. A compilation unit is only parsed when one of its types is first looked up.</p>
+ *
+ * <p>The same types are indexed as in eager mode: top level types, and types nested in the
+ * body of an indexed class or interface. Local and anonymous classes are not indexed.</p>
+ *
+ * <p>The simple names of the annotations on each type are indexed as well. Code that is only
+ * interested in the types with certain annotations, such as entities or beans, can then parse
+ * just the files that declare them with {@link #loadAnnotated(Set)}.</p>
+ */
+public class SourceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SourceIndex.class);
+    private static final Set<String> DECLARATIONS = Set.of("class", "interface", "enum", "record");
+
+    /**
+     * Fully qualified names of all the indexed types mapped to the relative path of the file
+     * that declares them.
+     */
+    private final Map<String, String> locations = new ConcurrentHashMap<>();
+    /**
+     * The types that have been indexed but not yet parsed.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /**
+     * Relative paths mapped to the fully qualified names of the types declared in that file.
+     */
+    private final Map<String, List<String>> files = new ConcurrentHashMap<>();
+    /**
+     * The headers of every indexed file, kept for resolving the type names in the headers of
+     * the files that are indexed later.
+     */
+    private final Map<String, Header> headers = new ConcurrentHashMap<>();
+
+    /**
+     * Scans the headers of the given files and registers the interfaces and parent classes of the
+     * types they declare.
+     *
+     * @param relativePaths the files to index, relative to the base path
+     * @throws IOException if a file could not be read
+     */
+    void index(List<String> relativePaths) throws IOException {
+        List<Header> scanned = new ArrayList<>();
+        for (String relativePath : relativePaths) {
+            if (files.containsKey(relativePath)) {
+                continue;
+            }
+            Header header = Header.scan(Files.readString(Paths.get(Settings.getBasePath(), relativePath)));
+            List<String> names = new ArrayList<>();
+            for (Declaration declaration : header.declarations) {
+                String existing = locations.putIfAbsent(declaration.fqn, relativePath);
+                if (existing != null) {
+                    throw new IllegalStateException(String.format("Duplicate class '%s' in %s and %s.",
+                            declaration.fqn, existing, relativePath));
+                }
+                pending.add(declaration.fqn);
+                AntikytheraRunTime.addTypeName(declaration.fqn);
+                names.add(declaration.fqn);
+            }
+            files.put(relativePath, names);
+            headers.put(relativePath, header);
+            scanned.add(header);
+        }
+
+        for (Header header : scanned) {
+            solveTypeRelations(header);
+        }
+    }
+
+    /**
+     * Parses the file that declares the given type, unless that has already happened.
+     *
+     * @param fqn the fully qualified name of a type
+     * @return the compilation unit or null if the type is not in the index
+     */
+    public CompilationUnit load(String fqn) {
+        synchronized (this) {
+            if (!pending.contains(fqn)) {
+                return null;
+            }
+            /*
+             * Forget all the types in the file before compiling it, the compiler looks them up
+             * again while registering them.
+             */
+            String relativePath = locations.get(fqn);
+            pending.removeAll(files.get(relativePath));
+            try {
+                new AbstractCompiler().compile(relativePath);
+            } catch (FileNotFoundException e) {
+                logger.warn("Could not load {}: {}", fqn, e.getMessage());
+            } catch (IOException e) {
+                logger.warn("Could not set up the parser to load {}: {}", fqn, e.getMessage());
+            }
+        }
+        return AntikytheraRunTime.getCompilationUnit(fqn);
+    }
+
+    /**
+     * Parses every file that has not been parsed yet.
+     */
+    public void loadAll() {
+        for (String fqn : new ArrayList<>(pending)) {
+            load(fqn);
+        }
+    }
+
+    /**
+     * Parses the files that declare a type with one of the given annotations, unless that has
+     * already happened. The other files are left alone.
+     *
+     * @param annotations the simple names of the annotations
+     */
+    public void loadAnnotated(Set<String> annotations) {
+        for (Header header : headers.values()) {
+            for (Declaration declaration : header.declarations) {
+                if (pending.contains(declaration.fqn)
+                        && declaration.annotations.stream().anyMatch(annotations::contains)) {
+                    load(declaration.fqn);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the fully qualified names of the types that have been indexed but not parsed.
+     */
+    public Set<String> getPendingTypes() {
+        return pending;
+    }
+
+    private boolean isIndexed(String fqn) {
+        return locations.containsKey(fqn);
+    }
+
+    /**
+     * Mirrors the way {@link AbstractCompiler} resolves the type relations of the top level
+     * classes and interfaces in a file.
+     */
+    private void solveTypeRelations(Header header) {
+        for (Declaration declaration : header.declarations) {
+            if (!declaration.topLevel || declaration.kind.equals("enum") || declaration.kind.equals("record")
+                    || declaration.kind.equals("@interface")) {
+                continue;
+            }
+            for (String iface : declaration.implemented) {
+                String interfaceName = resolve(header, iface);
+                if (interfaceName != null) {
+                    AntikytheraRunTime.addImplementation(interfaceName, declaration.fqn);
+                    solveParentInterfaces(declaration, interfaceName);
+                }
+            }
+            for (String parent : declaration.extended) {
+                String parentName = resolve(header, parent);
+                if (parentName != null) {
+                    AntikytheraRunTime.addSubClass(parentName, declaration.fqn);
+                }
+            }
+        }
+    }
+
+    private void solveParentInterfaces(Declaration declaration, String interfaceName) {
+        String relativePath = locations.get(interfaceName);
+        Header interfaceHeader = relativePath == null ? null : headers.get(relativePath);
+        if (interfaceHeader == null) {
+            return;
+        }
+        for (Declaration other : interfaceHeader.declarations) {
+            if (other.topLevel && (other.kind.equals("class") || other.kind.equals("interface"))) {
+                for (String parent : other.extended) {
+                    String parentName = resolve(interfaceHeader, parent);
+                    if (parentName != null) {
+                        AntikytheraRunTime.addImplementation(parentName, declaration.fqn);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves a type name that appears in a header, following the same order of precedence as
+     * {@link AbstractCompiler#findType(CompilationUnit, String)}.
+     */
+    private String resolve(Header header, String name) {
+        String simpleName = name.substring(name.lastIndexOf('.') + 1);
+        if (name.contains(".") && isIndexed(name)) {
+            return name;
+        }
+        for (Declaration declaration : header.declarations) {
+            if (declaration.name.equals(simpleName)) {
+                return declaration.fqn;
+            }
+        }
+        String samePackage = header.packageName.isEmpty() ? simpleName : header.packageName + "." + simpleName;
+        if (isIndexed(samePackage)) {
+            return samePackage;
+        }
+        for (String imp : header.imports) {
+            if (imp.endsWith("." + simpleName)) {
+                return imp;
+            }
+        }
+        for (String imp : header.wildcards) {
+            String candidate = imp + "." + simpleName;
+            if (isIndexed(candidate) || isLoadable(candidate)) {
+                return candidate;
+            }
+        }
+        for (String fqn : AntikytheraRunTime.findTypesBySuffix(simpleName)) {
+            if (isIndexed(fqn)) {
+                return fqn;
+            }
+        }
+        if (isLoadable("java.lang." + simpleName)) {
+            return "java.lang." + simpleName;
+        }
+        return null;
+    }
+
+    private static boolean isLoadable(String className) {
+        try {
+            AbstractCompiler.loadClass(className);
+            return true;
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            return false;
+        }
+    }
+
+    record Declaration(String fqn, String name, String kind, boolean topLevel,
+                       List<String> extended, List<String> implemented, Set<String> annotations) {
+    }
+
+    /**
+     * The parts of a java source file that are needed for the index.
+     */
+    static final class Header {
+        private String packageName = "";
+        private final List<String> imports = new ArrayList<>();
+        private final List<String> wildcards = new ArrayList<>();
+        private final List<Declaration> declarations = new ArrayList<>();
+
+        private List<String> tokens;
+        private int pos;
+        /**
+         * The simple names of the annotations seen since the last declaration, statement or block.
+         */
+        private final Set<String> annotations = new HashSet<>();
+
+        private Header(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        List<Declaration> getDeclarations() {
+            return declarations;
+        }
+
+        static Header scan(String source) {
+            Header header = new Header(tokenize(source));
+            header.parse();
+            header.tokens = null;
+            return header;
+        }
+
+        /**
+         * A type declaration whose body is being scanned.
+         * @param indexesMembers true if the member types of this declaration should be indexed
+         */
+        private record Frame(String fqn, int bodyDepth, boolean indexesMembers) {
+        }
+
+        private void parse() {
+            Deque<Frame> frames = new ArrayDeque<>();
+            int depth = 0;
+            while (pos < tokens.size()) {
+                String token = tokens.get(pos);
+                if (depth == 0 && token.equals("package")) {
+                    pos++;
+                    packageName = readQualifiedName();
+                } else if (depth == 0 && token.equals("import")) {
+                    readImport();
+                } else if (token.equals("@") && pos + 1 < tokens.size()
+                        && Character.isJavaIdentifierStart(tokens.get(pos + 1).charAt(0))
+                        && !tokens.get(pos + 1).equals("interface")) {
+                    pos++;
+                    String annotation = readQualifiedName();
+                    annotations.add(annotation.substring(annotation.lastIndexOf('.') + 1));
+                    continue;
+                } else if (token.equals("{")) {
+                    annotations.clear();
+                    depth++;
+                } else if (token.equals("}") || token.equals(";")) {
+                    annotations.clear();
+                    if (token.equals("}")) {
+                        if (!frames.isEmpty() && frames.peek().bodyDepth == depth) {
+                            frames.pop();
+                        }
+                        depth--;
+                    }
+                } else if (isDeclaration(token)) {
+                    String kind = previous().equals("@") ? "@interface" : token;
+                    String name = tokens.get(pos + 1);
+                    Frame parent = frames.peek();
+                    boolean topLevel = depth == 0;
+                    boolean indexed = topLevel || (parent != null && parent.indexesMembers && parent.bodyDepth == depth);
+                    String fqn;
+                    if (parent != null && !topLevel) {
+                        fqn = parent.fqn + "." + name;
+                    } else {
+                        fqn = packageName.isEmpty() ? name : packageName + "." + name;
+                    }
+                    pos += 2;
+                    Set<String> annotated = Set.copyOf(annotations);
+                    annotations.clear();
+                    List<String> extended = new ArrayList<>();
+                    List<String> implemented = new ArrayList<>();
+                    readSuperTypes(extended, implemented);
+                    if (indexed) {
+                        declarations.add(new Declaration(fqn, name, kind, topLevel, extended, implemented, annotated));
+                    }
+                    depth++;
+                    frames.push(new Frame(fqn, depth, indexed && (kind.equals("class") || kind.equals("interface"))));
+                }
+                pos++;
+            }
+        }
+
+        private boolean isDeclaration(String token) {
+            if (!DECLARATIONS.contains(token) || pos + 1 >= tokens.size() || previous().equals(".")
+                    || !Character.isJavaIdentifierStart(tokens.get(pos + 1).charAt(0))) {
+                return false;
+            }
+            if (token.equals("record")) {
+                // record is a contextual keyword, a record declaration has a component list
+                String next = pos + 2 < tokens.size() ? tokens.get(pos + 2) : "";
+                return next.equals("(") || next.equals("<");
+            }
+            return true;
+        }
+
+        private String previous() {
+            return pos == 0 ? "" : tokens.get(pos - 1);
+        }
+
+        /**
+         * Reads the type parameters, record components and the extends, implements and permits
+         * clauses of a declaration, leaving the position at the opening brace of the body.
+         */
+        private void readSuperTypes(List<String> extended, List<String> implemented) {
+            List<String> clause = null;
+            int angles = 0;
+            int parens = 0;
+            while (pos < tokens.size()) {
+                String token = tokens.get(pos);
+                if (token.equals("{") && parens == 0) {
+                    return;
+                }
+                switch (token) {
+                    case "<" -> angles++;
+                    case ">" -> angles--;
+                    case "(" -> parens++;
+                    case ")" -> parens--;
+                    case "extends" -> clause = angles == 0 && parens == 0 ? extended : clause;
+                    case "implements" -> clause = angles == 0 && parens == 0 ? implemented : clause;
+                    case "permits" -> clause = angles == 0 && parens == 0 ? null : clause;
+                    case "@" -> pos++;
+                    default -> {
+                        if (clause != null && angles == 0 && parens == 0
+                                && Character.isJavaIdentifierStart(token.charAt(0))) {
+                            clause.add(readQualifiedName());
+                            continue;
+                        }
+                    }
+                }
+                pos++;
+            }
+        }
+
+        private void readImport() {
+            pos++;
+            if (pos < tokens.size() && tokens.get(pos).equals("static")) {
+                while (pos < tokens.size() && !tokens.get(pos).equals(";")) {
+                    pos++;
+                }
+                return;
+            }
+            String name = readQualifiedName();
+            if (pos + 1 < tokens.size() && tokens.get(pos).equals(".") && tokens.get(pos + 1).equals("*")) {
+                wildcards.add(name);
+                pos += 2;
+            } else {
+                imports.add(name);
+            }
+        }
+
+        /**
+         * Reads a dotted name starting at the current position. On return the position is just
+         * past the last identifier.
+         */
+        private String readQualifiedName() {
+            StringBuilder name = new StringBuilder(tokens.get(pos++));
+            while (pos + 1 < tokens.size() && tokens.get(pos).equals(".")
+                    && Character.isJavaIdentifierStart(tokens.get(pos + 1).charAt(0))) {
+                name.append('.').append(tokens.get(pos + 1));
+                pos += 2;
+            }
+            return name.toString();
+        }
+
+        /**
+         * Splits the source into identifiers and single character symbols, dropping comments,
+         * whitespace, and string and character literals.
+         */
+        static List<String> tokenize(String source) {
+            List<String> tokens = new ArrayList<>();
+            int n = source.length();
+            int i = 0;
+            while (i < n) {
+                char c = source.charAt(i);
+                if (c == '/' && i + 1 < n && source.charAt(i + 1) == '/') {
+                    while (i < n && source.charAt(i) != '\n') {
+                        i++;
+                    }
+                } else if (c == '/' && i + 1 < n && source.charAt(i + 1) == '*') {
+                    int end = source.indexOf("*/", i + 2);
+                    i = end < 0 ? n : end + 2;
+                } else if (source.startsWith("\"\"\"", i)) {
+                    i = skipLiteral(source, i + 3, "\"\"\"");
+                } else if (c == '"' || c == '\'') {
+                    i = skipLiteral(source, i + 1, String.valueOf(c));
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    int start = i;
+                    while (i < n && Character.isJavaIdentifierPart(source.charAt(i))) {
+                        i++;
+                    }
+                    tokens.add(source.substring(start, i));
+                } else if (Character.isDigit(c)) {
+                    while (i < n && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+                        i++;
+                    }
+                } else {
+                    if (!Character.isWhitespace(c)) {
+                        tokens.add(String.valueOf(c));
+                    }
+                    i++;
+                }
+            }
+            return tokens;
+        }
+
+        private static int skipLiteral(String source, int i, String terminator) {
+            int n = source.length();
+            while (i < n) {
+                if (source.charAt(i) == '\\') {
+                    i += 2;
+                } else if (source.startsWith(terminator, i)) {
+                    return i + terminator.length();
+                } else {
+                    i++;
+                }
+            }
+            return n;
+        }
+    }
+}
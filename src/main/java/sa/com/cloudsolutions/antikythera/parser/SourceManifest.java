@@ -0,0 +1,247 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Remembers the content of every source file that has been pre-processed, along with the types
+ * it declares and the interfaces and parent classes of those types.</p>
+ *
+ * <p>Comparing the manifest with the files on disk tells which files were added, changed or
+ * deleted since the last run. The types declared in those files, together with every type that
+ * extends or implements one of them, are the types that are affected by the change. The manifest
+ * is saved in the cache folder so that this works across runs.</p>
+ */
+public class SourceManifest {
+    private static final Logger logger = LoggerFactory.getLogger(SourceManifest.class);
+    private static final int VERSION = 1;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Where the manifest is saved, null if it should only be kept in memory.
+     */
+    private final Path file;
+    /**
+     * The base path of the project, a manifest saved for another project is not used.
+     */
+    private final String basePath;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * What the manifest knows about a source file.
+     *
+     * @param hash the SHA-256 of the content of the file
+     * @param types the fully qualified names of the types declared in the file
+     * @param parents the interfaces and parent classes of each of those types
+     */
+    record Entry(String hash, List<String> types, Map<String, List<String>> parents) {
+    }
+
+    /**
+     * The difference between the manifest and a source tree, as paths relative to the base path.
+     */
+    record Changes(Set<String> added, Set<String> changed, Set<String> deleted) {
+    }
+
+    SourceManifest(Path file, String basePath) {
+        this.file = file;
+        this.basePath = basePath;
+    }
+
+    /**
+     * Loads the manifest from the cache folder.
+     *
+     * @param basePath the base path of the project
+     * @return the manifest, which will be empty if it has not been saved before.
+     */
+    static SourceManifest load(String basePath) {
+        String cachePath = Settings.getCachePath();
+        SourceManifest manifest = new SourceManifest(
+                cachePath == null ? null : Paths.get(cachePath, "manifest.json"), basePath);
+        manifest.read();
+        return manifest;
+    }
+
+    private void read() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            JsonNode root = mapper.readTree(file.toFile());
+            if (root.path("version").asInt() != VERSION || !basePath.equals(root.path("basePath").asText())) {
+                return;
+            }
+            root.path("files").properties().forEach(e -> {
+                JsonNode node = e.getValue();
+                List<String> types = new ArrayList<>();
+                node.path("types").forEach(t -> types.add(t.asText()));
+                Map<String, List<String>> parents = new HashMap<>();
+                node.path("parents").properties().forEach(p -> {
+                    List<String> names = new ArrayList<>();
+                    p.getValue().forEach(n -> names.add(n.asText()));
+                    parents.put(p.getKey(), names);
+                });
+                entries.put(e.getKey(), new Entry(node.path("hash").asText(), types, parents));
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Ignoring unusable source manifest {}: {}", file, e.getMessage());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Saves the manifest to the cache folder.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+        ObjectNode root = mapper.createObjectNode();
+        root.put("version", VERSION);
+        root.put("basePath", basePath);
+        ObjectNode files = root.putObject("files");
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            ObjectNode node = files.putObject(e.getKey());
+            node.put("hash", e.getValue().hash());
+            ArrayNode types = node.putArray("types");
+            e.getValue().types().forEach(types::add);
+            ObjectNode parents = node.putObject("parents");
+            new TreeMap<>(e.getValue().parents()).forEach((type, names) -> {
+                ArrayNode array = parents.putArray(type);
+                names.forEach(array::add);
+            });
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "manifest", ".tmp");
+            mapper.writeValue(temp.toFile(), root);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not save the source manifest: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the hash of each of the given files.
+     *
+     * @param relativePaths source files relative to the base path
+     * @return the paths mapped to the SHA-256 of their content
+     * @throws IOException if a file could not be read
+     */
+    static Map<String, String> hash(List<String> relativePaths) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String relativePath : relativePaths) {
+                byte[] content = Files.readAllBytes(Paths.get(Settings.getBasePath(), relativePath));
+                hashes.put(relativePath, HexFormat.of().formatHex(digest.digest(content)));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return hashes;
+    }
+
+    /**
+     * Compares a source tree with the manifest.
+     *
+     * @param prefix the folder of the source tree, relative to the base path. Files under it that
+     *               are in the manifest but not in the tree have been deleted.
+     * @param hashes the files in the source tree mapped to the hash of their content
+     * @return the changes
+     */
+    Changes diff(String prefix, Map<String, String> hashes) {
+        Set<String> added = new TreeSet<>();
+        Set<String> changed = new TreeSet<>();
+        Set<String> deleted = new TreeSet<>();
+        for (Map.Entry<String, String> e : hashes.entrySet()) {
+            Entry entry = entries.get(e.getKey());
+            if (entry == null) {
+                added.add(e.getKey());
+            } else if (!entry.hash().equals(e.getValue())) {
+                changed.add(e.getKey());
+            }
+        }
+        Path folder = Paths.get(prefix);
+        for (String path : entries.keySet()) {
+            if (!hashes.containsKey(path) && (prefix.isEmpty() || Paths.get(path).startsWith(folder))) {
+                deleted.add(path);
+            }
+        }
+        return new Changes(added, changed, deleted);
+    }
+
+    /**
+     * @param relativePaths source files
+     * @return the types that the manifest has recorded for the files
+     */
+    Set<String> typesIn(Set<String> relativePaths) {
+        Set<String> types = new HashSet<>();
+        for (String path : relativePaths) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                types.addAll(entry.types());
+            }
+        }
+        return types;
+    }
+
+    void put(String relativePath, Entry entry) {
+        entries.put(relativePath, entry);
+    }
+
+    void remove(String relativePath) {
+        entries.remove(relativePath);
+    }
+
+    /**
+     * Finds the types that directly or indirectly extend or implement any of the given types.
+     *
+     * @param types fully qualified type names
+     * @return the dependent types, not including the given ones unless they depend on each other.
+     */
+    Set<String> dependents(Set<String> types) {
+        Map<String, Set<String>> children = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            entry.parents().forEach((type, parents) -> {
+                for (String parent : parents) {
+                    children.computeIfAbsent(parent, k -> new HashSet<>()).add(type);
+                }
+            });
+        }
+        Set<String> dependents = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(types);
+        while (!queue.isEmpty()) {
+            for (String child : children.getOrDefault(queue.pop(), Set.of())) {
+                if (dependents.add(child)) {
+                    queue.push(child);
+                }
+            }
+        }
+        return dependents;
+    }
+}
@@ -0,0 +1,178 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>Remembers what a name resolved to in a compilation unit.</p>
+ *
+ * <p>{@link AbstractCompiler#findType(CompilationUnit, String)} is called over and over again for
+ * the same names in the same compilation units. The result only depends on the compilation unit
+ * and on which types and classes are known, so it is saved on the compilation unit itself, names
+ * that could not be resolved included.</p>
+ *
+ * <p>Only the compilation units that were registered by the compiler take part. Registering a
+ * new type can only change the answer for names that could not be resolved before, so those are
+ * looked up again. Removing or replacing a type, or changing the class loader, starts a new
+ * generation, which makes every saved result stale. Re-registering a source file produces a new
+ * compilation unit with an empty cache of its own.</p>
+ */
+public final class TypeResolutionCache {
+    private static final DataKey<Entries> ENTRIES = new DataKey<>() {
+    };
+
+    private static final AtomicInteger generation = new AtomicInteger();
+    /**
+     * Counts the types that have been registered, names that could not be resolved are only
+     * trusted while this stays the same.
+     */
+    private static final AtomicInteger additions = new AtomicInteger();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    /**
+     * The data of a compilation unit is only written when it is registered, after that the
+     * results are swapped through the reference so that lookups do not have to lock the
+     * compilation unit. The owner is kept because JavaParser copies the node data over to clones,
+     * which may then be changed independently of the original.
+     */
+    private record Entries(CompilationUnit owner, AtomicReference<Table> table) {
+    }
+
+    /**
+     * The results of one generation.
+     *
+     * @param types the names that were resolved
+     * @param missing the names that could not be resolved, with the number of additions at the
+     *                time
+     */
+    private record Table(int generation, Map<String, TypeWrapper> types, Map<String, Integer> missing) {
+        Table(int generation) {
+            this(generation, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    private TypeResolutionCache() {
+    }
+
+    /**
+     * Enables caching for a compilation unit that has been registered with the runtime.
+     *
+     * @param cu the compilation unit
+     */
+    static void register(CompilationUnit cu) {
+        synchronized (cu) {
+            cu.setData(ENTRIES, new Entries(cu, new AtomicReference<>(new Table(generation.get()))));
+        }
+    }
+
+    /**
+     * Makes all the saved results stale. To be called whenever a type is removed or replaced or
+     * the class loader changes.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Makes the names that could not be resolved stale. To be called whenever a new type is
+     * registered.
+     */
+    public static void typeAdded() {
+        additions.incrementAndGet();
+    }
+
+    /**
+     * @return the current generation, which changes whenever the saved results become stale
+     */
+    public static int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return the number of types registered so far, which changes whenever names that could not
+     * be resolved may have become resolvable
+     */
+    public static int getAdditions() {
+        return additions.get();
+    }
+
+    /**
+     * Finds the saved result for the name or resolves and saves it.
+     *
+     * @param cu the compilation unit in which the name is used
+     * @param name the name with any type arguments already removed
+     * @param resolver resolves the name when there is no saved result
+     * @return the type wrapper or null if the name could not be resolved. The wrapper has public
+     *      setters, so every caller gets a copy of its own and the saved one is never handed out.
+     */
+    static TypeWrapper computeIfAbsent(CompilationUnit cu, String name, Function<String, TypeWrapper> resolver) {
+        Table table = table(cu);
+        if (table == null) {
+            return resolver.apply(name);
+        }
+        TypeWrapper wrapper = table.types().get(name);
+        if (wrapper != null) {
+            hits.increment();
+            return wrapper.copy();
+        }
+        int added = additions.get();
+        Integer missing = table.missing().get(name);
+        if (missing != null && missing == added) {
+            hits.increment();
+            return null;
+        }
+        misses.increment();
+        /*
+         * Not resolved inside computeIfAbsent, the resolver may end up here again for another
+         * name in the same compilation unit.
+         */
+        wrapper = resolver.apply(name);
+        if (wrapper == null) {
+            table.missing().put(name, added);
+        } else {
+            table.types().putIfAbsent(name, wrapper.copy());
+        }
+        return wrapper;
+    }
+
+    private static Table table(CompilationUnit cu) {
+        Entries entries = cu.findData(ENTRIES).orElse(null);
+        if (entries == null || entries.owner() != cu) {
+            return null;
+        }
+        int current = generation.get();
+        Table table = entries.table().get();
+        if (table.generation() != current) {
+            Table fresh = new Table(current);
+            table = entries.table().compareAndSet(table, fresh) ? fresh : entries.table().get();
+        }
+        return table;
+    }
+    /**
+     * @return the number of lookups that were answered from the cache
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to be resolved
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+}
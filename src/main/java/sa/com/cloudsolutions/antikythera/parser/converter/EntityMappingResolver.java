@@ -5,6 +5,7 @@ import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.expr.Expression;
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
@@ -26,11 +27,21 @@ import java.util.*;
  */
 public class EntityMappingResolver {
 
-    private static final Map<String, EntityMetadata> mapping = new HashMap<>();
-    private static final Map<String, Set<String>> shortNames = new HashMap<>();
     public static final String DTYPE = "dtype";
     public static final String ENTITY = "Entity";
 
+    /**
+     * The state of this class, which belongs to the {@link AnalysisSession} of the current thread.
+     */
+    private static final class State {
+        final Map<String, EntityMetadata> mapping = new HashMap<>();
+        final Map<String, Set<String>> shortNames = new HashMap<>();
+    }
+
+    private static State state() {
+        return AnalysisSession.current().get(State.class, State::new);
+    }
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -42,15 +53,16 @@ public class EntityMappingResolver {
      * This is useful for tests that need to rebuild the mappings.
      */
     public static void reset() {
-        mapping.clear();
-        shortNames.clear();
+        State state = state();
+        state.mapping.clear();
+        state.shortNames.clear();
     }
 
     public static void build() {
-        if (!mapping.isEmpty()) {
+        if (!state().mapping.isEmpty()) {
             throw new AntikytheraException("Already built");
         }
-        for (TypeWrapper type : AntikytheraRunTime.getResolvedTypes().values()) {
+        for (TypeWrapper type : AntikytheraRunTime.getResolvedTypes(Set.of(ENTITY)).values()) {
             buildOnTheFly(type);
         }
     }
@@ -72,11 +84,12 @@ public class EntityMappingResolver {
             return null;
         }
 
-        if (mapping.containsKey(fullyQualifiedName)) {
-            return mapping.get(fullyQualifiedName);
+        State state = state();
+        if (state.mapping.containsKey(fullyQualifiedName)) {
+            return state.mapping.get(fullyQualifiedName);
         }
 
-        shortNames.computeIfAbsent(name, k -> new HashSet<>()).add(fullyQualifiedName);
+        state.shortNames.computeIfAbsent(name, k -> new HashSet<>()).add(fullyQualifiedName);
 
         EntityMetadata meta = null;
         if (typeDecl != null && typeDecl.getAnnotationByName(ENTITY).isPresent()) {
@@ -86,7 +99,7 @@ public class EntityMappingResolver {
         }
 
         if (meta != null) {
-            mapping.put(fullyQualifiedName, meta);
+            state.mapping.put(fullyQualifiedName, meta);
         }
         return meta;
     }
@@ -228,7 +241,7 @@ public class EntityMappingResolver {
     private static String resolveTargetTableName(String targetEntityName) {
         Set<String> fullNames = getFullNamesForEntity(targetEntityName);
         for (String fullName : fullNames) {
-            EntityMetadata meta = mapping.get(fullName);
+            EntityMetadata meta = state().mapping.get(fullName);
             if (meta != null) {
                 return meta.tableName();
             }
@@ -606,14 +619,15 @@ public class EntityMappingResolver {
     }
 
     public static Map<String, EntityMetadata> getMapping() {
-        return mapping;
+        return state().mapping;
     }
 
     public static Set<String> getFullNamesForEntity(String name) {
-        return shortNames.getOrDefault(name, Collections.emptySet());
+        return state().shortNames.getOrDefault(name, Collections.emptySet());
     }
 
     public static String getTableNameForEntity(String entityName) {
+        Map<String, EntityMetadata> mapping = state().mapping;
         EntityMetadata meta = mapping.get(entityName);
         if (meta == null) {
             Set<String> n = EntityMappingResolver.getFullNamesForEntity(entityName);
@@ -639,13 +653,10 @@ public class EntityMappingResolver {
      * @return Optional containing EntityMetadata if found, empty otherwise
      */
     public static Optional<EntityMetadata> resolveBySuffix(String suffix) {
-        for (Map.Entry<String, TypeWrapper> entry : AntikytheraRunTime.getResolvedTypes().entrySet()) {
-            String fqn = entry.getKey();
-            if (fqn.endsWith("." + suffix)) {
-                TypeWrapper tw = entry.getValue();
-                if (isEntity(tw)) {
-                    return Optional.ofNullable(buildOnTheFly(tw));
-                }
+        for (String fqn : AntikytheraRunTime.findTypesBySuffix(suffix)) {
+            TypeWrapper tw = AntikytheraRunTime.getType(fqn);
+            if (tw != null && isEntity(tw)) {
+                return Optional.ofNullable(buildOnTheFly(tw));
             }
         }
         return Optional.empty();
@@ -718,7 +729,7 @@ public class EntityMappingResolver {
     public static Optional<EntityMetadata> resolveEntity(String name) {
         Optional<String> n = getFullNamesForEntity(name).stream().findFirst();
         if (n.isPresent()) {
-            EntityMetadata meta = mapping.get(n.get());
+            EntityMetadata meta = state().mapping.get(n.get());
             return Optional.ofNullable(meta);
         }
         return resolveBySuffix(name);
@@ -774,7 +785,7 @@ public class EntityMappingResolver {
             String packageName = contextFqn.substring(0, contextFqn.lastIndexOf('.'));
             String samePackageFqn = packageName + "." + name;
 
-            TypeWrapper resolved = AntikytheraRunTime.getResolvedTypes().get(samePackageFqn);
+            TypeWrapper resolved = AntikytheraRunTime.getType(samePackageFqn);
             if (resolved != null) {
                 // Build metadata on-the-fly if needed
                 buildOnTheFly(resolved);
@@ -0,0 +1,95 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.parser.SourceTree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisSessionTest {
+    @TempDir
+    Path sources;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @Test
+    void sessionsDoNotShareState() {
+        AnalysisSession session = new AnalysisSession();
+        session.run(() -> {
+            assertSame(session, AnalysisSession.current());
+            AntikytheraRunTime.addSubClass("p.Base", "p.Circle");
+            GeneratorState.putMockStubReturnHint("repo", "find", "p.Circle");
+        });
+
+        assertSame(AnalysisSession.getDefault(), AnalysisSession.current());
+        assertFalse(AntikytheraRunTime.findSubClasses("p.Base").contains("p.Circle"));
+        assertNull(GeneratorState.getMockStubReturnHint("repo", "find"));
+        assertEquals(Set.of("p.Circle"), session.call(() -> AntikytheraRunTime.findSubClasses("p.Base")));
+    }
+
+    @Test
+    void nestedSessionsRestoreTheOuterOne() {
+        AnalysisSession outer = new AnalysisSession();
+        AnalysisSession inner = new AnalysisSession();
+        outer.run(() -> {
+            inner.run(() -> assertSame(inner, AnalysisSession.current()));
+            assertSame(outer, AnalysisSession.current());
+        });
+    }
+
+    @Test
+    @SuppressWarnings("removal")
+    void theDeprecatedFieldsSeeTheDefaultSession() {
+        Variable v = new Variable("circle");
+        AntikytheraRunTime.autoWire("p.Circle", v);
+        new AnalysisSession().run(() -> AntikytheraRunTime.autoWire("p.Square", v));
+
+        assertSame(v, AntikytheraRunTime.autowired.get("p.Circle"));
+        assertFalse(AntikytheraRunTime.autowired.containsKey("p.Square"));
+        AntikytheraRunTime.resetAutowires();
+        assertTrue(AntikytheraRunTime.autowired.isEmpty());
+    }
+
+    @Test
+    void parallelPreProcessingRegistersTypesInTheCallingSession() throws IOException {
+        SourceTree tree = new SourceTree(sources);
+        tree.write("p/Base.java", "package p; public abstract class Base {}");
+        tree.write("p/Circle.java", "package p; public class Circle extends Base {}");
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+
+        AnalysisSession session = new AnalysisSession();
+        session.run(() -> {
+            try {
+                tree.compile();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            assertNotNull(AntikytheraRunTime.getCompilationUnit("p.Circle"));
+            assertEquals(Set.of("p.Circle"), AntikytheraRunTime.findSubClasses("p.Base"));
+        });
+
+        assertNull(AntikytheraRunTime.getCompilationUnit("p.Circle"));
+        assertTrue(AntikytheraRunTime.findSubClasses("p.Base").isEmpty());
+    }
+}
@@ -10,6 +10,7 @@ import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -183,5 +184,26 @@ class AntikytheraRunTimeTest {
         CompilationUnit retrieved = AntikytheraRunTime.getCompilationUnit(fqn);
         assertSame(cu, retrieved, "Should return the same compilation unit");
     }
-}
 
+    @Test
+    void testFindTypesBySuffix() {
+        ClassOrInterfaceDeclaration outer = new ClassOrInterfaceDeclaration();
+        outer.setName("Outer");
+        ClassOrInterfaceDeclaration inner = new ClassOrInterfaceDeclaration();
+        inner.setName("Inner");
+
+        AntikytheraRunTime.addType("test.package.Outer", new TypeWrapper(outer));
+        AntikytheraRunTime.addType("test.package.Outer.Inner", new TypeWrapper(inner));
+        AntikytheraRunTime.addType("other.Inner", new TypeWrapper(inner));
+
+        assertEquals(Set.of("test.package.Outer"), AntikytheraRunTime.findTypesBySuffix("Outer"));
+        assertEquals(Set.of("test.package.Outer.Inner", "other.Inner"), AntikytheraRunTime.findTypesBySuffix("Inner"));
+        assertEquals(Set.of("test.package.Outer.Inner"), AntikytheraRunTime.findTypesBySuffix("Outer.Inner"));
+        assertTrue(AntikytheraRunTime.findTypesBySuffix("ter.Inner").isEmpty(), "Should only match whole names");
+        assertTrue(AntikytheraRunTime.findTypesBySuffix("test.package.Outer").isEmpty());
+        assertTrue(AntikytheraRunTime.findTypesBySuffix(null).isEmpty());
+
+        AntikytheraRunTime.resetAll();
+        assertTrue(AntikytheraRunTime.findTypesBySuffix("Inner").isEmpty(), "Should clear the suffix index");
+    }
+}
@@ -0,0 +1,158 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.generator.MethodResponse;
+import sa.com.cloudsolutions.antikythera.parser.SourceTree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BranchSnapshotsTest {
+    @TempDir
+    Path sources;
+    private SourceTree tree;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Label.java", """
+                package p;
+                public class Label {
+                    public String classify(int a, int b) {
+                        String label = "n" + 42;
+                        int base = label.length() * 3;
+                        System.out.println("prefix " + base);
+                        if (a > 10) {
+                            label = label + "big";
+                        }
+                        if (b > 5) {
+                            return label + base;
+                        }
+                        return label;
+                    }
+
+                    public int twice(int a) {
+                        int twice = a * 2;
+                        if (a > 10) {
+                            return twice;
+                        }
+                        return 0;
+                    }
+
+                    public int scaled(int a) {
+                        int factor = scale();
+                        if (a > 10) {
+                            return factor;
+                        }
+                        return 0;
+                    }
+
+                    int scale() {
+                        return 3;
+                    }
+                }
+                """);
+        tree.compile();
+        BranchSnapshots.resetStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.setProperty(Settings.BRANCH_SNAPSHOTS, false);
+    }
+
+    private List<String> evaluate(String method, boolean snapshots) throws ReflectiveOperationException {
+        Settings.setProperty(Settings.BRANCH_SNAPSHOTS, snapshots);
+        List<String> tests = new ArrayList<>();
+        SpringEvaluator evaluator = EvaluatorFactory.create("p.Label", SpringEvaluator.class);
+        evaluator.setOnTest(true);
+        evaluator.addGenerator(new ITestGenerator() {
+            private List<Precondition> preconditions;
+
+            @Override
+            public void setPreConditions(List<Precondition> preconditions) {
+                this.preconditions = preconditions;
+            }
+
+            @Override
+            public void createTests(CallableDeclaration<?> md, MethodResponse response) {
+                tests.add(preconditions.stream().map(p -> p.getExpression().toString()).toList()
+                        + " -> " + response.getBody() + " " + response.getCapturedOutput());
+            }
+
+            @Override
+            public void setArgumentGenerator(ArgumentGenerator argumentGenerator) {
+                // not needed
+            }
+
+            @Override
+            public void save() {
+                // nothing to save
+            }
+        });
+        evaluator.setArgumentGenerator(new DummyArgumentGenerator());
+        evaluator.visit(method(method));
+        return tests;
+    }
+
+    private static MethodDeclaration method(String name) {
+        return AntikytheraRunTime.getCompilationUnit("p.Label")
+                .findFirst(MethodDeclaration.class, md -> md.getNameAsString().equals(name)).orElseThrow();
+    }
+
+    @Test
+    void resumingAtTheFirstBranchCreatesTheSameTests() throws ReflectiveOperationException {
+        List<String> expected = evaluate("classify", false);
+        assertEquals(0, BranchSnapshots.getResumed());
+
+        assertEquals(expected, evaluate("classify", true));
+        assertTrue(BranchSnapshots.getResumed() > 0);
+        assertTrue(expected.stream().allMatch(test -> test.contains("prefix 9")), expected.toString());
+    }
+
+    @Test
+    void statementsThatReadWhatThePreconditionsChangeAreExecutedAgain() throws ReflectiveOperationException {
+        List<String> expected = evaluate("twice", false);
+        assertFalse(expected.isEmpty());
+
+        assertEquals(expected, evaluate("twice", true));
+        assertEquals(0, BranchSnapshots.getResumed());
+    }
+
+    @Test
+    void onlyStraightLineCodeThatLeavesTheInstanceAloneIsSkipped() {
+        Branching.clear();
+        method("classify").accept(new ConditionVisitor(), null);
+        method("scaled").accept(new ConditionVisitor(), null);
+
+        assertNotNull(BranchSnapshots.of(method("classify")));
+        assertNull(BranchSnapshots.of(method("scaled")));
+        assertNull(BranchSnapshots.of(method("scale")));
+    }
+}
@@ -0,0 +1,132 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.SourceTree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class ClassCacheTest {
+    private static final String ITEM = """
+            package p;
+            public class Item {
+                private String name;
+                private int count = 2;
+
+                public String getName() {
+                    return name;
+                }
+
+                public void setName(String name) {
+                    this.name = name;
+                }
+
+                public int twice() {
+                    return count * 2;
+                }
+            }
+            """;
+
+    @TempDir
+    Path sources;
+    @TempDir
+    Path cache;
+    private SourceTree tree;
+
+    private int runs;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Item.java", ITEM);
+        Settings.setProperty(Settings.CACHE_PATH, cache.toString());
+        Settings.setProperty(Settings.CLASS_CACHE, true);
+        ClassCache.resetStatistics();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Settings.setProperty(Settings.CLASS_CACHE, false);
+        Settings.setProperty(Settings.DEPENDENCIES, Map.of());
+        AbstractCompiler.reset();
+    }
+
+    /**
+     * Starts over with a new class loader, which is what the next run would see.
+     */
+    private void newRun() throws IOException {
+        Path jar = cache.resolve("run" + runs++ + ".jar");
+        try (OutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.flush();
+        }
+        Settings.setProperty(Settings.DEPENDENCIES, Map.of("jar_files", List.of(jar.toString())));
+        tree.compile();
+    }
+
+    private Object createItem() throws ReflectiveOperationException {
+        MethodInterceptor interceptor = new MethodInterceptor(EvaluatorFactory.create("p.Item", Evaluator.class));
+        return AKBuddy.createInstance(AKBuddy.createDynamicClass(interceptor), interceptor);
+    }
+
+    private long entries() throws IOException {
+        try (Stream<Path> files = Files.list(cache.resolve("classes"))) {
+            return files.filter(f -> f.toString().endsWith(".class")).count();
+        }
+    }
+
+    @Test
+    void classesAreDefinedFromTheCacheOnTheNextRun() throws Exception {
+        newRun();
+        Object first = createItem();
+        assertEquals(0, ClassCache.getHits());
+        assertEquals(1, entries());
+
+        newRun();
+        Object item = createItem();
+        assertEquals(1, ClassCache.getHits());
+        assertNotSame(first.getClass(), item.getClass());
+
+        item.getClass().getMethod("setName", String.class).invoke(item, "bolt");
+        assertEquals("bolt", item.getClass().getMethod("getName").invoke(item));
+        assertEquals(4, item.getClass().getMethod("twice").invoke(item));
+    }
+
+    @Test
+    void changedSourcesMissTheCache() throws Exception {
+        newRun();
+        createItem();
+
+        tree.write("p/Item.java", ITEM.replace("private int count = 2;", "private int count = 2;\n    private long total;"));
+        newRun();
+        Object item = createItem();
+        assertEquals(0, ClassCache.getHits());
+        assertEquals(2, entries());
+        item.getClass().getDeclaredField("total");
+    }
+}
@@ -0,0 +1,62 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.exception.BudgetExceededException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationBudgetTest {
+
+    @Test
+    void stepsAreRefusedOnceTheLimitIsReached() {
+        EvaluationBudget budget = EvaluationBudget.start(0, 3);
+        try {
+            for (int i = 0; i < 3; i++) {
+                EvaluationBudget.step();
+            }
+            assertFalse(budget.isExhausted());
+            BudgetExceededException e = assertThrows(BudgetExceededException.class, EvaluationBudget::step);
+            assertEquals("Exceeded the limit of 3 steps", e.getMessage());
+            assertTrue(budget.isExhausted());
+            assertThrows(BudgetExceededException.class, EvaluationBudget::step);
+        } finally {
+            budget.end();
+        }
+        assertDoesNotThrow(EvaluationBudget::step);
+    }
+
+    @Test
+    void stepsAreRefusedAfterTheDeadline() throws InterruptedException {
+        EvaluationBudget budget = EvaluationBudget.start(1, 0);
+        try {
+            Thread.sleep(5);
+            assertThrows(BudgetExceededException.class, () -> {
+                for (int i = 0; i < 1000; i++) {
+                    EvaluationBudget.step();
+                }
+            });
+            assertEquals("Exceeded the time limit of 1 ms", budget.getReason());
+        } finally {
+            budget.end();
+        }
+    }
+
+    @Test
+    void endingANestedBudgetRestoresTheOuterOne() {
+        EvaluationBudget outer = EvaluationBudget.start(0, 1);
+        try {
+            EvaluationBudget inner = EvaluationBudget.start(0, 0);
+            EvaluationBudget.step();
+            EvaluationBudget.step();
+            inner.end();
+            EvaluationBudget.step();
+            assertThrows(BudgetExceededException.class, EvaluationBudget::step);
+        } finally {
+            outer.end();
+        }
+    }
+}
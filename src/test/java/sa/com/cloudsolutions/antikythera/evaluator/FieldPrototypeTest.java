@@ -0,0 +1,134 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.body.TypeDeclaration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.SourceTree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FieldPrototypeTest {
+    @TempDir
+    Path sources;
+    private SourceTree tree;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Base.java", """
+                package p;
+                public class Base {
+                    protected long version = 1L;
+                }
+                """);
+        tree.write("p/Order.java", """
+                package p;
+                import java.util.ArrayList;
+                import java.util.List;
+                public class Order extends Base {
+                    private String name;
+                    private int count = 3;
+                    private String label = "order";
+                    private List<String> tags;
+                    private List<String> lines = new ArrayList<>();
+                    private int size = label.length();
+                }
+                """);
+        tree.write("p/Counter.java", """
+                package p;
+                public class Counter {
+                    private int count;
+                    {
+                        count = 5;
+                    }
+                }
+                """);
+        tree.compile();
+        FieldPrototype.resetStatistics();
+    }
+
+    @Test
+    void laterInstancesGetTheSameFieldsAsTheFirst() {
+        Evaluator first = EvaluatorFactory.create("p.Order", Evaluator.class);
+        assertEquals(0, FieldPrototype.getStamped());
+        Evaluator second = EvaluatorFactory.create("p.Order", Evaluator.class);
+        assertEquals(1, FieldPrototype.getStamped());
+
+        for (String name : List.of("name", "count", "label", "tags", "lines", "size", "version")) {
+            assertEquals(first.getField(name).getValue(), second.getField(name).getValue(), name);
+            assertEquals(first.getField(name).getType(), second.getField(name).getType(), name);
+        }
+        assertNull(second.getField("name").getValue());
+        assertEquals(3, second.getField("count").getValue());
+        assertEquals(5, second.getField("size").getValue());
+        assertEquals(1L, second.getField("version").getValue());
+    }
+
+    @Test
+    void instancesDoNotShareMutableValues() {
+        Evaluator first = EvaluatorFactory.create("p.Order", Evaluator.class);
+        Evaluator second = EvaluatorFactory.create("p.Order", Evaluator.class);
+
+        assertNotSame(first.getField("tags").getValue(), second.getField("tags").getValue());
+        assertNotSame(first.getField("lines").getValue(), second.getField("lines").getValue());
+        assertNotSame(first.getField("count"), second.getField("count"));
+
+        first.getField("count").setValue(7);
+        assertEquals(3, EvaluatorFactory.create("p.Order", Evaluator.class).getField("count").getValue());
+    }
+
+    @Test
+    void changesToTheParentAreSeenByTheChild(@TempDir Path cache) throws IOException {
+        Settings.setProperty(Settings.CACHE_PATH, cache.toString());
+        Settings.setProperty(Settings.INCREMENTAL_PREPROCESS, true);
+        try {
+            tree.compile();
+            EvaluatorFactory.create("p.Order", Evaluator.class);
+            assertEquals(1L, EvaluatorFactory.create("p.Order", Evaluator.class).getField("version").getValue());
+            TypeDeclaration<?> order = AntikytheraRunTime.getTypeDeclaration("p.Order").orElseThrow();
+
+            tree.write("p/Base.java", """
+                    package p;
+                    public class Base {
+                        protected long version = 2L;
+                    }
+                    """);
+            AbstractCompiler.preProcess();
+            assertSame(order, AntikytheraRunTime.getTypeDeclaration("p.Order").orElseThrow());
+            assertEquals(2L, EvaluatorFactory.create("p.Order", Evaluator.class).getField("version").getValue());
+        } finally {
+            Settings.setProperty(Settings.INCREMENTAL_PREPROCESS, false);
+        }
+    }
+
+    @Test
+    void classesWithInitializerBlocksAreSetUpInFull() {
+        EvaluatorFactory.create("p.Counter", Evaluator.class);
+        Evaluator second = EvaluatorFactory.create("p.Counter", Evaluator.class);
+
+        assertEquals(0, FieldPrototype.getStamped());
+        assertEquals(5, second.getField("count").getValue());
+    }
+}
@@ -0,0 +1,85 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingRegistry;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.MavenHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MethodInterceptorTest extends TestHelper {
+    public static final String EMPLOYEE = "sa.com.cloudsolutions.antikythera.testhelper.evaluator.Employee";
+    public static final String PERSON = "sa.com.cloudsolutions.antikythera.testhelper.evaluator.Person";
+
+    @BeforeAll
+    static void beforeClass() throws IOException, XmlPullParserException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        MockingRegistry.reset();
+        MavenHelper mavenHelper = new MavenHelper();
+        mavenHelper.readPomFile();
+        mavenHelper.buildJarPaths();
+        AbstractCompiler.reset();
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+    }
+
+    @BeforeEach
+    void before() {
+        System.setOut(new PrintStream(outContent));
+    }
+
+    private Object create(String className) {
+        evaluator = EvaluatorFactory.create(className, Evaluator.class);
+        MethodInterceptor interceptor = new MethodInterceptor(evaluator);
+        return AKBuddy.createInstance(AKBuddy.createDynamicClass(interceptor), interceptor);
+    }
+
+    private static Field field(Object instance, String name) throws NoSuchFieldException {
+        Field field = instance.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    @Test
+    void nestedObjectsKeepTheirProxyBetweenCalls() throws ReflectiveOperationException {
+        Object employee = create(EMPLOYEE);
+        employee.getClass().getMethod("publicAccess").invoke(employee);
+        Object person = field(employee, "p").get(employee);
+        assertNotNull(person);
+
+        employee.getClass().getMethod("publicAccess").invoke(employee);
+        assertSame(person, field(employee, "p").get(employee));
+    }
+
+    @Test
+    void changedFieldsAreWrittenAgain() throws ReflectiveOperationException {
+        Object person = create(PERSON);
+        person.getClass().getMethod("setName", String.class).invoke(person, "Horatio");
+        assertEquals("Horatio", field(person, "name").get(person));
+        assertEquals("Horatio", person.getClass().getMethod("getName").invoke(person));
+    }
+
+    @Test
+    void fieldsOverwrittenOnTheInstanceAreRestored() throws ReflectiveOperationException {
+        Object employee = create(EMPLOYEE);
+        employee.getClass().getMethod("publicAccess").invoke(employee);
+        Object person = field(employee, "p").get(employee);
+        field(employee, "p").set(employee, null);
+
+        employee.getClass().getMethod("publicAccess").invoke(employee);
+        assertNotNull(field(employee, "p").get(employee));
+        assertNotSame(person, field(employee, "p").get(employee));
+    }
+}
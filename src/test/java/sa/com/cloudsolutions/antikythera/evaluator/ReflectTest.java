@@ -1,9 +1,12 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
 import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionEvaluator;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -38,4 +41,19 @@ class ReflectTest {
         assertSame(c1, c2); // Should be same instance if cached (though Constructor instances might not be
                             // singletons, our cache should return the same one)
     }
+
+    @Test
+    void lambdaArgumentsHitTheCache() {
+        FunctionEvaluator<?, ?> lambda = EvaluatorFactory.create("java.util.function.Function", FunctionEvaluator.class);
+        Reflect.resetStatistics();
+
+        for (int i = 0; i < 2; i++) {
+            ReflectionArguments args = new ReflectionArguments("ifPresent", new Object[] { lambda },
+                    new Class<?>[] { FunctionEvaluator.class });
+            Method m = Reflect.findMethod(Optional.class, args);
+            assertNotNull(m);
+            assertEquals(Function.class, args.getArgumentTypes()[0]);
+        }
+        assertEquals(1, Reflect.getHits());
+    }
 }
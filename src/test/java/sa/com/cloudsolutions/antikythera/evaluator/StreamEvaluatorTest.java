@@ -13,6 +13,7 @@ import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 import java.util.stream.DoubleStream;
@@ -76,6 +77,28 @@ class StreamEvaluatorTest {
         assertEquals(List.of("bb", "ccc"), ((Stream<?>) val).toList());
     }
 
+    @Test
+    void intermediateFilterWithPredicate() throws Exception {
+        Stream<String> stream = Stream.of("a", "bb", "ccc");
+        Predicate<String> predicate = x -> x.length() > 1;
+        StreamEvaluator.IntermediateResult ir = StreamEvaluator.dispatchIntermediateOp("filter", stream, new Object[]{predicate});
+        assertTrue(ir.handled());
+        assertEquals(List.of("bb", "ccc"), ((Stream<?>) ir.result().getValue()).toList());
+    }
+
+    @Test
+    void pipelineStopsAtTheFirstMatch() throws Exception {
+        List<Object> seen = new ArrayList<>();
+        Consumer<Object> consumer = seen::add;
+        UnaryOperator<Object> fn = x -> (Integer) x > 2;
+        Stream<?> stream = (Stream<?>) StreamEvaluator.dispatchIntermediateOp("peek", Stream.of(1, 2, 3, 4, 5),
+                new Object[]{consumer}).result().getValue();
+
+        Variable result = StreamEvaluator.dispatchTerminalOp("anyMatch", stream, new Object[]{fn});
+        assertEquals(true, result.getValue());
+        assertEquals(List.of(1, 2, 3), seen);
+    }
+
     @Test
     void intermediateMap() throws Exception {
         Stream<String> stream = Stream.of("a", "b");
@@ -6,16 +6,22 @@ import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingRegistry;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -86,4 +92,56 @@ class TestArithmetic extends  TestHelper {
         String output = outContent.toString();
         assertTrue(output.contains("30"));
     }
+
+    @ParameterizedTest
+    @MethodSource("operations")
+    void testOperationsBehaveLikeCompiledCode(Object left, BinaryExpr.Operator operator, Object right, Object expected) {
+        Variable result = Arithmetics.operate(new Variable(left), new Variable(right), operator);
+        assertEquals(expected, result.getValue());
+        assertEquals(expected.getClass(), result.getClazz());
+    }
+
+    private static Stream<Arguments> operations() {
+        return Stream.of(
+                Arguments.of(7, BinaryExpr.Operator.DIVIDE, 2, 3),
+                Arguments.of(-7, BinaryExpr.Operator.REMAINDER, 2, -1),
+                Arguments.of(Integer.MAX_VALUE, BinaryExpr.Operator.PLUS, 1, Integer.MIN_VALUE),
+                Arguments.of(9007199254740993L, BinaryExpr.Operator.MINUS, 1, 9007199254740992L),
+                Arguments.of(Long.MAX_VALUE, BinaryExpr.Operator.MULTIPLY, 1L, Long.MAX_VALUE),
+                Arguments.of(1.5f, BinaryExpr.Operator.MULTIPLY, 2, 3.0f),
+                Arguments.of(1, BinaryExpr.Operator.DIVIDE, 4.0, 0.25),
+                Arguments.of((short) 3, BinaryExpr.Operator.PLUS, (short) 4, 7),
+                Arguments.of((short) 30000, BinaryExpr.Operator.PLUS, (short) 30000, 60000),
+                Arguments.of((byte) 100, BinaryExpr.Operator.MULTIPLY, (byte) 2, 200),
+                Arguments.of('a', BinaryExpr.Operator.PLUS, 1, 98),
+                Arguments.of("a", BinaryExpr.Operator.PLUS, 1, "a1")
+        );
+    }
+
+    @Test
+    void testIntegerDivisionByZero() {
+        Variable one = new Variable(1);
+        Variable zero = new Variable(0L);
+        assertThrows(ArithmeticException.class, () -> Arithmetics.operate(one, zero, BinaryExpr.Operator.DIVIDE));
+        assertEquals(Double.POSITIVE_INFINITY,
+                Arithmetics.operate(new Variable(1.0), zero, BinaryExpr.Operator.DIVIDE).getValue());
+    }
+
+    @Test
+    void testIncrementKeepsTheType() {
+        assertEquals((byte) -128, Arithmetics.increment((byte) 127, 1));
+        assertEquals(41L, Arithmetics.increment(42L, -1));
+        assertEquals(2.5f, Arithmetics.increment(1.5f, 1));
+        assertEquals('b', Arithmetics.increment('a', 1));
+        assertEquals(-5, Arithmetics.negate((short) 5));
+        assertEquals("x", Arithmetics.increment("x", 1));
+    }
+
+    @Test
+    void testCompoundAssignmentKeepsTheType() {
+        assertEquals((short) -5536, Arithmetics.assign(new Variable((short) 1), new Variable(60000)).getValue());
+        assertEquals(4, Arithmetics.assign(new Variable(3), new Variable(4.5)).getValue());
+        assertEquals('c', Arithmetics.assign(new Variable('a'), new Variable(99)).getValue());
+        assertEquals("ab", Arithmetics.assign(new Variable("a"), new Variable("ab")).getValue());
+    }
 }
@@ -0,0 +1,92 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.IfStmt;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestCompiledCallable extends TestHelper {
+    private static final String SAMPLE_CLASS = "sa.com.cloudsolutions.antikythera.testhelper.evaluator.Loops";
+    private CompilationUnit cu;
+
+    static class CountingEvaluator extends Evaluator {
+        int conditions;
+
+        CountingEvaluator(EvaluatorFactory.Context context) {
+            super(context);
+        }
+
+        @Override
+        void ifThenElseBlock(IfStmt ifst) throws Exception {
+            conditions++;
+            super.ifThenElseBlock(ifst);
+        }
+    }
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.preProcess();
+    }
+
+    @BeforeEach
+    void each() {
+        cu = AntikytheraRunTime.getCompilationUnit(SAMPLE_CLASS);
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @AfterEach
+    void disable() {
+        Settings.setProperty(Settings.COMPILED_EXECUTION, false);
+    }
+
+    private MethodDeclaration method(String name) {
+        return cu.findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(name)).orElseThrow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"forLoop", "forLoopWithBreak", "whileLoop", "doWhileLoop", "forEach",
+            "whileLoopWithBreak", "forEachLoopWithBreak", "forLoopWithReturn"})
+    void compiledMethodsBehaveLikeInterpretedOnes(String methodName) throws ReflectiveOperationException {
+        MethodDeclaration md = method(methodName);
+        Variable interpreted = EvaluatorFactory.create(SAMPLE_CLASS, Evaluator.class).executeMethod(md);
+        String expected = outContent.toString();
+        outContent.reset();
+
+        Settings.setProperty(Settings.COMPILED_EXECUTION, true);
+        Variable compiled = EvaluatorFactory.create(SAMPLE_CLASS, Evaluator.class).executeMethod(md);
+
+        assertEquals(expected, outContent.toString());
+        assertEquals(interpreted.getValue(), compiled.getValue());
+        assertTrue(CompiledCallable.size() > 0);
+        assertEquals(0, new AnalysisSession().call(CompiledCallable::size));
+    }
+
+    @Test
+    void overriddenMethodsAreStillCalled() throws ReflectiveOperationException {
+        MethodDeclaration md = method("forLoopWithBreak");
+        CountingEvaluator interpreted = EvaluatorFactory.create(SAMPLE_CLASS, CountingEvaluator.class);
+        interpreted.executeMethod(md);
+
+        Settings.setProperty(Settings.COMPILED_EXECUTION, true);
+        CountingEvaluator compiled = EvaluatorFactory.create(SAMPLE_CLASS, CountingEvaluator.class);
+        compiled.executeMethod(md);
+
+        assertTrue(interpreted.conditions > 0);
+        assertEquals(interpreted.conditions, compiled.conditions);
+    }
+}
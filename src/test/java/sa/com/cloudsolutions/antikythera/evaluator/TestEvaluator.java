@@ -3,6 +3,7 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
@@ -21,6 +22,7 @@ import org.junit.jupiter.api.Test;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 import sa.com.cloudsolutions.antikythera.finch.Finch;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -33,6 +35,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -78,6 +81,29 @@ class TestEvaluator extends TestHelper {
         assertEquals(expected, result);
     }
 
+    @Test
+    void writesThroughTheLocalsMapAreSeen() {
+        Evaluator eval = EvaluatorFactory.create("", Evaluator.class);
+        MethodDeclaration md = StaticJavaParser.parse("class A { void a(int x) { int y = x; } }")
+                .findFirst(MethodDeclaration.class).orElseThrow();
+        NameExpr x = md.findFirst(NameExpr.class).orElseThrow();
+        Variable y = new Variable(1);
+        eval.setLocal(md.findFirst(VariableDeclarator.class).orElseThrow(), "y", y);
+
+        Map<String, Symbol> body = eval.getLocals().get(NodeIds.of(md.getBody().orElseThrow()));
+        assertSame(y, body.get("y"));
+        Variable replaced = new Variable(2);
+        Variable z = new Variable(3);
+        body.put("y", replaced);
+        body.put("z", z);
+        assertSame(replaced, eval.getLocal(x, "y"));
+        assertSame(z, eval.getLocal(x, "z"));
+
+        eval.getLocals().clear();
+        assertNull(eval.getLocal(x, "y"));
+        assertNull(eval.getLocal(x, "z"));
+    }
+
     @Test
     void evaluateBinaryExpression() throws AntikytheraException, ReflectiveOperationException {
         Evaluator eval = EvaluatorFactory.create("", Evaluator.class);
@@ -0,0 +1,170 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.InstanceOfExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestLocalSlots {
+    private static final String SOURCE = """
+            class A {
+                A() { if (true) { b(); } }
+                void a(int x) {
+                    int y = x;
+                    if (x > 0) {
+                        int z = y;
+                        while (z < 10) { z = z + x; }
+                    }
+                    try { b(); } catch (RuntimeException e) { b(); }
+                    if (this instanceof Object o) { b(); }
+                }
+                void b() {}
+            }
+            """;
+
+    @BeforeAll
+    static void setup() {
+        StaticJavaParser.getParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_21);
+    }
+
+    private static MethodDeclaration methodA() {
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        return cu.findFirst(MethodDeclaration.class).orElseThrow();
+    }
+
+    private static NameExpr name(MethodDeclaration md, String name, int index) {
+        return md.findAll(NameExpr.class, n -> n.getNameAsString().equals(name)).get(index);
+    }
+
+    @Test
+    void everyVariableHasASlot() {
+        MethodDeclaration a = methodA();
+        LocalSlots layout = LocalSlots.of(a);
+        assertEquals(5, layout.size());
+        assertSame(layout, LocalSlots.of(a));
+
+        BlockStmt body = a.getBody().orElseThrow();
+        int x = layout.slot(NodeIds.of(body), "x");
+        assertTrue(x >= 0);
+        assertEquals("x", layout.nameOf(x));
+        assertEquals(NodeIds.of(body), layout.blockOf(x));
+        assertTrue(layout.slot(NodeIds.of(body), "y") >= 0);
+        assertEquals(-1, layout.slot(NodeIds.of(body), "z"));
+
+        TryStmt tryStmt = a.findFirst(TryStmt.class).orElseThrow();
+        LocalSlots.Target catchParameter = LocalSlots.target(tryStmt, "e");
+        assertSame(layout, catchParameter.layout());
+        assertEquals(layout.slot(NodeIds.of(body), "e"), catchParameter.slot());
+        assertTrue(catchParameter.slot() >= 0);
+
+        InstanceOfExpr instanceOf = a.findFirst(InstanceOfExpr.class).orElseThrow();
+        assertTrue(LocalSlots.target(instanceOf, "o").slot() >= 0);
+        assertEquals(-1, LocalSlots.target(instanceOf, "q").slot());
+    }
+
+    @Test
+    void namesRecordTheirSlotsInnermostBlockFirst() {
+        MethodDeclaration a = methodA();
+        LocalSlots layout = LocalSlots.of(a);
+        BlockStmt body = a.getBody().orElseThrow();
+        BlockStmt ifBlock = a.findFirst(IfStmt.class).orElseThrow().getThenStmt().asBlockStmt();
+        BlockStmt whileBlock = a.findFirst(WhileStmt.class).orElseThrow().getBody().asBlockStmt();
+
+        NameExpr x = name(a, "x", 2);
+        assertSame(whileBlock, x.findAncestor(BlockStmt.class).orElseThrow());
+        LocalSlots.Lookup lookup = LocalSlots.lookup(x, "x");
+        assertSame(lookup, LocalSlots.lookup(x, "x"));
+        assertSame(layout, lookup.layout());
+        assertFalse(lookup.searchAll());
+        assertArrayEquals(new Integer[] {NodeIds.of(whileBlock), NodeIds.of(ifBlock), NodeIds.of(body)},
+                lookup.blocks());
+        assertArrayEquals(new int[] {-1, -1, layout.slot(NodeIds.of(body), "x")}, lookup.slots());
+
+        LocalSlots.Lookup z = LocalSlots.lookup(name(a, "z", 0), "z");
+        assertArrayEquals(new Integer[] {NodeIds.of(ifBlock), NodeIds.of(body)}, z.blocks());
+        assertEquals(layout.slot(NodeIds.of(ifBlock), "z"), z.slots()[0]);
+
+        assertArrayEquals(new Integer[] {NodeIds.of(body)}, LocalSlots.lookup(a, "x").blocks());
+        assertNull(LocalSlots.lookup(null, "x").layout());
+    }
+
+    @Test
+    void constructorsFallBackToSearchingEverything() {
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        ConstructorDeclaration constructor = cu.findFirst(ConstructorDeclaration.class).orElseThrow();
+        List<BlockStmt> blocks = constructor.findAll(BlockStmt.class);
+
+        LocalSlots.Lookup lookup = LocalSlots.lookup(constructor.findFirst(MethodCallExpr.class).orElseThrow(), "b");
+        assertNull(lookup.layout());
+        assertTrue(lookup.searchAll());
+        assertArrayEquals(new Integer[] {NodeIds.of(blocks.get(1)), NodeIds.of(blocks.get(0))}, lookup.blocks());
+        assertEquals(NodeIds.of(blocks.get(1)), LocalSlots.target(blocks.get(1), "b").block());
+        assertEquals(-1, LocalSlots.target(blocks.get(1), "b").slot());
+    }
+
+    @Test
+    void changesToTheMethodRebuildTheLayout() {
+        MethodDeclaration a = methodA();
+        LocalSlots layout = LocalSlots.of(a);
+        BlockStmt body = a.getBody().orElseThrow();
+        BlockStmt ifBlock = a.findFirst(IfStmt.class).orElseThrow().getThenStmt().asBlockStmt();
+        WhileStmt loop = a.findFirst(WhileStmt.class).orElseThrow();
+        NameExpr x = name(a, "x", 2);
+        LocalSlots.lookup(x, "x");
+
+        ifBlock.addStatement("int w = 1;");
+        assertTrue(layout.isStale());
+        LocalSlots rebuilt = LocalSlots.of(a);
+        assertNotSame(layout, rebuilt);
+        assertSame(layout.getObserver(), rebuilt.getObserver());
+        assertTrue(rebuilt.slot(NodeIds.of(ifBlock), "w") >= 0);
+
+        // moving the loop out of the if statement changes the blocks that x is looked up in
+        loop.remove();
+        body.addStatement(loop);
+        assertTrue(rebuilt.isStale());
+        LocalSlots.Lookup lookup = LocalSlots.lookup(x, "x");
+        assertArrayEquals(new Integer[] {NodeIds.of(loop.getBody()), NodeIds.of(body)}, lookup.blocks());
+        assertFalse(lookup.layout().isStale());
+    }
+
+    @Test
+    void clonesHaveALayoutOfTheirOwn() {
+        MethodDeclaration a = methodA();
+        LocalSlots layout = LocalSlots.of(a);
+        LocalSlots.lookup(name(a, "x", 2), "x");
+
+        MethodDeclaration copy = a.clone();
+        LocalSlots copied = LocalSlots.of(copy);
+        assertNotSame(layout, copied);
+        assertSame(copy, copied.getMethod());
+        assertNotSame(layout.getObserver(), copied.getObserver());
+
+        NameExpr x = name(copy, "x", 2);
+        LocalSlots.Lookup lookup = LocalSlots.lookup(x, "x");
+        assertSame(x, lookup.owner());
+        assertSame(copied, lookup.layout());
+        assertEquals(NodeIds.of(x.findAncestor(BlockStmt.class).orElseThrow()), lookup.blocks()[0]);
+    }
+}
@@ -59,6 +59,8 @@ class TestNumericComparator {
             Arguments.of("LongLessThan", 50L, 100L, -1),
             Arguments.of("LongGreaterThan", 200L, 100L, 1),
             Arguments.of("LongWithInteger", 100L, 100, 0),
+            Arguments.of("LongBeyondDoublePrecision", 9007199254740993L, 9007199254740992L, 1),
+            Arguments.of("ShortWithByte", (short) 300, (byte) 44, 1),
 
             // Integer comparisons
             Arguments.of("IntegerEqual", 42, 42, 0),
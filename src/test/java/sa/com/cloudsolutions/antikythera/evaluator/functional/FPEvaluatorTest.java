@@ -0,0 +1,88 @@
+package sa.com.cloudsolutions.antikythera.evaluator.functional;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AnalysisSession;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
+import sa.com.cloudsolutions.antikythera.evaluator.EvaluatorFactory;
+import sa.com.cloudsolutions.antikythera.evaluator.TestHelper;
+import sa.com.cloudsolutions.antikythera.evaluator.Variable;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.NodeIds;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FPEvaluatorTest extends TestHelper {
+    public static final String SAMPLE_CLASS = "sa.com.cloudsolutions.antikythera.testhelper.evaluator.Functional";
+    CompilationUnit cu;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+    }
+
+    @BeforeEach
+    void each() {
+        AntikytheraRunTime.reset();
+        cu = AntikytheraRunTime.getCompilationUnit(SAMPLE_CLASS);
+        evaluator = EvaluatorFactory.create(SAMPLE_CLASS, Evaluator.class);
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {"nestedStream; 1AB2AB", "streamForEach; 8903145672", "greet3; Hello Thorin Oakenshield"},
+            delimiter = ';')
+    void theLambdasGiveTheSameResultEachTime(String name, String value) throws ReflectiveOperationException {
+        MethodDeclaration method = cu.findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(name)).orElseThrow();
+        evaluator.executeMethod(method);
+        EvaluatorFactory.create(SAMPLE_CLASS, Evaluator.class).executeMethod(method);
+        assertEquals(value + "\n" + value + "\n", outContent.toString());
+    }
+
+    @Test
+    void theMethodIsSynthesisedOncePerLambda() {
+        LambdaExpr lambda = cu.findFirst(LambdaExpr.class).orElseThrow();
+        FPEvaluator<?> first = evaluatorFor(lambda);
+        FPEvaluator<?> second = evaluatorFor(lambda);
+
+        assertNotSame(first, second);
+        assertSame(first.getMethodDeclaration(), second.getMethodDeclaration());
+
+        LambdaExpr copy = lambda.clone();
+        copy.setParentNode(lambda.getParentNode().orElseThrow());
+        assertNotSame(first.getMethodDeclaration(), evaluatorFor(copy).getMethodDeclaration());
+    }
+
+    @Test
+    void sessionsDoNotShareTheMethod() {
+        LambdaExpr lambda = cu.findFirst(LambdaExpr.class).orElseThrow();
+        MethodDeclaration here = evaluatorFor(lambda).getMethodDeclaration();
+        MethodDeclaration other = new AnalysisSession()
+                .call(() -> evaluatorFor(lambda).getMethodDeclaration());
+
+        assertNotSame(here, other);
+        assertEquals(NodeIds.of(here.getBody().orElseThrow()), NodeIds.of(other.getBody().orElseThrow()));
+        assertSame(here, evaluatorFor(lambda).getMethodDeclaration());
+    }
+
+    private FPEvaluator<?> evaluatorFor(LambdaExpr lambda) {
+        Variable v = FPEvaluator.create(lambda, evaluator);
+        return (FPEvaluator<?>) v.getValue();
+    }
+}
@@ -15,8 +15,14 @@ import java.io.IOException;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
 
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -331,4 +337,51 @@ class AbstractCompilerTest {
         assertTrue(AbstractCompiler.matchesSkipPattern("com.example.generated"));
         assertFalse(AbstractCompiler.matchesSkipPattern("com.example.ActiveService"));
     }
+
+    @Test
+    void loadClass_remembersMissingClasses() throws ClassNotFoundException {
+        ClassNotFoundException first = assertThrows(ClassNotFoundException.class,
+                () -> AbstractCompiler.loadClass("com.example.DoesNotExist"));
+        ClassNotFoundException second = assertThrows(ClassNotFoundException.class,
+                () -> AbstractCompiler.loadClass("com.example.DoesNotExist"));
+
+        assertEquals(first.getMessage(), second.getMessage());
+        assertTrue(first.getStackTrace().length > 0);
+        assertEquals(0, second.getStackTrace().length, "Known misses should not capture a stack trace");
+        assertSame(String.class, AbstractCompiler.loadClass("java.lang.String"));
+    }
+
+    @Test
+    void classLoaderIsReplacedOnlyWhenTheJarsChange() throws IOException {
+        ClassLoader loader = AbstractCompiler.getClassLoader();
+        int generation = AbstractCompiler.getClassLoaderGeneration();
+        AbstractCompiler.reset();
+        assertSame(loader, AbstractCompiler.getClassLoader());
+        assertEquals(generation, AbstractCompiler.getClassLoaderGeneration());
+
+        File jar = File.createTempFile("classloader", ".jar");
+        jar.deleteOnExit();
+        new JarOutputStream(new FileOutputStream(jar)).close();
+        try {
+            Settings.setProperty(Settings.DEPENDENCIES, Map.of("jar_files", List.of(jar.getAbsolutePath())));
+            AbstractCompiler.reset();
+            assertNotSame(loader, AbstractCompiler.getClassLoader());
+            assertEquals(generation + 1, AbstractCompiler.getClassLoaderGeneration());
+            assertSame(AbstractCompiler.class.getClassLoader(), AbstractCompiler.getClassLoader().getParent());
+        } finally {
+            Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+            AbstractCompiler.reset();
+        }
+    }
+
+    @Test
+    void classesDefinedAtRuntimeAreNoLongerMissing() throws ClassNotFoundException {
+        String name = "sa.com.cloudsolutions.antikythera.parser.generated.DefinedLater";
+        assertThrows(ClassNotFoundException.class, () -> AbstractCompiler.loadClass(name));
+
+        Class<?> defined = new ByteBuddy().subclass(Object.class).name(name).make()
+                .load(AbstractCompiler.getClassLoader(), ClassLoadingStrategy.Default.INJECTION).getLoaded();
+        AbstractCompiler.classDefined(defined);
+        assertSame(defined, AbstractCompiler.loadClass(name));
+    }
 }
@@ -0,0 +1,122 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.Type;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallSiteCacheTest {
+    private TypeDeclaration<?> shape;
+    private MethodCallExpr call;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+    }
+
+    @BeforeEach
+    void each() {
+        CompilationUnit cu = StaticJavaParser.parse("""
+                package p;
+                public class Shape {
+                    int scale(int factor) { return factor; }
+                    String scale(String factor) { return factor; }
+                    int area() { return scale(2); }
+                }
+                """);
+        shape = cu.getType(0);
+        call = cu.findFirst(MethodCallExpr.class).orElseThrow();
+        CallSiteCache.resetStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        AntikytheraRunTime.removeType("p.Square");
+    }
+
+    private Optional<Callable> find(Type argumentType) {
+        MCEWrapper wrapper = new MCEWrapper(call);
+        wrapper.setArgumentTypes(new NodeList<>(argumentType));
+        Optional<Callable> callable = CallSiteCache.findMethodDeclaration(wrapper, shape);
+        callable.ifPresent(c -> assertSame(wrapper, c.getMce()));
+        return callable;
+    }
+
+    @Test
+    void repeatedCallsAreAnsweredFromTheCache() {
+        Callable first = find(PrimitiveType.intType()).orElseThrow();
+        Callable second = find(PrimitiveType.intType()).orElseThrow();
+        Callable other = find(new ClassOrInterfaceType(null, "String")).orElseThrow();
+
+        assertSame(first.getCallableDeclaration(), second.getCallableDeclaration());
+        assertEquals("String", other.asMethodDeclaration().getParameter(0).getTypeAsString());
+        assertEquals(2, CallSiteCache.getMisses());
+        assertEquals(1, CallSiteCache.getHits());
+    }
+
+    @Test
+    void registeringATypeKeepsTheResolvedCalls() {
+        find(PrimitiveType.intType());
+        AntikytheraRunTime.addType("p.Square", new TypeWrapper(new ClassOrInterfaceDeclaration().setName("Square")));
+        find(PrimitiveType.intType());
+
+        assertEquals(1, CallSiteCache.getMisses());
+        assertEquals(1, CallSiteCache.getHits());
+    }
+
+    @Test
+    void registeringATypeRetriesTheCallsThatDidNotMatch() {
+        Type square = new ClassOrInterfaceType(null, "Square");
+        assertTrue(find(square).isEmpty());
+        assertTrue(find(square).isEmpty());
+        AntikytheraRunTime.addType("p.Square", new TypeWrapper(new ClassOrInterfaceDeclaration().setName("Square")));
+        assertTrue(find(square).isEmpty());
+        assertTrue(find(square).isEmpty());
+
+        assertEquals(2, CallSiteCache.getMisses());
+        assertEquals(2, CallSiteCache.getHits());
+    }
+
+    @Test
+    void removingATypeInvalidatesTheCache() {
+        find(PrimitiveType.intType());
+        AntikytheraRunTime.removeType("p.Square");
+        find(PrimitiveType.intType());
+
+        assertEquals(2, CallSiteCache.getMisses());
+        assertEquals(0, CallSiteCache.getHits());
+    }
+
+    @Test
+    void megamorphicCallsAreNotCached() {
+        for (int i = 0; i <= CallSiteCache.LIMIT; i++) {
+            find(new ClassOrInterfaceType(null, "T" + i));
+        }
+        assertTrue(find(new ClassOrInterfaceType(null, "T" + CallSiteCache.LIMIT)).isEmpty());
+
+        assertEquals(CallSiteCache.LIMIT + 2L, CallSiteCache.getMisses());
+        assertEquals(0, CallSiteCache.getHits());
+    }
+}
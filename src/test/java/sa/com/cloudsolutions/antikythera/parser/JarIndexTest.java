@@ -0,0 +1,123 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JarIndexTest {
+    @TempDir
+    Path folder;
+
+    private Path jar(String name, Manifest manifest, String... entries) throws IOException {
+        Path jar = folder.resolve(name);
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = manifest == null ? new JarOutputStream(out) : new JarOutputStream(out, manifest)) {
+            for (String entry : entries) {
+                jarOut.putNextEntry(new JarEntry(entry));
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    @Test
+    void indexesClassesByPackage() throws IOException {
+        Path jar = jar("lib.jar", null, "a/b/C.class", "a/b/C$D.class", "a/b/package-info.class",
+                "META-INF/versions/11/a/b/E.class", "module-info.class", "a/b/notes.txt", "Top.class");
+        JarIndex index = new JarIndex(null);
+        index.addAll(List.of(jar.toString(), folder.resolve("missing.jar").toString()));
+
+        assertTrue(index.isComplete());
+        assertTrue(index.contains("a.b.C"));
+        assertTrue(index.contains("a.b.C$D"));
+        assertTrue(index.contains("Top"));
+        assertFalse(index.contains("a.b.C.D"));
+        assertFalse(index.contains("a.C"));
+        assertEquals(Set.of("C", "C$D", "E"), index.getPackageMembers("a.b"));
+        assertTrue(index.getPackageMembers("x.y").isEmpty());
+    }
+
+    @Test
+    void savedIndexIsReusedUntilTheJarChanges() throws IOException {
+        Path saved = folder.resolve("index");
+        Path jar = jar("lib.jar", null, "a/b/C.class");
+        new JarIndex(saved).addAll(List.of(jar.toString()));
+        try (var entries = Files.list(saved)) {
+            assertEquals(1, entries.count());
+        }
+
+        JarIndex warm = new JarIndex(saved);
+        warm.addAll(List.of(jar.toString()));
+        assertTrue(warm.contains("a.b.C"));
+
+        jar("lib.jar", null, "a/b/D.class");
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 1000));
+        JarIndex changed = new JarIndex(saved);
+        changed.addAll(List.of(jar.toString()));
+        assertFalse(changed.contains("a.b.C"));
+        assertTrue(changed.contains("a.b.D"));
+    }
+
+    @Test
+    void manifestClassPathMakesTheIndexIncomplete() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "other.jar");
+        JarIndex index = new JarIndex(null);
+        index.addAll(List.of(jar("lib.jar", manifest, "a/b/C.class").toString()));
+
+        assertFalse(index.isComplete());
+    }
+
+    @Test
+    void entryNames() {
+        assertEquals("a.b.C$D", JarIndex.toClassName("a/b/C$D.class"));
+        assertEquals("a.B", JarIndex.toClassName("META-INF/versions/17/a/B.class"));
+        assertNull(JarIndex.toClassName("META-INF/MANIFEST.MF"));
+        assertNull(JarIndex.toClassName("META-INF/versions/17/module-info.class"));
+        assertNull(JarIndex.toClassName("a/b/"));
+    }
+
+    @Test
+    void classesDefinedAtRuntimeAreFoundWhenTheIndexIsComplete() throws Exception {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        Settings.setProperty(Settings.JAR_INDEX, true);
+        Settings.setProperty(Settings.DEPENDENCIES, Map.of("jar_files", List.of(jar("empty.jar", null).toString())));
+        try {
+            AbstractCompiler.reset();
+            String name = "sa.com.cloudsolutions.antikythera.parser.generated.NotIndexed";
+            assertThrows(ClassNotFoundException.class, () -> AbstractCompiler.loadClass(name));
+
+            Class<?> defined = new ByteBuddy().subclass(Object.class).name(name).make()
+                    .load(AbstractCompiler.getClassLoader(), ClassLoadingStrategy.Default.INJECTION).getLoaded();
+            AbstractCompiler.classDefined(defined);
+            assertSame(defined, AbstractCompiler.loadClass(name));
+        } finally {
+            Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+            AbstractCompiler.reset();
+        }
+    }
+}
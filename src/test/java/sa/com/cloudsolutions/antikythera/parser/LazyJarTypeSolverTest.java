@@ -0,0 +1,77 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyJarTypeSolverTest {
+    private static final String ENTRY = "sa/com/cloudsolutions/antikythera/parser/JarIndex.class";
+
+    @TempDir
+    Path folder;
+
+    private LazyJarTypeSolver solver() throws IOException {
+        Path jar = folder.resolve("lib.jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out);
+             InputStream in = getClass().getClassLoader().getResourceAsStream(ENTRY)) {
+            jarOut.putNextEntry(new JarEntry(ENTRY));
+            in.transferTo(jarOut);
+            jarOut.closeEntry();
+        }
+        JarIndex index = new JarIndex(null);
+        index.addAll(List.of(jar.toString()));
+
+        LazyJarTypeSolver solver = new LazyJarTypeSolver(jar.toString(), index.getPackages(jar.toString()));
+        new CombinedTypeSolver(new ReflectionTypeSolver(), solver);
+        return solver;
+    }
+
+    @Test
+    void jarIsOnlyOpenedForItsOwnPackages() throws IOException {
+        LazyJarTypeSolver solver = solver();
+
+        assertFalse(solver.tryToSolveType("java.util.List").isSolved());
+        assertFalse(solver.tryToSolveType("Missing").isSolved());
+        assertFalse(solver.isOpen());
+
+        assertTrue(solver.mayContain("sa.com.cloudsolutions.antikythera.parser.JarIndex.Nested"));
+        assertTrue(solver.tryToSolveType("sa.com.cloudsolutions.antikythera.parser.JarIndex").isSolved());
+        assertTrue(solver.isOpen());
+        assertEquals("sa.com.cloudsolutions.antikythera.parser.JarIndex",
+                solver.solveType("sa.com.cloudsolutions.antikythera.parser.JarIndex").getQualifiedName());
+    }
+
+    @Test
+    void closingAllDropsTheOpenJars() throws IOException {
+        LazyJarTypeSolver solver = solver();
+        assertTrue(solver.tryToSolveType("sa.com.cloudsolutions.antikythera.parser.JarIndex").isSolved());
+        assertTrue(solver.isOpen());
+
+        LazyJarTypeSolver.closeAll();
+        assertFalse(solver.isOpen());
+        assertTrue(solver.tryToSolveType("sa.com.cloudsolutions.antikythera.parser.JarIndex").isSolved());
+    }
+
+    @Test
+    void unindexedJarsMayContainAnything() {
+        LazyJarTypeSolver solver = new LazyJarTypeSolver("missing.jar", null);
+        assertTrue(solver.mayContain("java.util.List"));
+        assertFalse(new LazyJarTypeSolver("missing.jar", Set.of()).mayContain("java.util.List"));
+    }
+}
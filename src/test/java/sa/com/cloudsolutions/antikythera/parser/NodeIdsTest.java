@@ -0,0 +1,93 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.evaluator.LineOfCode;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeIdsTest {
+    private static final String SOURCE = """
+            class A {
+                void first(int a) { if (a > 0) { System.out.println(a); } }
+                void second(int a) { if (a > 0) { System.out.println(a); } }
+            }
+            """;
+
+    @Test
+    void idsAreStable() {
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        BlockStmt block = cu.findFirst(BlockStmt.class).orElseThrow();
+
+        int id = NodeIds.of(block);
+        assertTrue(id > 0);
+        assertEquals(id, NodeIds.of(block));
+        assertEquals(0, NodeIds.ofNullable(null));
+    }
+
+    @Test
+    void structurallyIdenticalNodesHaveDifferentIds() {
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        List<IfStmt> ifs = cu.findAll(IfStmt.class);
+
+        assertEquals(ifs.get(0), ifs.get(1));
+        assertEquals(ifs.get(0).hashCode(), ifs.get(1).hashCode());
+        assertNotEquals(NodeIds.of(ifs.get(0)), NodeIds.of(ifs.get(1)));
+        assertNotEquals(new LineOfCode(ifs.get(0)), new LineOfCode(ifs.get(1)));
+        assertEquals(new LineOfCode(ifs.get(0)), new LineOfCode(ifs.get(0)));
+    }
+
+    @Test
+    void clonesGetTheirOwnId() {
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        MethodDeclaration md = cu.findFirst(MethodDeclaration.class).orElseThrow();
+        int id = NodeIds.of(md);
+
+        MethodDeclaration copy = md.clone();
+        assertNotEquals(id, NodeIds.of(copy));
+        assertEquals(id, NodeIds.of(md));
+        assertEquals(new Callable(md, null), new Callable(md, null));
+        assertNotEquals(new Callable(md, null), new Callable(copy, null));
+    }
+
+    @Test
+    void derivedTreesShareTheirIds() {
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        List<MethodDeclaration> methods = cu.findAll(MethodDeclaration.class);
+        MethodDeclaration first = methods.get(0);
+
+        MethodDeclaration copy = first.clone();
+        MethodDeclaration another = first.clone();
+        NodeIds.derive(first, copy);
+        NodeIds.derive(first, another);
+        assertEquals(NodeIds.of(copy), NodeIds.of(another));
+        assertEquals(new LineOfCode(copy.findFirst(IfStmt.class).orElseThrow()),
+                new LineOfCode(another.findFirst(IfStmt.class).orElseThrow()));
+        assertNotEquals(NodeIds.of(first), NodeIds.of(copy));
+
+        MethodDeclaration other = first.clone();
+        NodeIds.derive(methods.get(1), other);
+        assertNotEquals(NodeIds.of(copy), NodeIds.of(other));
+    }
+
+    @Test
+    void cloneOfTheOriginDerivesIdsOfItsOwn() {
+        MethodDeclaration first = StaticJavaParser.parse(SOURCE).findFirst(MethodDeclaration.class).orElseThrow();
+        MethodDeclaration copy = first.clone();
+        NodeIds.derive(first, copy);
+
+        // the clone inherits the data of the origin, including the ids derived from it
+        MethodDeclaration origin = first.clone();
+        MethodDeclaration another = first.clone();
+        NodeIds.derive(origin, another);
+        assertNotEquals(NodeIds.of(copy), NodeIds.of(another));
+    }
+}
@@ -0,0 +1,119 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelPreProcessTest {
+
+    @TempDir
+    Path sources;
+    private SourceTree tree;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Shape.java", "package p; public interface Shape {}");
+        tree.write("p/Named.java", "package p; public interface Named extends Shape {}");
+        tree.write("p/Base.java", "package p; public abstract class Base implements Named {}");
+        tree.write("q/Circle.java", "package q; import p.Base; public class Circle extends Base {}");
+        tree.write("q/Square.java", "package q; import p.Shape; public class Square implements Shape {}");
+        tree.use();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, false);
+    }
+
+    @Test
+    void parallelPreProcessRegistersAllTypes() throws IOException {
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+
+        for (String fqn : new String[] {"p.Shape", "p.Named", "p.Base", "q.Circle", "q.Square"}) {
+            assertNotNull(AntikytheraRunTime.getCompilationUnit(fqn), fqn);
+        }
+        assertEquals(Set.of("p.Base", "q.Square"), AntikytheraRunTime.findImplementations("p.Shape"));
+        assertEquals(Set.of("p.Base"), AntikytheraRunTime.findImplementations("p.Named"));
+        assertEquals(Set.of("q.Circle"), AntikytheraRunTime.findSubClasses("p.Base"));
+    }
+
+    @Test
+    void nestedTypesAreRegistered() throws IOException {
+        tree.write("q/Outer.java", "package q; public class Outer { public static class Inner extends p.Base {} }");
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+
+        assertSame(AntikytheraRunTime.getCompilationUnit("q.Outer"),
+                AntikytheraRunTime.getCompilationUnit("q.Outer.Inner"));
+        assertTrue(AntikytheraRunTime.getTypeDeclaration("q.Outer.Inner").isPresent());
+    }
+
+    @Test
+    void sequentialModeIsUnchanged() throws IOException {
+        AbstractCompiler.preProcess();
+
+        for (String fqn : new String[] {"p.Shape", "p.Named", "p.Base", "q.Circle", "q.Square"}) {
+            assertNotNull(AntikytheraRunTime.getCompilationUnit(fqn), fqn);
+        }
+    }
+
+    @Test
+    void parallelModeResolvesParentsDeclaredLater() throws IOException {
+        tree.write("a/Circle.java", "package a; public class Circle extends z.Round implements p.Named {}");
+        tree.write("z/Round.java", "package z; public abstract class Round extends p.Base implements p.Shape {}");
+        tree.write("z/Solid.java", "package z; public interface Solid extends p.Named {}");
+        tree.write("a/Cube.java", "package a; import z.Solid; public class Cube implements Solid {}");
+
+        AbstractCompiler.preProcess();
+        Map<String, Set<String>> implementations = copy(AntikytheraRunTime.getImplementations());
+        Map<String, Set<String>> subClasses = copy(AntikytheraRunTime.getSubClasses());
+
+        tree.use();
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+        assertContains(implementations, AntikytheraRunTime.getImplementations());
+        assertContains(subClasses, AntikytheraRunTime.getSubClasses());
+        assertTrue(AntikytheraRunTime.findImplementations("z.Solid").contains("a.Cube"));
+        assertTrue(AntikytheraRunTime.findSubClasses("z.Round").contains("a.Circle"));
+    }
+
+    private static void assertContains(Map<String, Set<String>> expected, Map<String, Set<String>> actual) {
+        expected.forEach((parent, children) ->
+                assertTrue(actual.getOrDefault(parent, Set.of()).containsAll(children), parent));
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> relations) {
+        Map<String, Set<String>> copy = new HashMap<>();
+        relations.forEach((parent, children) -> copy.put(parent, new HashSet<>(children)));
+        return copy;
+    }
+}
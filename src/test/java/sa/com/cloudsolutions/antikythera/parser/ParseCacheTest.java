@@ -0,0 +1,166 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseCacheTest {
+    private static final String SERVICE = """
+            package p;
+
+            import org.springframework.stereotype.Service;
+
+            /**
+             * A service.
+             */
+            @Service
+            public class Impl extends Base implements Api {
+                // the answer
+                private final int answer = 42;
+
+                public String greet(String name) {
+                    return switch (name) {
+                        case "x" -> "y";
+                        default -> "Hello " + name + answer;
+                    };
+                }
+            }
+            """;
+
+    @TempDir
+    Path sources;
+    @TempDir
+    Path cache;
+    private SourceTree tree;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Api.java", "package p; public interface Api {}");
+        tree.write("p/Base.java", "package p; public abstract class Base {}");
+        tree.write("p/Impl.java", SERVICE);
+        Settings.setProperty(Settings.CACHE_PATH, cache.toString());
+        Settings.setProperty(Settings.PARSE_CACHE, true);
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+        tree.use();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Settings.setProperty(Settings.PARSE_CACHE, false);
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, false);
+        AbstractCompiler.reset();
+    }
+
+    private List<Path> entries() throws IOException {
+        try (var files = Files.list(cache.resolve("parse"))) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void warmStartMatchesColdStart() throws IOException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        String cold = AntikytheraRunTime.getCompilationUnit("p.Impl").toString();
+        assertEquals(4, entries().size(), "three compilation units and the relations");
+
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        CompilationUnit warm = AntikytheraRunTime.getCompilationUnit("p.Impl");
+
+        assertEquals(cold, warm.toString());
+        assertTrue(warm.getStorage().isPresent());
+        assertTrue(warm.containsData(Node.SYMBOL_RESOLVER_KEY));
+        assertTrue(AntikytheraRunTime.isServiceClass("p.Impl"));
+        assertTrue(AntikytheraRunTime.isInterface("p.Api"));
+        assertEquals(Set.of("p.Impl"), AntikytheraRunTime.findImplementations("p.Api"));
+        assertEquals(Set.of("p.Impl"), AntikytheraRunTime.findSubClasses("p.Base"));
+        assertEquals(4, entries().size());
+    }
+
+    @Test
+    void relationsAreSharedBetweenModes() throws IOException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, false);
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        assertEquals(4, entries().size(), "the relations saved by the parallel run are used");
+        assertEquals(Set.of("p.Impl"), AntikytheraRunTime.findImplementations("p.Api"));
+        assertEquals(Set.of("p.Impl"), AntikytheraRunTime.findSubClasses("p.Base"));
+    }
+
+    @Test
+    void changedFileIsParsedAgain() throws IOException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+
+        tree.write("p/Impl.java", SERVICE.replace("extends Base ", ""));
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+
+        assertFalse(AntikytheraRunTime.getCompilationUnit("p.Impl").toString().contains("Base"));
+        assertTrue(AntikytheraRunTime.findSubClasses("p.Base").isEmpty());
+        assertEquals(Set.of("p.Impl"), AntikytheraRunTime.findImplementations("p.Api"));
+        assertEquals(6, entries().size(), "the new version of Impl and a second set of relations");
+    }
+
+    @Test
+    void fileEditedOutsideAFingerprintIsParsedAgain() throws IOException {
+        AntikytheraRunTime.resetAll();
+        new AbstractCompiler().compile("p/Impl.java");
+
+        tree.write("p/Impl.java", SERVICE.replace("Hello ", "Goodbye "));
+        Path impl = sources.resolve("p/Impl.java");
+        Files.setLastModifiedTime(impl, FileTime.fromMillis(Files.getLastModifiedTime(impl).toMillis() + 60_000));
+        AntikytheraRunTime.resetAll();
+        new AbstractCompiler().compile("p/Impl.java");
+
+        assertTrue(AntikytheraRunTime.getCompilationUnit("p.Impl").toString().contains("Goodbye "));
+    }
+
+    @Test
+    void corruptEntryFallsBackToParser() throws IOException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        for (Path entry : entries()) {
+            Files.writeString(entry, "{");
+        }
+
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        assertNotNull(AntikytheraRunTime.getCompilationUnit("p.Impl"));
+        assertEquals(Set.of("p.Impl"), AntikytheraRunTime.findImplementations("p.Api"));
+    }
+}
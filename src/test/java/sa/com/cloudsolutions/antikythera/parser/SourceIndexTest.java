@@ -0,0 +1,183 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceIndexTest {
+    @TempDir
+    Path sources;
+    private SourceTree tree;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Shape.java", "package p; public interface Shape {}");
+        tree.write("p/Named.java", "package p; public interface Named extends Shape {}");
+        tree.write("p/Base.java", "package p; public abstract class Base implements Named {}");
+        tree.write("q/Circle.java", "package q; import p.Base; public class Circle extends Base {}");
+        tree.write("q/Square.java", "package q; import p.*; public class Square implements Shape {}");
+        tree.use();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.setProperty(Settings.LAZY_PREPROCESS, false);
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, false);
+        AntikytheraRunTime.resetAll();
+    }
+
+    @Test
+    void lazyPreProcessDoesNotParse() throws IOException {
+        Settings.setProperty(Settings.LAZY_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+
+        SourceIndex index = AntikytheraRunTime.getSourceIndex();
+        assertEquals(Set.of("p.Shape", "p.Named", "p.Base", "q.Circle", "q.Square"), index.getPendingTypes());
+        assertEquals(Set.of("p.Base", "q.Square"), AntikytheraRunTime.findImplementations("p.Shape"));
+        assertEquals(Set.of("p.Base"), AntikytheraRunTime.findImplementations("p.Named"));
+        assertEquals(Set.of("q.Circle"), AntikytheraRunTime.findSubClasses("p.Base"));
+        assertEquals(Set.of("p.Named"), AntikytheraRunTime.findSubClasses("p.Shape"));
+        assertTrue(index.getPendingTypes().contains("q.Circle"));
+    }
+
+    @Test
+    void typesAreParsedOnFirstAccess() throws IOException {
+        Settings.setProperty(Settings.LAZY_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+
+        assertNotNull(AntikytheraRunTime.getCompilationUnit("q.Circle"));
+        assertTrue(AntikytheraRunTime.isInterface("p.Named"));
+        Set<String> pending = AntikytheraRunTime.getSourceIndex().getPendingTypes();
+        assertFalse(pending.contains("q.Circle"));
+        assertEquals(Set.of("p.Shape", "p.Base", "q.Square"), pending);
+        assertEquals(5, AntikytheraRunTime.getTypeNames().size());
+
+        assertEquals(5, AntikytheraRunTime.getResolvedTypes().size());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void onlyAnnotatedTypesAreParsed() throws IOException {
+        tree.write("q/Thing.java", """
+                package q;
+
+                @jakarta.persistence.Entity
+                @Table(name = "thing")
+                public class Thing {
+                    @Deprecated
+                    private String name;
+                }
+                """);
+        Settings.setProperty(Settings.LAZY_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+
+        AntikytheraRunTime.getResolvedTypes(Set.of("Entity"));
+        Set<String> pending = AntikytheraRunTime.getSourceIndex().getPendingTypes();
+        assertFalse(pending.contains("q.Thing"));
+        assertEquals(Set.of("p.Shape", "p.Named", "p.Base", "q.Circle", "q.Square"), pending);
+        assertNotNull(AntikytheraRunTime.getParsedCompilationUnits().get("q.Thing"));
+    }
+
+    @Test
+    void lazyRelationsMatchEagerRelations() throws IOException {
+        tree.write("q/Outer.java", """
+                package q;
+
+                import p.Base;
+
+                public class Outer extends Base implements java.io.Serializable {
+                    public static class Inner extends p.Base {}
+                    enum Kind { A { void run() {} }; void run() {} }
+                }
+                """);
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+        var implementations = Set.copyOf(AntikytheraRunTime.getImplementations().keySet());
+        var subClasses = Set.copyOf(AntikytheraRunTime.getSubClasses().keySet());
+        Set<String> types = Set.copyOf(AntikytheraRunTime.getTypeNames());
+        Set<String> circle = Set.copyOf(AntikytheraRunTime.findImplementations("p.Shape"));
+        Set<String> base = Set.copyOf(AntikytheraRunTime.findSubClasses("p.Base"));
+
+        AntikytheraRunTime.resetAll();
+        Settings.setProperty(Settings.LAZY_PREPROCESS, true);
+        AbstractCompiler.preProcess();
+
+        assertEquals(types, AntikytheraRunTime.getTypeNames());
+        assertEquals(implementations, AntikytheraRunTime.getImplementations().keySet());
+        assertEquals(subClasses, AntikytheraRunTime.getSubClasses().keySet());
+        assertEquals(circle, AntikytheraRunTime.findImplementations("p.Shape"));
+        assertEquals(base, AntikytheraRunTime.findSubClasses("p.Base"));
+        assertSame(AntikytheraRunTime.getCompilationUnit("q.Outer.Inner"),
+                AntikytheraRunTime.getCompilationUnit("q.Outer"));
+    }
+
+    @Test
+    void headerScanSkipsCommentsLiteralsAndLocalTypes() {
+        SourceIndex.Header header = SourceIndex.Header.scan("""
+                package a.b;
+                import static java.util.Map.entry;
+                import java.util.List;
+                // class NotMe {}
+                /* interface NorMe {} */
+                @Deprecated
+                public final class Top<T extends Comparable<T>> extends Parent<List<T>>
+                        implements java.io.Serializable, Runnable {
+                    String s = "class Fake {}";
+                    String t = \"""
+                        enum AlsoFake {}
+                        \""";
+                    Class<?> c = Top.class;
+                    public void run() {
+                        class Local {}
+                        Runnable r = new Runnable() { public void run() {} };
+                    }
+                    public record Point(int x, @Deprecated int y) implements Comparable<Point> {
+                        public int compareTo(Point p) { return 0; }
+                    }
+                    interface Nested extends Runnable {}
+                }
+                @interface Marker {}
+                """);
+
+        List<SourceIndex.Declaration> declarations = header.getDeclarations();
+        assertEquals(List.of("a.b.Top", "a.b.Top.Point", "a.b.Top.Nested", "a.b.Marker"),
+                declarations.stream().map(SourceIndex.Declaration::fqn).toList());
+        SourceIndex.Declaration top = declarations.getFirst();
+        assertEquals(List.of("Parent"), top.extended());
+        assertEquals(List.of("java.io.Serializable", "Runnable"), top.implemented());
+        assertEquals(List.of("Comparable"), declarations.get(1).implemented());
+        assertEquals("record", declarations.get(1).kind());
+        assertEquals(List.of("Runnable"), declarations.get(2).extended());
+        assertEquals("@interface", declarations.get(3).kind());
+        assertEquals(Set.of("Deprecated"), top.annotations());
+        assertTrue(declarations.get(1).annotations().isEmpty());
+        assertTrue(declarations.get(3).annotations().isEmpty());
+    }
+}
@@ -0,0 +1,131 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceManifestTest {
+    @TempDir
+    Path sources;
+    @TempDir
+    Path cache;
+    private SourceTree tree;
+
+    @BeforeAll
+    static void loadSettings() throws IOException {
+        SourceTree.loadSettings();
+    }
+
+    @AfterAll
+    static void restoreSettings() throws IOException {
+        SourceTree.restoreSettings();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tree = new SourceTree(sources);
+        tree.write("p/Base.java", "package p; public abstract class Base {}");
+        tree.write("p/Shape.java", "package p; public interface Shape {}");
+        tree.write("q/Circle.java", "package q; import p.Base; public class Circle extends Base {}");
+        tree.write("q/Square.java", "package q; import p.Shape; public class Square implements Shape {}");
+        Settings.setProperty(Settings.CACHE_PATH, cache.toString());
+        Settings.setProperty(Settings.INCREMENTAL_PREPROCESS, true);
+        Settings.setProperty(Settings.PARALLEL_PREPROCESS, true);
+        tree.use();
+    }
+
+    @Test
+    void onlyTheChangesAreCompiledAgain() throws IOException {
+        AbstractCompiler.preProcess();
+        assertEquals(Set.of("p.Base", "p.Shape", "q.Circle", "q.Square"), AbstractCompiler.getAffectedTypes());
+        CompilationUnit base = AntikytheraRunTime.getCompilationUnit("p.Base");
+        CompilationUnit circle = AntikytheraRunTime.getCompilationUnit("q.Circle");
+        CompilationUnit shape = AntikytheraRunTime.getCompilationUnit("p.Shape");
+
+        tree.write("p/Base.java", "package p; public abstract class Base { abstract double area(); }");
+        tree.write("q/Triangle.java", "package q; import p.Base; public class Triangle extends Base {}");
+        Files.delete(sources.resolve("q/Square.java"));
+        AbstractCompiler.preProcess();
+
+        assertEquals(Set.of("p.Base", "q.Circle", "q.Square", "q.Triangle"), AbstractCompiler.getAffectedTypes());
+        assertNotSame(base, AntikytheraRunTime.getCompilationUnit("p.Base"));
+        assertSame(circle, AntikytheraRunTime.getCompilationUnit("q.Circle"));
+        assertSame(shape, AntikytheraRunTime.getCompilationUnit("p.Shape"));
+        assertNull(AntikytheraRunTime.getCompilationUnit("q.Square"));
+        assertNull(AntikytheraRunTime.getType("q.Square"));
+        assertTrue(AntikytheraRunTime.findImplementations("p.Shape").isEmpty());
+        assertEquals(Set.of("q.Circle", "q.Triangle"), AntikytheraRunTime.findSubClasses("p.Base"));
+
+        AbstractCompiler.preProcess();
+        assertTrue(AbstractCompiler.getAffectedTypes().isEmpty());
+    }
+
+    @Test
+    void unchangedFilesAreNotCompiledAgain() throws IOException {
+        AbstractCompiler.preProcess();
+        // only compiling q/Square.java again would bring this relation back
+        AntikytheraRunTime.removeRelations("q.Square");
+
+        tree.write("q/Circle.java", "package q; import p.Base; public class Circle extends Base { double r; }");
+        AbstractCompiler.preProcess();
+        assertEquals(Set.of("q.Circle"), AbstractCompiler.getAffectedTypes());
+        assertTrue(AntikytheraRunTime.findImplementations("p.Shape").isEmpty());
+    }
+
+    @Test
+    void addedParentsAreFound() throws IOException {
+        tree.write("q/Oval.java", "package q; public class Oval extends Round {}");
+        AbstractCompiler.preProcess();
+        assertTrue(AntikytheraRunTime.findSubClasses("q.Round").isEmpty());
+
+        tree.write("q/Round.java", "package q; public class Round {}");
+        AbstractCompiler.preProcess();
+        assertEquals(Set.of("q.Oval"), AntikytheraRunTime.findSubClasses("q.Round"));
+        assertEquals(Set.of("q.Oval", "q.Round"), AbstractCompiler.getAffectedTypes());
+    }
+
+    @Test
+    void savedManifestIsUsedOnTheNextRun() throws IOException {
+        AbstractCompiler.preProcess();
+
+        tree.write("p/Shape.java", "package p; public interface Shape { double area(); }");
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+
+        assertEquals(Set.of("p.Shape", "q.Square"), AbstractCompiler.getAffectedTypes());
+        assertEquals(Set.of("q.Square"), AntikytheraRunTime.findImplementations("p.Shape"));
+    }
+
+    @Test
+    void diff() {
+        SourceManifest manifest = new SourceManifest(null, sources.toString());
+        manifest.put("a/A.java", new SourceManifest.Entry("1", List.of("a.A"), Map.of()));
+        manifest.put("a/B.java", new SourceManifest.Entry("2", List.of("a.B"), Map.of("a.B", List.of("a.A"))));
+        manifest.put("b/C.java", new SourceManifest.Entry("3", List.of("b.C"), Map.of("b.C", List.of("a.B"))));
+
+        SourceManifest.Changes changes = manifest.diff("a", Map.of("a/A.java", "1", "a/D.java", "4"));
+        assertEquals(Set.of("a/D.java"), changes.added());
+        assertTrue(changes.changed().isEmpty());
+        assertEquals(Set.of("a/B.java"), changes.deleted());
+        assertEquals(Set.of("a.B", "b.C"), manifest.dependents(Set.of("a.A")));
+    }
+}
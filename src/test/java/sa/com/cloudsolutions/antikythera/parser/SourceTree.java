@@ -0,0 +1,66 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>A source tree that a test writes for itself.</p>
+ *
+ * <p>Only for tests that need to add, change or delete source files between two runs of the
+ * pre-processing, such as the tests of the caches and the manifest. Tests that only need classes
+ * of a given shape should use the antikythera-test-helper fixtures through the TestHelper.</p>
+ */
+public final class SourceTree {
+    private static final String SETTINGS = "src/test/resources/generator-field-tests.yml";
+
+    private final Path root;
+
+    public SourceTree(Path root) {
+        this.root = root;
+    }
+
+    public static void loadSettings() throws IOException {
+        Settings.loadConfigMap(new File(SETTINGS));
+    }
+
+    /**
+     * Drops the types of the tree and loads the settings again, so that the tests that follow
+     * see the antikythera-test-helper fixtures.
+     */
+    public static void restoreSettings() throws IOException {
+        AntikytheraRunTime.resetAll();
+        loadSettings();
+    }
+
+    public Path resolve(String relativePath) {
+        return root.resolve(relativePath);
+    }
+
+    public void write(String relativePath, String source) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+    }
+
+    /**
+     * Makes this tree the base path and resets the compiler, without pre-processing it.
+     */
+    public void use() throws IOException {
+        Settings.setProperty(Settings.BASE_PATH, root.toString());
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.reset();
+    }
+
+    /**
+     * Makes this tree the base path and pre-processes it.
+     */
+    public void compile() throws IOException {
+        use();
+        AbstractCompiler.preProcess();
+    }
+}
@@ -0,0 +1,126 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TypeResolutionCacheTest {
+    private CompilationUnit cu;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+    }
+
+    @BeforeEach
+    void each() {
+        register("p.Base", StaticJavaParser.parse("package p; public abstract class Base {}"));
+        cu = StaticJavaParser.parse("package q; import p.Base; public class Circle extends Base {}");
+        register("q.Circle", cu);
+        TypeResolutionCache.invalidate();
+        TypeResolutionCache.resetStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String name : new String[] {"p.Base", "q.Circle", "q.Square"}) {
+            AntikytheraRunTime.removeType(name);
+        }
+    }
+
+    private static void register(String name, CompilationUnit unit) {
+        AntikytheraRunTime.addCompilationUnit(name, unit);
+        AntikytheraRunTime.addType(name, new TypeWrapper(unit.getType(0)));
+        TypeResolutionCache.register(unit);
+    }
+
+    @Test
+    void repeatedLookupsAreAnsweredFromTheCache() {
+        TypeWrapper base = AbstractCompiler.findType(cu, "Base");
+        assertNotNull(base);
+        assertSame(base.getType(), AbstractCompiler.findType(cu, "Base<String>").getType());
+        assertEquals("p.Base", AbstractCompiler.findFullyQualifiedName(cu, "Base"));
+        assertNull(AbstractCompiler.findType(cu, "Missing"));
+        assertNull(AbstractCompiler.findType(cu, "Missing"));
+
+        assertEquals(2, TypeResolutionCache.getMisses());
+        assertEquals(3, TypeResolutionCache.getHits());
+    }
+
+    @Test
+    void registeringATypeInvalidatesTheCache() {
+        assertNull(AbstractCompiler.findType(cu, "Square"));
+
+        ClassOrInterfaceDeclaration square = new ClassOrInterfaceDeclaration().setName("Square");
+        AntikytheraRunTime.addType("q.Square", new TypeWrapper(square));
+
+        assertSame(square, AbstractCompiler.findType(cu, "Square").getType());
+        assertEquals(2, TypeResolutionCache.getMisses());
+        assertEquals(0, TypeResolutionCache.getHits());
+    }
+
+    @Test
+    void registeringATypeKeepsTheResolvedNames() {
+        TypeWrapper base = AbstractCompiler.findType(cu, "Base");
+
+        AntikytheraRunTime.addType("q.Square", new TypeWrapper(new ClassOrInterfaceDeclaration().setName("Square")));
+
+        assertSame(base.getType(), AbstractCompiler.findType(cu, "Base").getType());
+        assertEquals(1, TypeResolutionCache.getMisses());
+        assertEquals(1, TypeResolutionCache.getHits());
+    }
+
+    @Test
+    void callersCannotChangeTheSavedResult() {
+        TypeWrapper base = AbstractCompiler.findType(cu, "Base");
+        TypeWrapper cached = AbstractCompiler.findType(cu, "Base");
+        assertNotSame(base, cached);
+
+        cached.setService(true);
+        cached.setCu(new ClassOrInterfaceDeclaration().setName("Other"));
+
+        TypeWrapper again = AbstractCompiler.findType(cu, "Base");
+        assertSame(base.getType(), again.getType());
+        assertFalse(again.isService());
+        assertEquals(2, TypeResolutionCache.getHits());
+    }
+
+    @Test
+    void removingATypeInvalidatesTheCache() {
+        assertNotNull(AbstractCompiler.findType(cu, "Base"));
+
+        AntikytheraRunTime.removeType("p.Base");
+
+        assertNull(AbstractCompiler.findType(cu, "Base"));
+        assertEquals(2, TypeResolutionCache.getMisses());
+        assertEquals(0, TypeResolutionCache.getHits());
+    }
+
+    @Test
+    void clonesAreNotCached() {
+        CompilationUnit copy = cu.clone();
+
+        TypeWrapper base = AbstractCompiler.findType(copy, "Base");
+        assertNotSame(base, AbstractCompiler.findType(copy, "Base"));
+        assertEquals(0, TypeResolutionCache.getMisses() + TypeResolutionCache.getHits());
+    }
+}